@@ -0,0 +1,159 @@
+package swedbank.TestAssignment.domain;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Transient;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Entry of the append-only log of fuel consumptions registered and removed. Entries are inserted
+ * in the transaction of the change and never updated, the read projections are built from them.
+ * Drivers and fuel types are stored as the keys of the Driver and FuelType tables, their names are
+ * loaded when the events are projected.</p>
+ * @see swedbank.TestAssignment.service.ConsumptionEventLog
+ */
+@Entity
+public class ConsumptionEvent {
+	
+	public enum Type {
+		ADDED,
+		REMOVED,
+		/**
+		 * All fuel consumptions of yearMonth were deleted at once, the other fields are empty
+		 */
+		PARTITION_DROPPED
+	}
+	
+	@Id
+	@GeneratedValue(strategy=GenerationType.SEQUENCE, generator="consumption_event_seq")
+	@SequenceGenerator(name="consumption_event_seq", sequenceName="consumption_event_seq", allocationSize=50)
+	private long id;
+	
+	@Enumerated(EnumType.STRING)
+	private Type type;
+	
+	/**
+	 * Identifier of the fuel consumption
+	 */
+	private long consumptionId;
+	
+	/**
+	 * Key of the Driver table
+	 */
+	private int driverKey;
+	
+	/**
+	 * Key of the FuelType table
+	 */
+	private int fuelTypeKey;
+	
+	@Transient
+	private String driverID;
+	
+	@Transient
+	private String fuelType;
+	
+	private LocalDateTime date;
+	
+	/**
+	 * Year and month of date as yyyyMM
+	 */
+	private int yearMonth;
+	
+	private BigDecimal volume;
+	
+	private BigDecimal pricePerLitter;
+	
+	private BigDecimal totalPrice;
+	
+	public ConsumptionEvent(Type type, FuelConsumption fc) {
+		this.type = type;
+		this.consumptionId = fc.getId();
+		this.driverKey = fc.getDriverKey();
+		this.fuelTypeKey = fc.getFuelTypeKey();
+		this.date = fc.getDate();
+		this.yearMonth = fc.getYearMonthKey();
+		this.volume = fc.getVolume();
+		this.pricePerLitter = fc.getPricePerLitter();
+		this.totalPrice = fc.getTotalPrice();
+	}
+	
+	/**
+	 * @param yearMonth year and month of the dropped partition as yyyyMM
+	 * @return PARTITION_DROPPED event
+	 */
+	public static ConsumptionEvent partitionDropped(int yearMonth) {
+		ConsumptionEvent event = new ConsumptionEvent();
+		event.type = Type.PARTITION_DROPPED;
+		event.yearMonth = yearMonth;
+		return event;
+	}
+	
+	public ConsumptionEvent() {}
+	
+	public long getId() {
+		return id;
+	}
+	public Type getType() {
+		return type;
+	}
+	/**
+	 * @return 1 for ADDED, -1 for REMOVED, 0 for PARTITION_DROPPED
+	 */
+	public int getSign() {
+		return type == Type.ADDED ? 1 : type == Type.REMOVED ? -1 : 0;
+	}
+	public long getConsumptionId() {
+		return consumptionId;
+	}
+	public int getDriverKey() {
+		return driverKey;
+	}
+	public int getFuelTypeKey() {
+		return fuelTypeKey;
+	}
+	/**
+	 * @return driver identifier of the driver key, null until the names are loaded
+	 */
+	public String getDriverID() {
+		return driverID;
+	}
+	/**
+	 * @return fuel type of the fuel type key, null until the names are loaded
+	 */
+	public String getFuelType() {
+		return fuelType;
+	}
+	/**
+	 * Sets the names of the keys, like FuelConsumption#loadNames(String, String)
+	 */
+	public void loadNames(String driverID, String fuelType) {
+		this.driverID = driverID;
+		this.fuelType = fuelType;
+	}
+	public LocalDateTime getDate() {
+		return date;
+	}
+	public int getYearMonth() {
+		return yearMonth;
+	}
+	public BigDecimal getVolume() {
+		return volume;
+	}
+	public BigDecimal getPricePerLitter() {
+		return pricePerLitter;
+	}
+	public BigDecimal getTotalPrice() {
+		return totalPrice;
+	}
+	
+}
@@ -0,0 +1,40 @@
+package swedbank.TestAssignment.domain;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Partition of the fuel consumptions of one month of a year, registered with the first fuel
+ * consumption of the month. Queries by month are routed to the partitions of the catalog.</p>
+ * @see swedbank.TestAssignment.service.PartitionCatalog
+ */
+@Entity
+public class ConsumptionPartition {
+	
+	/**
+	 * Year and month as yyyyMM
+	 */
+	@Id
+	private int yearMonth;
+	
+	private LocalDateTime createdAt;
+	
+	public ConsumptionPartition(int yearMonth, LocalDateTime createdAt) {
+		this.yearMonth = yearMonth;
+		this.createdAt = createdAt;
+	}
+	
+	public ConsumptionPartition() {}
+	
+	public int getYearMonth() {
+		return yearMonth;
+	}
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+	
+}
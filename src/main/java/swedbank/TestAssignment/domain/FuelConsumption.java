@@ -1,31 +1,83 @@
 package swedbank.TestAssignment.domain;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Objects;
 
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Transient;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
+
+import swedbank.TestAssignment.repository.ConsumptionEventListener;
+import swedbank.TestAssignment.repository.DimensionListener;
+import swedbank.TestAssignment.repository.PartitionListener;
+import swedbank.TestAssignment.util.Micros;
+import swedbank.TestAssignment.util.YearMonthKey;
+
 /**
  * 
  * @author denizalp@ut.ee
  * <p>Fuel consumption entity class</p>
- *
+ * <p>Driver identifier and fuel type are stored as integer keys of the Driver and FuelType tables,
+ * DimensionListener translates them when the entity is saved and loaded.</p>
+ * <p>Indexes follow the filters and groupings of FuelConsumptionRepository:</p>
+ * <ul>
+ * <li>driverKey, yearMonth, fuelTypeKey and the summed columns serve the per-driver lookups by month of a year
+ * and cover the per-driver totals and statistics, so they are read from the index alone.</li>
+ * <li>yearMonth, fuelTypeKey and the summed columns serve the lookups by month of a year and cover
+ * the totals and statistics of all drivers in year-month and fuel type order.</li>
+ * <li>driverKey and month, and month alone, serve the keyset pages by month number of every year. Other lookups
+ * by month number are routed to the year-month partitions of that month by PartitionCatalog.</li>
+ * <li>Indexes ending with id serve the keyset pages of the lookups, a page is a range scan from its cursor.</li>
+ * </ul>
+ * @see swedbank.TestAssignment.repository.FuelConsumptionRepository
  */
 @Entity
+@EntityListeners({DimensionListener.class, PartitionListener.class, ConsumptionEventListener.class})
+@Table(indexes={
+		@Index(name="idx_fuel_consumption_fingerprint", columnList="fingerprint"),
+		@Index(name="idx_fuel_consumption_driver_year_month", columnList="driverKey, yearMonth, fuelTypeKey, volume, pricePerLitter, totalPrice"),
+		@Index(name="idx_fuel_consumption_year_month", columnList="yearMonth, fuelTypeKey, volume, pricePerLitter, totalPrice"),
+		@Index(name="idx_fuel_consumption_driver_year_month_id", columnList="driverKey, yearMonth, id"),
+		@Index(name="idx_fuel_consumption_year_month_id", columnList="yearMonth, id"),
+		@Index(name="idx_fuel_consumption_driver_month_id", columnList="driverKey, month, id"),
+		@Index(name="idx_fuel_consumption_month_id", columnList="month, id")})
 public class FuelConsumption {
 
+	/**
+	 * Identifiers are allocated from a pooled sequence, one database round trip per 50 rows
+	 */
 	@Id
-	@GeneratedValue
+	@GeneratedValue(strategy=GenerationType.SEQUENCE, generator="fuel_consumption_seq")
+	@SequenceGenerator(name="fuel_consumption_seq", sequenceName="fuel_consumption_seq", allocationSize=50)
 	private long id;
 	
+	@Transient
 	@NotBlank(message="Fuel type must not be empty")
 	private String fuelType;
 	
+	/**
+	 * Key of fuelType in the FuelType table, 0 until it is saved
+	 */
+	private int fuelTypeKey;
+	
 	@Positive(message="Price per letter must be positive")
 	@NotNull(message="Price per letter must not be null")
 	private BigDecimal pricePerLitter;
@@ -37,11 +89,18 @@ public class FuelConsumption {
 	@NotNull(message="Date must not be null")
 	private LocalDateTime date;
 	
+	@Transient
 	@NotBlank(message="Driver id must not be empty")
 	private String driverID;
 	
 	/**
-	 * It is computed by pricePerLitter * volume
+	 * Key of driverID in the Driver table, 0 until it is saved
+	 */
+	private int driverKey;
+	
+	/**
+	 * It is computed by pricePerLitter * volume in fixed point, with the decimals of both factors up to 6
+	 * @see Micros#multiply(long, long)
 	 */
 	private BigDecimal totalPrice;
 	
@@ -50,6 +109,19 @@ public class FuelConsumption {
 	 */
 	private int month;
 	
+	/**
+	 * Year and month of date field as yyyyMM, queries by month of a year use its index
+	 * @see YearMonthKey
+	 */
+	private int yearMonth;
+	
+	/**
+	 * 64 bit hash of driverID, date, fuelType, volume and pricePerLitter computed when the
+	 * entity is saved, used to find duplicate rows
+	 * @see #computeFingerprint()
+	 */
+	private long fingerprint;
+	
 	public FuelConsumption(String fuelType, BigDecimal pricePerLitter,
 			BigDecimal volume, LocalDateTime date, String driverID) {
 		this.fuelType = fuelType;
@@ -58,7 +130,8 @@ public class FuelConsumption {
 		this.date = date;
 		this.driverID = driverID;
 		this.month = this.date.getMonthValue();
-		this.totalPrice = this.pricePerLitter.multiply(this.volume);
+		this.yearMonth = YearMonthKey.of(this.date);
+		setTotalPrice();
 	}
 	
 	public FuelConsumption() {}
@@ -68,6 +141,7 @@ public class FuelConsumption {
 	}
 
 	public void setFuelType(String fuelType) {
+		if(!Objects.equals(this.fuelType, fuelType)) this.fuelTypeKey = 0;
 		this.fuelType = fuelType;
 	}
 
@@ -96,6 +170,7 @@ public class FuelConsumption {
 	public void setDate(LocalDateTime date) {
 		this.date = date;
 		this.month = this.date.getMonthValue();
+		this.yearMonth = YearMonthKey.of(this.date);
 	}
 
 	public String getDriverID() {
@@ -103,11 +178,50 @@ public class FuelConsumption {
 	}
 
 	public void setDriverID(String driverID) {
+		if(!Objects.equals(this.driverID, driverID)) this.driverKey = 0;
+		this.driverID = driverID;
+	}
+	
+	@JsonIgnore
+	public int getDriverKey() {
+		return driverKey;
+	}
+	
+	public void setDriverKey(int driverKey) {
+		this.driverKey = driverKey;
+	}
+	
+	@JsonIgnore
+	public int getFuelTypeKey() {
+		return fuelTypeKey;
+	}
+	
+	public void setFuelTypeKey(int fuelTypeKey) {
+		this.fuelTypeKey = fuelTypeKey;
+	}
+	
+	/**
+	 * Sets the names of the keys of a loaded entity, keeping the keys
+	 */
+	public void loadNames(String driverID, String fuelType) {
 		this.driverID = driverID;
+		this.fuelType = fuelType;
 	}
 	
+	/**
+	 * Multiplies in fixed point when both factors have at most {@value Micros#SCALE} decimals, otherwise the exact
+	 * product is rounded, so the factors are never rounded first
+	 * @throws ArithmeticException if the total price does not fit in fixed point
+	 */
 	public void setTotalPrice() {
-		this.totalPrice = this.pricePerLitter.multiply(this.volume);
+		int scale = Math.min(Micros.SCALE, Math.max(0, this.pricePerLitter.scale() + this.volume.scale()));
+		if(this.pricePerLitter.scale() > Micros.SCALE || this.volume.scale() > Micros.SCALE) {
+			this.totalPrice = this.pricePerLitter.multiply(this.volume).setScale(scale, RoundingMode.HALF_UP);
+			// same range as the fixed point total
+			Micros.of(this.totalPrice);
+			return;
+		}
+		this.totalPrice = Micros.toBigDecimal(Micros.multiply(Micros.of(this.pricePerLitter), Micros.of(this.volume)), scale);
 	}
 	
 	public BigDecimal getTotalPrice() {
@@ -126,6 +240,54 @@ public class FuelConsumption {
 		return this.month;
 	}
 	
+	@JsonProperty(access = Access.READ_ONLY)
+	public YearMonth getYearMonth() {
+		return this.yearMonth == 0 ? null : YearMonthKey.toYearMonth(this.yearMonth);
+	}
+	
+	/**
+	 * @return year and month as yyyyMM
+	 */
+	@JsonIgnore
+	public int getYearMonthKey() {
+		return this.yearMonth;
+	}
+	
+	@JsonIgnore
+	public long getFingerprint() {
+		return fingerprint;
+	}
+	
+	@PrePersist
+	@PreUpdate
+	void onSave() {
+		this.fingerprint = computeFingerprint();
+	}
+	
+	/**
+	 * Decimals are compared by value, so 1.5 and 1.50 have the same fingerprint
+	 * @return 64 bit hash of driverID, date, fuelType, volume and pricePerLitter
+	 */
+	public long computeFingerprint() {
+		String key = driverID + '\u0000' + date + '\u0000' + fuelType + '\u0000' + plain(volume) + '\u0000' + plain(pricePerLitter);
+		// FNV-1a followed by the murmur3 finalizer to spread the bits
+		long h = 0xcbf29ce484222325L;
+		for(int i=0; i<key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb93fe53ec86bL;
+		h ^= h >>> 33;
+		return h;
+	}
+	
+	private static String plain(BigDecimal value) {
+		return value == null ? null : value.stripTrailingZeros().toPlainString();
+	}
+	
 	@Override
 	public boolean equals(Object obj) {
 		// TODO Auto-generated method stub
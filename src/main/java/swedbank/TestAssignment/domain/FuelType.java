@@ -0,0 +1,38 @@
+package swedbank.TestAssignment.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Fuel type of fuel consumptions, FuelConsumption keeps only its integer key</p>
+ * @see swedbank.TestAssignment.service.Dimensions
+ */
+@Entity
+public class FuelType {
+	
+	@Id
+	@GeneratedValue(strategy=GenerationType.IDENTITY)
+	private int id;
+	
+	@Column(nullable=false, unique=true)
+	private String name;
+	
+	public FuelType(String name) {
+		this.name = name;
+	}
+	
+	public FuelType() {}
+	
+	public int getId() {
+		return id;
+	}
+	public String getName() {
+		return name;
+	}
+	
+}
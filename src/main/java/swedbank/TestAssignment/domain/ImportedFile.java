@@ -0,0 +1,66 @@
+package swedbank.TestAssignment.domain;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Csv file which has been ingested successfully, identified by the SHA-256 digest of its content.
+ * It is forgotten when a partition between its first and last year-month is dropped, so the file can be ingested again.</p>
+ */
+@Entity
+public class ImportedFile {
+	
+	/**
+	 * Hex encoded SHA-256 digest of the file content
+	 */
+	@Id
+	private String digest;
+	
+	private String fileName;
+	
+	private LocalDateTime importedAt;
+	
+	private long rowsPersisted;
+	
+	/**
+	 * Year-months of the first and last month of the rows of the file as yyyyMM
+	 */
+	private int firstYearMonth;
+	
+	private int lastYearMonth;
+	
+	public ImportedFile(String digest, String fileName, LocalDateTime importedAt, long rowsPersisted, int firstYearMonth, int lastYearMonth) {
+		this.digest = digest;
+		this.fileName = fileName;
+		this.importedAt = importedAt;
+		this.rowsPersisted = rowsPersisted;
+		this.firstYearMonth = firstYearMonth;
+		this.lastYearMonth = lastYearMonth;
+	}
+	
+	public ImportedFile() {}
+	
+	public String getDigest() {
+		return digest;
+	}
+	public String getFileName() {
+		return fileName;
+	}
+	public LocalDateTime getImportedAt() {
+		return importedAt;
+	}
+	public long getRowsPersisted() {
+		return rowsPersisted;
+	}
+	public int getFirstYearMonth() {
+		return firstYearMonth;
+	}
+	public int getLastYearMonth() {
+		return lastYearMonth;
+	}
+	
+}
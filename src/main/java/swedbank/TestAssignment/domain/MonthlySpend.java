@@ -0,0 +1,72 @@
+package swedbank.TestAssignment.domain;
+
+import java.math.BigDecimal;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Rollup of the fuel consumptions of a driver in a month of a year. It is updated from the
+ * consumption events by the Projector, so reading the totals does not scan the fuel consumptions.</p>
+ * @see swedbank.TestAssignment.service.MonthlySpendRollup
+ */
+@Entity
+@IdClass(MonthlySpendId.class)
+public class MonthlySpend {
+	
+	@Id
+	private String driverID;
+	
+	/**
+	 * Year and month of the fuel consumptions as yyyyMM
+	 */
+	@Id
+	private int yearMonth;
+	
+	/**
+	 * Month of the fuel consumptions between 1 and 12
+	 */
+	private int month;
+	
+	/**
+	 * Sum of totalPrice of the fuel consumptions, with the same scale as FuelConsumption#totalPrice
+	 */
+	@Column(precision=19, scale=2)
+	private BigDecimal totalPrice;
+	
+	/**
+	 * Number of fuel consumptions, 0 if all of them have been removed
+	 */
+	private long rowCount;
+	
+	public MonthlySpend(String driverID, int yearMonth, int month, BigDecimal totalPrice, long rowCount) {
+		this.driverID = driverID;
+		this.yearMonth = yearMonth;
+		this.month = month;
+		this.totalPrice = totalPrice;
+		this.rowCount = rowCount;
+	}
+	
+	public MonthlySpend() {}
+	
+	public String getDriverID() {
+		return driverID;
+	}
+	public int getYearMonth() {
+		return yearMonth;
+	}
+	public int getMonth() {
+		return month;
+	}
+	public BigDecimal getTotalPrice() {
+		return totalPrice;
+	}
+	public long getRowCount() {
+		return rowCount;
+	}
+	
+}
@@ -0,0 +1,49 @@
+package swedbank.TestAssignment.domain;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Identifier of MonthlySpend</p>
+ */
+public class MonthlySpendId implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private String driverID;
+	
+	/**
+	 * Year and month as yyyyMM
+	 */
+	private int yearMonth;
+	
+	public MonthlySpendId(String driverID, int yearMonth) {
+		this.driverID = driverID;
+		this.yearMonth = yearMonth;
+	}
+	
+	public MonthlySpendId() {}
+	
+	public String getDriverID() {
+		return driverID;
+	}
+	public int getYearMonth() {
+		return yearMonth;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) return true;
+		if(!(obj instanceof MonthlySpendId)) return false;
+		MonthlySpendId other = (MonthlySpendId) obj;
+		return yearMonth == other.yearMonth && Objects.equals(driverID, other.driverID);
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hash(driverID, yearMonth);
+	}
+	
+}
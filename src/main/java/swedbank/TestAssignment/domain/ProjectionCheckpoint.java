@@ -0,0 +1,36 @@
+package swedbank.TestAssignment.domain;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Number of consumption events a persistent projection has applied, updated in the same
+ * transaction as the projection. Events are counted rather than numbered because concurrent
+ * transactions commit their events out of identifier order.</p>
+ * @see ConsumptionEvent
+ */
+@Entity
+public class ProjectionCheckpoint {
+	
+	@Id
+	private String name;
+	
+	private long applied;
+	
+	public ProjectionCheckpoint(String name, long applied) {
+		this.name = name;
+		this.applied = applied;
+	}
+	
+	public ProjectionCheckpoint() {}
+	
+	public String getName() {
+		return name;
+	}
+	public long getApplied() {
+		return applied;
+	}
+	
+}
@@ -0,0 +1,102 @@
+package swedbank.TestAssignment.ingest;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Decompresses uploaded csv files on the fly. The compression is taken from the content type
+ * or the file name extension, and detected from the first bytes of the stream only when neither
+ * declares one. Plain files are read as they are.</p>
+ * <ul>
+ * <li>gzip: content type application/gzip, extension .gz or magic bytes 1f 8b</li>
+ * <li>deflate with zlib header: content type application/zlib, extension .zz or .zlib, or a header with
+ * a valid check sum and no preset dictionary whose first block inflates</li>
+ * </ul>
+ * <p>zstd files are recognized by their magic bytes and rejected because the JDK has no zstd decoder.</p>
+ */
+public final class CompressedInput {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Bytes inflated to tell a zlib stream from plain text starting with the same two bytes
+	 */
+	private static final int PROBE_SIZE = 4 * 1024;
+
+	private CompressedInput() {}
+
+	/**
+	 * @param in uploaded file content
+	 * @param contentType content type of the upload, may be null
+	 * @param fileName name of the uploaded file, may be null
+	 * @return stream of the decompressed content
+	 * @throws IOException if the content is zstd compressed or the compressed header is corrupt
+	 */
+	public static InputStream open(InputStream in, String contentType, String fileName) throws IOException {
+		BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+		String type = contentType == null ? "" : contentType.toLowerCase();
+		String name = fileName == null ? "" : fileName.toLowerCase();
+		if(type.contains("gzip") || name.endsWith(".gz")) {
+			return new GZIPInputStream(buffered, BUFFER_SIZE);
+		}
+		if(type.contains("zlib") || type.contains("deflate") || name.endsWith(".zz") || name.endsWith(".zlib")) {
+			return new InflaterInputStream(buffered);
+		}
+
+		buffered.mark(PROBE_SIZE);
+		byte[] head = new byte[PROBE_SIZE];
+		int length = 0;
+		for(int n; length < head.length && (n = buffered.read(head, length, head.length - length)) != -1; ) length += n;
+		buffered.reset();
+		int[] magic = new int[4];
+		for(int i=0; i<magic.length; i++) magic[i] = i < length ? head[i] & 0xff : -1;
+
+		if(magic[0] == 0x1f && magic[1] == 0x8b) {
+			return new GZIPInputStream(buffered, BUFFER_SIZE);
+		}
+		if(isZlibHeader(magic[0], magic[1]) && inflates(head, length)) {
+			return new InflaterInputStream(buffered);
+		}
+		if(magic[0] == 0x28 && magic[1] == 0xb5 && magic[2] == 0x2f && magic[3] == 0xfd) {
+			throw new IOException("zstd compressed files are not supported, use gzip");
+		}
+		return buffered;
+	}
+
+	/**
+	 * A zlib header uses deflate with window size up to 32K (0x78 for 32K), has no
+	 * preset dictionary (FDICT bit 0x20) and its first two bytes are a multiple of 31
+	 */
+	private static boolean isZlibHeader(int cmf, int flg) {
+		return cmf == 0x78 && flg >= 0 && (flg & 0x20) == 0 && ((cmf << 8) | flg) % 31 == 0;
+	}
+
+	/**
+	 * @return true if the first param length bytes of param head inflate without an error
+	 */
+	private static boolean inflates(byte[] head, int length) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(head, 0, length);
+			byte[] out = new byte[PROBE_SIZE];
+			while(!inflater.finished() && !inflater.needsInput()) {
+				if(inflater.inflate(out) == 0 && inflater.needsDictionary()) return false;
+			}
+			return inflater.getTotalOut() > 0 || inflater.finished();
+		}
+		catch(DataFormatException e) {
+			return false;
+		}
+		finally {
+			inflater.end();
+		}
+	}
+
+}
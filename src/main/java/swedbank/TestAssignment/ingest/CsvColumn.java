@@ -0,0 +1,74 @@
+package swedbank.TestAssignment.ingest;
+
+import swedbank.TestAssignment.domain.FuelConsumption;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Fuel consumption field a csv column is written to. The header is resolved to
+ * one CsvColumn per column once, rows are then set without comparing column names.</p>
+ */
+public enum CsvColumn {
+	
+	FUEL_TYPE("FuelType") {
+		@Override
+		public void set(FuelConsumption fc, char[] buffer, int start, int end) {
+			fc.setFuelType(new String(buffer, start, end - start));
+		}
+	},
+	PRICE_PER_LITTER("PricePerLitter") {
+		@Override
+		public void set(FuelConsumption fc, char[] buffer, int start, int end) {
+			fc.setPricePerLitter(FastParsers.parseDecimal(buffer, start, end));
+		}
+	},
+	VOLUME("Volume") {
+		@Override
+		public void set(FuelConsumption fc, char[] buffer, int start, int end) {
+			fc.setVolume(FastParsers.parseDecimal(buffer, start, end));
+		}
+	},
+	DATE("Date") {
+		@Override
+		public void set(FuelConsumption fc, char[] buffer, int start, int end) {
+			fc.setDate(FastParsers.parseDateTime(buffer, start, end));
+		}
+	},
+	DRIVER_ID("DriverID") {
+		@Override
+		public void set(FuelConsumption fc, char[] buffer, int start, int end) {
+			fc.setDriverID(new String(buffer, start, end - start));
+		}
+	},
+	/**
+	 * Column with an unknown name, its values are skipped
+	 */
+	IGNORED("") {
+		@Override
+		public void set(FuelConsumption fc, char[] buffer, int start, int end) {}
+	};
+	
+	private final String columnName;
+	
+	private CsvColumn(String columnName) {
+		this.columnName = columnName;
+	}
+	
+	/**
+	 * Sets the field of param fc from the chars between param start and param end
+	 * @throws RuntimeException if the chars can not be converted to the field type
+	 */
+	public abstract void set(FuelConsumption fc, char[] buffer, int start, int end);
+	
+	/**
+	 * @param columnName column name in a csv header
+	 * @return column matching param columnName ignoring case, IGNORED if there is none
+	 */
+	public static CsvColumn forName(String columnName) {
+		for(CsvColumn column : values()) {
+			if(column != IGNORED && column.columnName.equalsIgnoreCase(columnName)) return column;
+		}
+		return IGNORED;
+	}
+	
+}
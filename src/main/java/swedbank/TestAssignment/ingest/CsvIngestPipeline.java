@@ -0,0 +1,274 @@
+package swedbank.TestAssignment.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import swedbank.TestAssignment.domain.FuelConsumption;
+import swedbank.TestAssignment.service.CsvIngestResult;
+import swedbank.TestAssignment.service.FuelConsumptionService;
+import swedbank.TestAssignment.service.RejectedRow;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Parallel csv ingest in three stages connected by bounded queues</p>
+ * <ul>
+ * <li>read: the calling thread reads lines and groups them into batches numbered by their first row</li>
+ * <li>parse: worker threads parse and validate the batches</li>
+ * <li>persist: writer threads insert the valid batches with JDBC batching</li>
+ * </ul>
+ * <p>Batches are persisted in the order they are parsed, not in file order. Ingest stops
+ * at the first invalid row found, the batch of that row is not persisted and the result
+ * reports the invalid row with the smallest row number. If the result collects errors,
+ * invalid rows are rejected in the order they are found and the valid rows are persisted.
+ * An unexpected failure of a batch stops the ingest the same way, and the workers keep draining their
+ * queue until the end of the file so that the reader is never blocked.</p>
+ */
+@Component
+public class CsvIngestPipeline {
+
+	@Autowired
+	private FuelConsumptionService service;
+
+	/**
+	 * Number of parse workers, available processors if not positive
+	 */
+	@Value("${fuelconsumption.ingest.parallel.workers:0}")
+	private int workers;
+
+	@Value("${fuelconsumption.ingest.parallel.writers:1}")
+	private int writers;
+
+	/**
+	 * Capacity of each queue between the stages, in batches
+	 */
+	@Value("${fuelconsumption.ingest.parallel.queue-capacity:16}")
+	private int queueCapacity;
+
+	/**
+	 * @param s Scanner object with constructed a csv file where separator is fuelconsumption.ingest.delimiter
+	 * @param batchSize number of rows handed from a stage to the next one together, must be positive
+	 * @return result with the same messages as FuelConsumptionService#addFuelConsumptionsFromCsvFile(Scanner),
+	 * the message starts with "Invalid header" if the header can not be parsed
+	 * @throws InterruptedException if the calling thread is interrupted while waiting for the stages
+	 */
+	public CsvIngestResult ingest(Scanner s, int batchSize) throws InterruptedException {
+		return ingest(s, new CsvIngestResult(batchSize));
+	}
+	
+	/**
+	 * Same as {@link #ingest(Scanner, int)} with the batch size, dedup and reject settings of param result
+	 * @param result empty result the progress is written to
+	 * @return param result
+	 */
+	public CsvIngestResult ingest(Scanner s, CsvIngestResult result) throws InterruptedException {
+		if(result.getChunkSize() <= 0) throw new IllegalArgumentException("Batch size must be positive");
+		int workerCount = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+		int writerCount = Math.max(1, writers);
+		Run run = new Run(result);
+
+		if(!s.hasNextLine()) {
+			s.close();
+			run.result.setMessage("Successful");
+			return run.result;
+		}
+		String header = s.nextLine();
+		try {
+			// an invalid header fails here, before a worker would die on it
+			service.newRowParser(header);
+		}
+		catch(IllegalArgumentException e) {
+			s.close();
+			run.result.setMessage(e.getMessage());
+			return run.result;
+		}
+		service.openRejectFile(run.result, header);
+
+		ExecutorService executor = Executors.newFixedThreadPool(workerCount + writerCount,
+				new CustomizableThreadFactory("csv-ingest-"));
+		try {
+			List<Future<?>> parseStage = new ArrayList<Future<?>>();
+			for(int i=0; i<workerCount; i++) {
+				parseStage.add(executor.submit(() -> parse(run, service.newRowParser(header))));
+			}
+			List<Future<?>> persistStage = new ArrayList<Future<?>>();
+			for(int i=0; i<writerCount; i++) {
+				persistStage.add(executor.submit(() -> persist(run)));
+			}
+
+			read(run, s);
+			for(int i=0; i<workerCount; i++) run.lines.put(LineBatch.END);
+			await(run, parseStage);
+			for(int i=0; i<writerCount; i++) run.parsed.put(ParsedBatch.END);
+			await(run, persistStage);
+		}
+		finally {
+			run.stopped = true;
+			executor.shutdownNow();
+			s.close();
+			service.closeRejectFile(run.result);
+		}
+
+		if(run.error != null) run.result.setMessage(run.error.message);
+		else run.result.setMessage(service.successMessage(run.result));
+		return run.result;
+	}
+
+	private void read(Run run, Scanner s) throws InterruptedException {
+		int row = 1;
+		List<String> lines = new ArrayList<String>(run.batchSize);
+		while(!run.stopped && s.hasNextLine()) {
+			lines.add(s.nextLine());
+			row++;
+			if(lines.size() == run.batchSize) {
+				run.lines.put(new LineBatch(row - lines.size() + 1, lines));
+				lines = new ArrayList<String>(run.batchSize);
+			}
+		}
+		if(!run.stopped && !lines.isEmpty()) run.lines.put(new LineBatch(row - lines.size() + 1, lines));
+	}
+
+	private Void parse(Run run, CsvRowParser parser) throws InterruptedException {
+		while(true) {
+			LineBatch batch = run.lines.take();
+			if(batch == LineBatch.END) return null;
+			// keep draining after a failure so that the reader is never blocked
+			if(run.stopped) continue;
+			try {
+				parse(run, parser, batch);
+			}
+			catch(RuntimeException | Error e) {
+				run.fail(batch.firstRow, "Parsing rows failed: "+e.getMessage());
+			}
+		}
+	}
+
+	private void parse(Run run, CsvRowParser parser, LineBatch batch) throws InterruptedException {
+		List<FuelConsumption> list = new ArrayList<FuelConsumption>(batch.lines.size());
+		RejectedRow error = null;
+		int row = batch.firstRow;
+		for(String line : batch.lines) {
+			RejectedRow rejected = service.parseRow(parser, line, row, list);
+			if(rejected != null) {
+				if(!run.result.isCollectErrors()) {
+					error = rejected;
+					break;
+				}
+				run.result.rejected(rejected, line);
+			}
+			row++;
+		}
+		if(error != null) {
+			run.fail(row, error.getMessage());
+			return;
+		}
+		run.result.rowsParsed(list.size());
+		run.parsed.put(new ParsedBatch(list));
+	}
+
+	private Void persist(Run run) throws InterruptedException {
+		while(true) {
+			ParsedBatch batch = run.parsed.take();
+			if(batch == ParsedBatch.END) return null;
+			if(run.stopped) continue;
+			try {
+				service.persistChunk(batch.list, run.result);
+			}
+			catch(RuntimeException | Error e) {
+				run.fail(Integer.MAX_VALUE, "Persisting rows failed: "+e.getMessage());
+			}
+		}
+	}
+
+	private void await(Run run, List<Future<?>> stage) throws InterruptedException {
+		for(Future<?> future : stage) {
+			try {
+				future.get();
+			}
+			catch(ExecutionException e) {
+				run.fail(Integer.MAX_VALUE, "Ingest failed: "+e.getCause().getMessage());
+			}
+		}
+	}
+
+	/**
+	 * State of one ingest shared by its stages
+	 */
+	private class Run {
+
+		final int batchSize;
+
+		final BlockingQueue<LineBatch> lines = new ArrayBlockingQueue<LineBatch>(queueCapacity);
+
+		final BlockingQueue<ParsedBatch> parsed = new ArrayBlockingQueue<ParsedBatch>(queueCapacity);
+
+		final CsvIngestResult result;
+
+		volatile boolean stopped;
+
+		RowError error;
+
+		Run(CsvIngestResult result) {
+			this.batchSize = result.getChunkSize();
+			this.result = result;
+		}
+
+		synchronized void fail(int row, String message) {
+			stopped = true;
+			if(error == null || row < error.row) error = new RowError(row, message);
+		}
+	}
+
+	private static class RowError {
+
+		final int row;
+
+		final String message;
+
+		RowError(int row, String message) {
+			this.row = row;
+			this.message = message;
+		}
+	}
+
+	private static class LineBatch {
+
+		static final LineBatch END = new LineBatch(0, null);
+
+		/**
+		 * Row number of the first line in the file starting from 1 for the header
+		 */
+		final int firstRow;
+
+		final List<String> lines;
+
+		LineBatch(int firstRow, List<String> lines) {
+			this.firstRow = firstRow;
+			this.lines = lines;
+		}
+	}
+
+	private static class ParsedBatch {
+
+		static final ParsedBatch END = new ParsedBatch(null);
+
+		final List<FuelConsumption> list;
+
+		ParsedBatch(List<FuelConsumption> list) {
+			this.list = list;
+		}
+	}
+
+}
@@ -0,0 +1,26 @@
+package swedbank.TestAssignment.ingest;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Thrown when a csv row can not be turned into a fuel consumption</p>
+ */
+public class CsvRowException extends Exception {
+	
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Column of the row from 1, 0 if the error is not about a single column
+	 */
+	private final int column;
+	
+	public CsvRowException(int column, String message) {
+		super(message);
+		this.column = column;
+	}
+	
+	public int getColumn() {
+		return column;
+	}
+	
+}
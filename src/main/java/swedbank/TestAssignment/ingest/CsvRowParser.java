@@ -0,0 +1,103 @@
+package swedbank.TestAssignment.ingest;
+
+import java.nio.ByteBuffer;
+
+import swedbank.TestAssignment.domain.FuelConsumption;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Turns the rows of a csv file into fuel consumptions.
+ * Column names are read from the header line and matched ignoring case and order.
+ * The header is compiled once into a plan of CsvColumn, so a row is parsed by a
+ * single scan of its chars without splitting it into Strings.</p>
+ * <p>A parser is not thread safe, every thread needs its own.</p>
+ */
+public class CsvRowParser {
+	
+	public static final String COLUMN_SIZE_MISMATCH = "Value column size must be equal to Attribute column size";
+	
+	private final CsvTokenizer tokenizer;
+	
+	private final String[] columns;
+	
+	private final CsvColumn[] plan;
+	
+	/**
+	 * @param header first line of the csv file where separator is ";"
+	 */
+	public CsvRowParser(String header) {
+		this(header, ';');
+	}
+	
+	/**
+	 * @param header first line of the csv file
+	 * @param delimiter separator of the fields
+	 */
+	public CsvRowParser(String header, char delimiter) {
+		this.tokenizer = new CsvTokenizer(delimiter);
+		int count;
+		try {
+			count = tokenizer.tokenize(header);
+		}
+		catch(CsvRowException e) {
+			throw new IllegalArgumentException("Invalid header: "+e.getMessage());
+		}
+		this.columns = new String[count];
+		this.plan = new CsvColumn[count];
+		for(int i=0; i<count; i++) {
+			columns[i] = tokenizer.field(i);
+			plan[i] = CsvColumn.forName(columns[i]);
+		}
+	}
+	
+	public int getColumnCount() {
+		return columns.length;
+	}
+	
+	/**
+	 * @param line a row of the csv file after the header
+	 * @return fuel consumption whose fields are set by matching column names, not validated
+	 * @throws CsvRowException if the number of values is not equal to the number of columns
+	 * or a value can not be converted to its field type
+	 */
+	public FuelConsumption parse(String line) throws CsvRowException {
+		return parse(tokenizer.tokenize(line));
+	}
+	
+	/**
+	 * @param bytes UTF-8 encoded csv content
+	 * @param start offset of the first byte of a row after the header
+	 * @param end offset after the last byte of the row, without the line break
+	 * @return fuel consumption whose fields are set by matching column names, not validated
+	 * @throws CsvRowException if the number of values is not equal to the number of columns
+	 * or a value can not be converted to its field type
+	 */
+	public FuelConsumption parse(ByteBuffer bytes, int start, int end) throws CsvRowException {
+		return parse(tokenizer.tokenize(bytes, start, end));
+	}
+	
+	private FuelConsumption parse(int count) throws CsvRowException {
+		if(count < plan.length) {
+			throw new CsvRowException(0, COLUMN_SIZE_MISMATCH);
+		}
+		// empty trailing fields are dropped like String#split does
+		for(int i=plan.length; i<count; i++) {
+			if(tokenizer.start(i) != tokenizer.end(i)) throw new CsvRowException(0, COLUMN_SIZE_MISMATCH);
+		}
+		char[] buffer = tokenizer.buffer();
+		FuelConsumption fc = new FuelConsumption();
+		for(int i=0; i<plan.length; i++) {
+			int start = tokenizer.start(i);
+			int end = tokenizer.end(i);
+			try {
+				plan[i].set(fc, buffer, start, end);
+			}
+			catch(RuntimeException e) {
+				throw new CsvRowException(i+1, "Invalid value \""+new String(buffer, start, end - start)+"\" for "+columns[i]);
+			}
+		}
+		return fc;
+	}
+	
+}
@@ -0,0 +1,166 @@
+package swedbank.TestAssignment.ingest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Splits a csv line into fields without allocating a String per field.
+ * The line is copied into a reusable char buffer and fields are kept as
+ * start and end offsets into that buffer.</p>
+ * <p>A field starting with a double quote is quoted: it may contain the delimiter and
+ * two double quotes stand for one. Quotes are removed in place. Line breaks inside
+ * quoted fields are not supported because the input is read line by line.</p>
+ * <p>A tokenizer is not thread safe, every thread needs its own.</p>
+ */
+public class CsvTokenizer {
+	
+	private final char delimiter;
+	
+	private char[] buffer = new char[256];
+	
+	private int[] starts = new int[16];
+	
+	private int[] ends = new int[16];
+	
+	private int count;
+	
+	public CsvTokenizer(char delimiter) {
+		if(delimiter == '"') throw new IllegalArgumentException("Delimiter must not be a double quote");
+		this.delimiter = delimiter;
+	}
+	
+	/**
+	 * @param line csv line without the line break
+	 * @return number of fields in param line
+	 * @throws CsvRowException if a quoted field is not closed or is followed by something else than the delimiter
+	 */
+	public int tokenize(String line) throws CsvRowException {
+		int length = line.length();
+		ensureCapacity(length);
+		line.getChars(0, length, buffer, 0);
+		return tokenize(length);
+	}
+	
+	/**
+	 * @param bytes UTF-8 encoded csv content
+	 * @param start offset of the first byte of the line
+	 * @param end offset after the last byte of the line, without the line break
+	 * @return number of fields in the line
+	 * @throws CsvRowException if a quoted field is not closed or is followed by something else than the delimiter
+	 */
+	public int tokenize(ByteBuffer bytes, int start, int end) throws CsvRowException {
+		int length = end - start;
+		ensureCapacity(length);
+		char[] b = buffer;
+		for(int i=0; i<length; i++) {
+			byte c = bytes.get(start + i);
+			if(c < 0) {
+				// multi byte character, decode the whole line
+				byte[] encoded = new byte[length];
+				for(int j=0; j<length; j++) encoded[j] = bytes.get(start + j);
+				return tokenize(new String(encoded, StandardCharsets.UTF_8));
+			}
+			b[i] = (char) c;
+		}
+		return tokenize(length);
+	}
+	
+	private void ensureCapacity(int length) {
+		if(buffer.length < length) buffer = new char[Math.max(length, buffer.length * 2)];
+	}
+	
+	/**
+	 * Splits the first param length chars of the buffer into fields
+	 */
+	private int tokenize(int length) throws CsvRowException {
+		char[] b = buffer;
+		count = 0;
+		int i = 0;
+		while(true) {
+			if(i < length && b[i] == '"') {
+				int read = i + 1;
+				int write = read;
+				boolean closed = false;
+				while(read < length) {
+					char c = b[read];
+					if(c == '"') {
+						if(read + 1 < length && b[read + 1] == '"') {
+							b[write++] = '"';
+							read += 2;
+						}
+						else {
+							closed = true;
+							read++;
+							break;
+						}
+					}
+					else {
+						b[write++] = c;
+						read++;
+					}
+				}
+				if(!closed) throw new CsvRowException(count + 1, "Quoted field is not closed");
+				add(i + 1, write);
+				if(read == length) break;
+				if(b[read] != delimiter) throw new CsvRowException(count, "Quoted field must be followed by the delimiter");
+				i = read + 1;
+			}
+			else {
+				int start = i;
+				while(i < length && b[i] != delimiter) i++;
+				add(start, i);
+				if(i == length) break;
+				i++;
+			}
+		}
+		return count;
+	}
+	
+	private void add(int start, int end) {
+		if(count == starts.length) {
+			int[] s = new int[count * 2];
+			int[] e = new int[count * 2];
+			System.arraycopy(starts, 0, s, 0, count);
+			System.arraycopy(ends, 0, e, 0, count);
+			starts = s;
+			ends = e;
+		}
+		starts[count] = start;
+		ends[count] = end;
+		count++;
+	}
+	
+	/**
+	 * @return buffer holding the fields of the last tokenized line, valid until the next call to tokenize
+	 */
+	public char[] buffer() {
+		return buffer;
+	}
+	
+	/**
+	 * @param field index of the field from 0
+	 * @return offset of the first char of the field in the buffer
+	 */
+	public int start(int field) {
+		return starts[field];
+	}
+	
+	/**
+	 * @param field index of the field from 0
+	 * @return offset after the last char of the field in the buffer
+	 */
+	public int end(int field) {
+		return ends[field];
+	}
+	
+	/**
+	 * @param field index of the field from 0
+	 * @return the field as a new String
+	 */
+	public String field(int field) {
+		return new String(buffer, starts[field], ends[field] - starts[field]);
+	}
+	
+}
@@ -0,0 +1,95 @@
+package swedbank.TestAssignment.ingest;
+
+import java.math.BigDecimal;
+import java.nio.CharBuffer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Parsers for the usual csv values working directly on a char buffer.
+ * Plain decimals and yyyy-MM-ddTHH:mm:ss timestamps are parsed without intermediate objects,
+ * anything else falls back to the general BigDecimal and ISO_DATE_TIME parsers,
+ * so the results and the rejected values are the same as with the general parsers.</p>
+ */
+public final class FastParsers {
+	
+	/**
+	 * Digits an unscaled long can hold without overflow
+	 */
+	private static final int MAX_LONG_DIGITS = 18;
+	
+	private static final int DATE_TIME_LENGTH = 19;
+	
+	private FastParsers() {}
+	
+	/**
+	 * @return decimal with the same value and scale as new BigDecimal(buffer, start, end - start)
+	 * @throws NumberFormatException if the chars are not a decimal
+	 */
+	public static BigDecimal parseDecimal(char[] buffer, int start, int end) {
+		long unscaled = 0;
+		int digits = 0;
+		int scale = -1;
+		for(int i=start; i<end; i++) {
+			char c = buffer[i];
+			if(c >= '0' && c <= '9') {
+				if(++digits > MAX_LONG_DIGITS) return slowDecimal(buffer, start, end);
+				unscaled = unscaled * 10 + (c - '0');
+				if(scale >= 0) scale++;
+			}
+			else if(c == '.' && scale < 0) {
+				scale = 0;
+			}
+			else {
+				// sign, exponent or invalid char
+				return slowDecimal(buffer, start, end);
+			}
+		}
+		if(digits == 0) return slowDecimal(buffer, start, end);
+		return BigDecimal.valueOf(unscaled, scale < 0 ? 0 : scale);
+	}
+	
+	/**
+	 * @return date time equal to LocalDateTime.parse(chars, DateTimeFormatter.ISO_DATE_TIME)
+	 * @throws java.time.DateTimeException if the chars are not a valid date time
+	 */
+	public static LocalDateTime parseDateTime(char[] buffer, int start, int end) {
+		if(end - start != DATE_TIME_LENGTH
+				|| buffer[start + 4] != '-' || buffer[start + 7] != '-' || buffer[start + 10] != 'T'
+				|| buffer[start + 13] != ':' || buffer[start + 16] != ':') {
+			return slowDateTime(buffer, start, end);
+		}
+		int year = digits(buffer, start, 4);
+		int month = digits(buffer, start + 5, 2);
+		int day = digits(buffer, start + 8, 2);
+		int hour = digits(buffer, start + 11, 2);
+		int minute = digits(buffer, start + 14, 2);
+		int second = digits(buffer, start + 17, 2);
+		if((year | month | day | hour | minute | second) < 0) return slowDateTime(buffer, start, end);
+		return LocalDateTime.of(year, month, day, hour, minute, second);
+	}
+	
+	/**
+	 * @return value of param length digits from param start, -1 if one of them is not a digit
+	 */
+	private static int digits(char[] buffer, int start, int length) {
+		int value = 0;
+		for(int i=start; i<start+length; i++) {
+			int digit = buffer[i] - '0';
+			if(digit < 0 || digit > 9) return -1;
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+	
+	private static BigDecimal slowDecimal(char[] buffer, int start, int end) {
+		return new BigDecimal(buffer, start, end - start);
+	}
+	
+	private static LocalDateTime slowDateTime(char[] buffer, int start, int end) {
+		return LocalDateTime.parse(CharBuffer.wrap(buffer, start, end - start), DateTimeFormatter.ISO_DATE_TIME);
+	}
+	
+}
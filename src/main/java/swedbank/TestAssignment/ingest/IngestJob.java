@@ -0,0 +1,128 @@
+package swedbank.TestAssignment.ingest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import swedbank.TestAssignment.service.CsvIngestResult;
+import swedbank.TestAssignment.service.RejectedRow;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Csv ingest running in the background. Progress is read from the result
+ * while the ingest is still running.</p>
+ * @see IngestJobService
+ */
+public class IngestJob {
+	
+	/**
+	 * SKIPPED if the same file content has already been ingested
+	 */
+	public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED, SKIPPED }
+	
+	private final String id;
+	
+	private final String fileName;
+	
+	private final CsvIngestResult result;
+	
+	private final LocalDateTime submittedAt = LocalDateTime.now();
+	
+	private volatile LocalDateTime startedAt;
+	
+	private volatile LocalDateTime finishedAt;
+	
+	private volatile Status status = Status.QUEUED;
+	
+	/**
+	 * Error that stopped the job, null if there is none
+	 */
+	private volatile String error;
+	
+	public IngestJob(String id, String fileName, int chunkSize) {
+		this(id, fileName, new CsvIngestResult(chunkSize));
+	}
+	
+	public IngestJob(String id, String fileName, CsvIngestResult result) {
+		this.id = id;
+		this.fileName = fileName;
+		this.result = result;
+	}
+	
+	void started() {
+		this.startedAt = LocalDateTime.now();
+		this.status = Status.RUNNING;
+	}
+	
+	void finished(Status status, String error) {
+		this.error = error;
+		this.finishedAt = LocalDateTime.now();
+		this.status = status;
+	}
+	
+	public boolean isFinished() {
+		return status == Status.SUCCEEDED || status == Status.FAILED || status == Status.SKIPPED;
+	}
+	
+	/**
+	 * @return persisted rows per second from the start of the job until now or until it finished
+	 */
+	public double getRowsPerSecond() {
+		LocalDateTime start = startedAt;
+		if(start == null) return 0;
+		LocalDateTime end = finishedAt != null ? finishedAt : LocalDateTime.now();
+		long millis = Duration.between(start, end).toMillis();
+		return millis == 0 ? 0 : result.getRowsPersisted() * 1000.0 / millis;
+	}
+	
+	public String getId() {
+		return id;
+	}
+	public String getFileName() {
+		return fileName;
+	}
+	@JsonIgnore
+	public CsvIngestResult getResult() {
+		return result;
+	}
+	public long getRowsParsed() {
+		return result.getRowsParsed();
+	}
+	public long getRowsPersisted() {
+		return result.getRowsPersisted();
+	}
+	public LocalDateTime getSubmittedAt() {
+		return submittedAt;
+	}
+	public LocalDateTime getStartedAt() {
+		return startedAt;
+	}
+	public LocalDateTime getFinishedAt() {
+		return finishedAt;
+	}
+	public Status getStatus() {
+		return status;
+	}
+	public String getError() {
+		return error;
+	}
+	public int getChunkSize() {
+		return result.getChunkSize();
+	}
+	public long getRowsSkippedAsDuplicate() {
+		return result.getRowsSkippedAsDuplicate();
+	}
+	public long getRowsRejected() {
+		return result.getRowsRejected();
+	}
+	public List<RejectedRow> getRejectedRows() {
+		return result.getRejectedRows();
+	}
+	public String getRejectFileId() {
+		return result.getRejectFileId();
+	}
+	
+}
@@ -0,0 +1,205 @@
+package swedbank.TestAssignment.ingest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import swedbank.TestAssignment.ingest.IngestJob.Status;
+import swedbank.TestAssignment.service.CsvIngestResult;
+import swedbank.TestAssignment.service.DeduplicationService;
+import swedbank.TestAssignment.service.FuelConsumptionService;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Runs csv ingests in the background on a bounded executor and keeps their
+ * progress for a retention period after they finish</p>
+ */
+@Service
+public class IngestJobService {
+	
+	@Autowired
+	private FuelConsumptionService service;
+	
+	@Autowired
+	private DeduplicationService dedupService;
+	
+	@Value("${fuelconsumption.ingest.async.threads:2}")
+	private int threads;
+	
+	/**
+	 * Jobs waiting for a thread, more jobs are rejected
+	 */
+	@Value("${fuelconsumption.ingest.async.queue-capacity:10}")
+	private int queueCapacity;
+	
+	@Value("${fuelconsumption.ingest.async.retention-minutes:60}")
+	private long retentionMinutes;
+	
+	private final Map<String, IngestJob> jobs = new ConcurrentHashMap<String, IngestJob>();
+	
+	private ThreadPoolExecutor executor;
+	
+	@PostConstruct
+	public void start() {
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), new CustomizableThreadFactory("ingest-job-"));
+	}
+	
+	@PreDestroy
+	public void stop() {
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * Starts a chunked ingest of param file in the background. The file is deleted when the job finishes.
+	 * Compressed files are decompressed while they are read.
+	 * @param file csv file, owned by the job from now on
+	 * @param fileName name of the uploaded file
+	 * @param contentType content type of the uploaded file, may be null
+	 * @param settings empty result with the chunk size, dedup and reject settings, written by the job
+	 * @return queued job
+	 * @throws RejectedExecutionException if there are already too many jobs waiting
+	 * @see FuelConsumptionService#addFuelConsumptionsFromCsvFileInChunks(Scanner, swedbank.TestAssignment.service.CsvIngestResult)
+	 */
+	public IngestJob submit(File file, String fileName, String contentType, CsvIngestResult settings) {
+		IngestJob job = newJob(fileName, settings);
+		try {
+			executor.execute(() -> {
+				try {
+					run(job, skippingImportedFiles(file, fileName, result -> {
+						try(InputStream in = new FileInputStream(file);
+								Scanner s = new Scanner(CompressedInput.open(in, contentType, fileName))) {
+							service.addFuelConsumptionsFromCsvFileInChunks(s, result);
+						}
+					}));
+				}
+				finally {
+					file.delete();
+				}
+			});
+		}
+		catch(RejectedExecutionException e) {
+			jobs.remove(job.getId());
+			file.delete();
+			throw e;
+		}
+		return job;
+	}
+	
+	/**
+	 * Registers a queued job so that its progress can be looked up by {@link #getJob(String)}
+	 * @param fileName name of the ingested file
+	 * @param chunkSize number of rows persisted together
+	 * @return queued job
+	 */
+	public IngestJob newJob(String fileName, int chunkSize) {
+		return newJob(fileName, new CsvIngestResult(chunkSize));
+	}
+	
+	/**
+	 * Same as {@link #newJob(String, int)}
+	 * @param result empty result with the chunk size, dedup and reject settings of the job
+	 */
+	public IngestJob newJob(String fileName, CsvIngestResult result) {
+		if(result.getChunkSize() <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+		removeExpiredJobs();
+		IngestJob job = new IngestJob(UUID.randomUUID().toString(), fileName, result);
+		jobs.put(job.getId(), job);
+		return job;
+	}
+	
+	/**
+	 * Wraps param task so that it is skipped if its result is set to dedup and the content
+	 * of param file has already been ingested. The content is recorded when the task succeeds.
+	 * @param file file read by param task
+	 * @param fileName name recorded with the content
+	 * @param task ingest of param file
+	 * @return task setting the message {@link FuelConsumptionService#DUPLICATE_FILE} instead of ingesting a known file
+	 */
+	public IngestTask skippingImportedFiles(File file, String fileName, IngestTask task) {
+		return result -> {
+			if(!result.isDedup()) {
+				task.run(result);
+				return;
+			}
+			String digest;
+			try(InputStream in = new FileInputStream(file)) {
+				digest = dedupService.digest(in);
+			}
+			if(dedupService.findImportedFile(digest) != null) {
+				result.setMessage(FuelConsumptionService.DUPLICATE_FILE);
+				return;
+			}
+			task.run(result);
+			if("Successful".equals(result.getMessage())) dedupService.recordImportedFile(digest, fileName, result);
+		};
+	}
+	
+	/**
+	 * Runs param task on the calling thread and records the status of param job.
+	 * The job succeeds if the task finishes with the message "Successful" or
+	 * {@link FuelConsumptionService#SUCCESSFUL_WITH_REJECTED_ROWS} and is skipped
+	 * if it finishes with the message {@link FuelConsumptionService#DUPLICATE_FILE}. It fails if the task
+	 * throws, also with an Error.
+	 * @param job job returned by {@link #newJob(String, int)}
+	 * @param task ingest writing its progress to the result of the job
+	 */
+	public void run(IngestJob job, IngestTask task) {
+		job.started();
+		try {
+			task.run(job.getResult());
+			String message = job.getResult().getMessage();
+			if("Successful".equals(message) || FuelConsumptionService.SUCCESSFUL_WITH_REJECTED_ROWS.equals(message)) job.finished(Status.SUCCEEDED, null);
+			else if(FuelConsumptionService.DUPLICATE_FILE.equals(message)) job.finished(Status.SKIPPED, null);
+			else job.finished(Status.FAILED, message);
+		}
+		catch(Exception | Error e) {
+			// an Error such as OutOfMemoryError must not leave the job running forever
+			job.finished(Status.FAILED, e.getMessage() != null ? e.getMessage() : e.toString());
+		}
+	}
+	
+	/**
+	 * @param id job identifier
+	 * @return the job or null if there is no such job or it has expired
+	 */
+	public IngestJob getJob(String id) {
+		return jobs.get(id);
+	}
+	
+	private void removeExpiredJobs() {
+		LocalDateTime expiry = LocalDateTime.now().minusMinutes(retentionMinutes);
+		jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(expiry));
+	}
+	
+	/**
+	 * Ingest run by a job
+	 */
+	@FunctionalInterface
+	public interface IngestTask {
+		
+		/**
+		 * @param result progress of the job, its message must be set when the ingest ends
+		 */
+		void run(CsvIngestResult result) throws Exception;
+	}
+	
+}
@@ -0,0 +1,348 @@
+package swedbank.TestAssignment.ingest;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import swedbank.TestAssignment.domain.FuelConsumption;
+import swedbank.TestAssignment.service.CsvIngestResult;
+import swedbank.TestAssignment.service.FuelConsumptionService;
+import swedbank.TestAssignment.service.RejectedRow;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Imports csv files which are already on the server without uploading them.
+ * Every file is memory mapped and split into regions at line boundaries, regions are
+ * parsed, validated and persisted in parallel with the same rules as an upload.</p>
+ * <p>Files of a directory are imported at the same time, each file is an IngestJob
+ * so its status can be followed like an async upload. As in the parallel upload rows
+ * are persisted out of file order and a file stops at the first invalid row found,
+ * unless the job collects errors.</p>
+ * <p>Only regular files under fuelconsumption.import.root can be imported, import is disabled
+ * when it is not set. Paths are compared after resolving symbolic links, so a link can not
+ * lead out of the root.</p>
+ */
+@Component
+public class MappedCsvImporter {
+
+	/**
+	 * Largest region mapped at once, a mapping can not be larger than Integer.MAX_VALUE
+	 */
+	private static final long MAX_REGION_SIZE = 1L << 30;
+
+	@Autowired
+	private FuelConsumptionService service;
+
+	@Autowired
+	private IngestJobService jobService;
+
+	@Value("${fuelconsumption.import.root:}")
+	private String root;
+
+	/**
+	 * Files imported at the same time
+	 */
+	@Value("${fuelconsumption.import.files-in-parallel:4}")
+	private int filesInParallel;
+
+	/**
+	 * Threads parsing regions of the files, available processors if not positive
+	 */
+	@Value("${fuelconsumption.import.parallelism:0}")
+	private int parallelism;
+
+	private ExecutorService fileExecutor;
+
+	private ExecutorService regionExecutor;
+
+	@PostConstruct
+	public void start() {
+		int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+		fileExecutor = Executors.newFixedThreadPool(Math.max(1, filesInParallel), new CustomizableThreadFactory("csv-import-"));
+		regionExecutor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("csv-import-region-"));
+	}
+
+	@PreDestroy
+	public void stop() {
+		fileExecutor.shutdownNow();
+		regionExecutor.shutdownNow();
+	}
+
+	/**
+	 * @return true if fuelconsumption.import.root is set
+	 */
+	public boolean isEnabled() {
+		return !root.trim().isEmpty();
+	}
+
+	/**
+	 * Starts importing a csv file or all ".csv" files of a directory in the background
+	 * @param path file or directory relative to fuelconsumption.import.root
+	 * @param chunkSize number of rows persisted together
+	 * @return one queued job per file
+	 * @throws IllegalStateException if import is disabled
+	 * @throws IllegalArgumentException if param path is outside of the import root, does not exist or is
+	 * neither a directory nor a regular file
+	 * @throws IOException if the directory can not be listed
+	 */
+	public List<IngestJob> importPath(String path, int chunkSize) throws IOException {
+		return importPath(path, new CsvIngestResult(chunkSize));
+	}
+	
+	/**
+	 * Same as {@link #importPath(String, int)}
+	 * @param settings chunk size, dedup and reject settings copied to the result of every job
+	 * @see IngestJobService#skippingImportedFiles(java.io.File, String, IngestJobService.IngestTask)
+	 */
+	public List<IngestJob> importPath(String path, CsvIngestResult settings) throws IOException {
+		if(!isEnabled()) throw new IllegalStateException("Import is disabled, set fuelconsumption.import.root");
+		Path base = Paths.get(root).toRealPath();
+		Path target = base.resolve(path).normalize();
+		if(!target.startsWith(base)) throw new IllegalArgumentException("Path must be under the import root");
+		if(!Files.exists(target)) throw new IllegalArgumentException("No such file or directory: "+path);
+		target = target.toRealPath();
+		if(!target.startsWith(base)) throw new IllegalArgumentException("Path must be under the import root");
+
+		List<Path> files = new ArrayList<Path>();
+		if(Files.isDirectory(target)) {
+			try(DirectoryStream<Path> stream = Files.newDirectoryStream(target, "*.csv")) {
+				for(Path file : stream) {
+					if(!Files.exists(file)) continue;
+					Path real = file.toRealPath();
+					if(real.startsWith(base) && Files.isRegularFile(real)) files.add(real);
+				}
+			}
+		}
+		else if(Files.isRegularFile(target)) {
+			files.add(target);
+		}
+		else {
+			throw new IllegalArgumentException("Not a regular file: "+path);
+		}
+
+		List<IngestJob> jobs = new ArrayList<IngestJob>();
+		for(Path file : files) {
+			String fileName = base.relativize(file).toString();
+			IngestJob job = jobService.newJob(fileName, settings.copySettings());
+			fileExecutor.execute(() -> jobService.run(job,
+					jobService.skippingImportedFiles(file.toFile(), fileName, result -> importFile(file, result))));
+			jobs.add(job);
+		}
+		return jobs;
+	}
+
+	/**
+	 * Imports a single file on the calling thread, regions are parsed by the region executor
+	 * @param file csv file
+	 * @param result progress of the import
+	 */
+	public void importFile(Path file, CsvIngestResult result) throws IOException, InterruptedException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			MappedByteBuffer first = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_REGION_SIZE));
+			int headerEnd = nextLineBreak(first, 0, first.limit());
+			if(headerEnd == first.limit() && size > first.limit()) throw new IOException("Header line is too long");
+			String header = decode(first, 0, trimCarriageReturn(first, 0, headerEnd));
+			service.openRejectFile(result, header);
+			try {
+				importRegions(channel, header, headerEnd, result);
+			}
+			finally {
+				service.closeRejectFile(result);
+			}
+		}
+	}
+
+	private void importRegions(FileChannel channel, String header, int headerEnd, CsvIngestResult result) throws IOException, InterruptedException {
+		long size = channel.size();
+		List<Region> regions = split(channel, Math.min(headerEnd + 1, size), size);
+		// row numbers: count lines per region in parallel, then add up
+		List<Future<Integer>> counts = new ArrayList<Future<Integer>>();
+		for(Region region : regions) {
+			counts.add(regionExecutor.submit(() -> region.countLines()));
+		}
+		int row = 2;
+		for(int i=0; i<regions.size(); i++) {
+			regions.get(i).firstRow = row;
+			row += get(counts.get(i));
+		}
+
+		Run run = new Run(result);
+		List<Future<?>> parsing = new ArrayList<Future<?>>();
+		for(Region region : regions) {
+			parsing.add(regionExecutor.submit(() -> {
+				parse(region, service.newRowParser(header), run);
+				return null;
+			}));
+		}
+		for(Future<?> future : parsing) {
+			try {
+				future.get();
+			}
+			catch(ExecutionException e) {
+				run.fail(Integer.MAX_VALUE, "Import failed: "+e.getCause().getMessage());
+			}
+		}
+		result.setMessage(run.error != null ? run.error : service.successMessage(result));
+	}
+
+	private void parse(Region region, CsvRowParser parser, Run run) {
+		int chunkSize = run.result.getChunkSize();
+		List<FuelConsumption> chunk = new ArrayList<FuelConsumption>(chunkSize);
+		MappedByteBuffer buffer = region.buffer;
+		int limit = buffer.limit();
+		int row = region.firstRow;
+		int start = 0;
+		while(start < limit && !run.stopped) {
+			int lineBreak = nextLineBreak(buffer, start, limit);
+			int end = trimCarriageReturn(buffer, start, lineBreak);
+			RejectedRow rejected = service.parseRow(parser, buffer, start, end, row, chunk);
+			if(rejected != null) {
+				if(!run.result.isCollectErrors()) {
+					run.fail(row, rejected.getMessage());
+					return;
+				}
+				run.result.rejected(rejected, run.result.getRejectFile() != null ? decode(buffer, start, end) : null);
+			}
+			if(chunk.size() == chunkSize) persist(chunk, run);
+			row++;
+			start = lineBreak + 1;
+		}
+		if(!chunk.isEmpty() && !run.stopped) persist(chunk, run);
+	}
+
+	private void persist(List<FuelConsumption> chunk, Run run) {
+		run.result.rowsParsed(chunk.size());
+		service.persistChunk(chunk, run.result);
+	}
+
+	/**
+	 * Splits the bytes between param start and param end into regions ending with a line break,
+	 * about one region per thread but not larger than MAX_REGION_SIZE
+	 */
+	private List<Region> split(FileChannel channel, long start, long end) throws IOException {
+		List<Region> regions = new ArrayList<Region>();
+		int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+		long target = Math.min(MAX_REGION_SIZE / 2, Math.max(1, (end - start) / threads));
+		while(start < end) {
+			long regionEnd = Math.min(end, start + target);
+			if(regionEnd < end) {
+				// extend the region to the end of its last line
+				MappedByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, regionEnd, Math.min(end - regionEnd, MAX_REGION_SIZE / 2));
+				int lineBreak = nextLineBreak(tail, 0, tail.limit());
+				if(lineBreak == tail.limit() && regionEnd + tail.limit() < end) throw new IOException("Line is too long");
+				regionEnd = Math.min(end, regionEnd + lineBreak + 1);
+			}
+			regions.add(new Region(channel.map(FileChannel.MapMode.READ_ONLY, start, regionEnd - start)));
+			start = regionEnd;
+		}
+		return regions;
+	}
+
+	/**
+	 * @return offset of the next '\n' from param start, param limit if there is none
+	 */
+	private static int nextLineBreak(MappedByteBuffer buffer, int start, int limit) {
+		int i = start;
+		while(i < limit && buffer.get(i) != '\n') i++;
+		return i;
+	}
+
+	/**
+	 * @return param end without a '\r' before it
+	 */
+	private static int trimCarriageReturn(MappedByteBuffer buffer, int start, int end) {
+		return end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+	}
+
+	private static String decode(MappedByteBuffer buffer, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for(int i=0; i<bytes.length; i++) bytes[i] = buffer.get(start + i);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static <T> T get(Future<T> future) throws IOException, InterruptedException {
+		try {
+			return future.get();
+		}
+		catch(ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Mapped part of a file which starts at a line and ends with a line break or at the end of the file
+	 */
+	private static class Region {
+
+		final MappedByteBuffer buffer;
+
+		/**
+		 * Row number of the first line in the file starting from 1 for the header
+		 */
+		int firstRow;
+
+		Region(MappedByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		int countLines() {
+			int limit = buffer.limit();
+			int lines = 0;
+			for(int i=0; i<limit; i++) {
+				if(buffer.get(i) == '\n') lines++;
+			}
+			// last line of the file without a line break
+			if(limit > 0 && buffer.get(limit - 1) != '\n') lines++;
+			return lines;
+		}
+	}
+
+	/**
+	 * State of the import of one file shared by its regions
+	 */
+	private static class Run {
+
+		final CsvIngestResult result;
+
+		volatile boolean stopped;
+
+		private int errorRow = Integer.MAX_VALUE;
+
+		String error;
+
+		Run(CsvIngestResult result) {
+			this.result = result;
+		}
+
+		synchronized void fail(int row, String message) {
+			stopped = true;
+			if(error == null || row < errorRow) {
+				errorRow = row;
+				error = message;
+			}
+		}
+	}
+
+}
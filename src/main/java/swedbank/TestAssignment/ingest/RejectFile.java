@@ -0,0 +1,85 @@
+package swedbank.TestAssignment.ingest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import swedbank.TestAssignment.service.RejectedRow;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Csv file with the rejected rows of an ingest. It has the header of the ingested file
+ * followed by the columns Row and Error, so a fixed reject file can be uploaded again.
+ * Rows can be written by several threads.</p>
+ * @see RejectFileStore
+ */
+public class RejectFile {
+
+	private final String id;
+
+	private final Path path;
+
+	private final char delimiter;
+
+	private final BufferedWriter writer;
+
+	private volatile LocalDateTime closedAt;
+
+	RejectFile(String id, Path path, char delimiter, String header) throws IOException {
+		this.id = id;
+		this.path = path;
+		this.delimiter = delimiter;
+		this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+		writer.write(header+delimiter+"Row"+delimiter+"Error\n");
+	}
+
+	/**
+	 * @param rejected position and error of the row
+	 * @param line content of the row
+	 */
+	public synchronized void write(RejectedRow rejected, String line) {
+		try {
+			writer.write(line+delimiter+rejected.getRow()+delimiter+quote(rejected.getError())+"\n");
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Flushes the rows, the file can be downloaded afterwards
+	 */
+	public synchronized void close() {
+		if(closedAt != null) return;
+		try {
+			writer.close();
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		closedAt = LocalDateTime.now();
+	}
+
+	private static String quote(String value) {
+		return "\""+String.valueOf(value).replace("\"", "\"\"")+"\"";
+	}
+
+	public String getId() {
+		return id;
+	}
+	public Path getPath() {
+		return path;
+	}
+	public boolean isClosed() {
+		return closedAt != null;
+	}
+	public LocalDateTime getClosedAt() {
+		return closedAt;
+	}
+
+}
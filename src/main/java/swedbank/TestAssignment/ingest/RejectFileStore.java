@@ -0,0 +1,80 @@
+package swedbank.TestAssignment.ingest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Keeps the reject files of csv ingests in temporary files for a retention period
+ * after they are closed</p>
+ */
+@Component
+public class RejectFileStore {
+
+	@Value("${fuelconsumption.ingest.delimiter:;}")
+	private char delimiter;
+
+	@Value("${fuelconsumption.ingest.rejects.retention-minutes:60}")
+	private long retentionMinutes;
+
+	private final Map<String, RejectFile> files = new ConcurrentHashMap<String, RejectFile>();
+
+	/**
+	 * @param header header line of the ingested file
+	 * @return new open reject file
+	 * @throws IOException if the temporary file can not be created
+	 */
+	public RejectFile create(String header) throws IOException {
+		removeExpiredFiles();
+		Path path = Files.createTempFile("rejects-", ".csv");
+		RejectFile file = new RejectFile(UUID.randomUUID().toString(), path, delimiter, header);
+		files.put(file.getId(), file);
+		return file;
+	}
+
+	/**
+	 * @param id reject file identifier
+	 * @return the reject file or null if there is no such file or it has expired
+	 */
+	public RejectFile get(String id) {
+		return files.get(id);
+	}
+
+	@PreDestroy
+	public void deleteAll() {
+		files.values().forEach(this::delete);
+		files.clear();
+	}
+
+	private void removeExpiredFiles() {
+		LocalDateTime expiry = LocalDateTime.now().minusMinutes(retentionMinutes);
+		files.values().removeIf(file -> {
+			if(!file.isClosed() || !file.getClosedAt().isBefore(expiry)) return false;
+			delete(file);
+			return true;
+		});
+	}
+
+	private void delete(RejectFile file) {
+		try {
+			file.close();
+			Files.deleteIfExists(file.getPath());
+		}
+		catch(IOException | UncheckedIOException e) {
+			// left to the temporary directory cleanup
+		}
+	}
+
+}
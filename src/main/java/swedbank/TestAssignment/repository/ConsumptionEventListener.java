@@ -0,0 +1,45 @@
+package swedbank.TestAssignment.repository;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PrePersist;
+import javax.persistence.PreRemove;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import swedbank.TestAssignment.domain.ConsumptionEvent;
+import swedbank.TestAssignment.domain.FuelConsumption;
+import swedbank.TestAssignment.service.ConsumptionEventLog;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Entity listener appending every inserted and deleted FuelConsumption to the event log.
+ * Hibernate creates it through Spring while the entity manager factory is built, so the log
+ * is looked up on first use. The listener keeps no state. Post callbacks are used because
+ * events keep the identifiers, which are generated after PrePersist. Post callbacks run when Hibernate flushes,
+ * which may be during the commit, so the transaction is already tracked by the log in the pre callbacks.</p>
+ */
+public class ConsumptionEventListener {
+	
+	@Autowired
+	private ObjectProvider<ConsumptionEventLog> log;
+	
+	@PrePersist
+	@PreRemove
+	void onChange(FuelConsumption fc) {
+		log.getObject().begin();
+	}
+	
+	@PostPersist
+	void onPersist(FuelConsumption fc) {
+		log.getObject().append(new ConsumptionEvent(ConsumptionEvent.Type.ADDED, fc));
+	}
+	
+	@PostRemove
+	void onRemove(FuelConsumption fc) {
+		log.getObject().append(new ConsumptionEvent(ConsumptionEvent.Type.REMOVED, fc));
+	}
+	
+}
@@ -0,0 +1,14 @@
+package swedbank.TestAssignment.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import swedbank.TestAssignment.domain.ConsumptionEvent;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Repository methods to operate ConsumptionEvent table, entries are only inserted</p>
+ */
+public interface ConsumptionEventRepository extends JpaRepository<ConsumptionEvent, Long> {
+	
+}
@@ -0,0 +1,14 @@
+package swedbank.TestAssignment.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import swedbank.TestAssignment.domain.ConsumptionPartition;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Repository methods to operate ConsumptionPartition table</p>
+ */
+public interface ConsumptionPartitionRepository extends JpaRepository<ConsumptionPartition, Integer> {
+	
+}
@@ -0,0 +1,40 @@
+package swedbank.TestAssignment.repository;
+
+import javax.persistence.PostLoad;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import swedbank.TestAssignment.domain.FuelConsumption;
+import swedbank.TestAssignment.service.Dimensions;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Entity listener translating driver identifiers and fuel types of FuelConsumption to the keys of
+ * the Driver and FuelType tables when it is saved, and back when it is loaded.
+ * It is registered first, so the other listeners see both.</p>
+ * @see ConsumptionEventListener
+ */
+public class DimensionListener {
+
+	@Autowired
+	private ObjectProvider<Dimensions> dimensions;
+
+	@PrePersist
+	@PreUpdate
+	void onSave(FuelConsumption fc) {
+		Dimensions d = dimensions.getObject();
+		if(fc.getDriverKey() == 0) fc.setDriverKey(d.driverKey(fc.getDriverID()));
+		if(fc.getFuelTypeKey() == 0) fc.setFuelTypeKey(d.fuelTypeKey(fc.getFuelType()));
+	}
+
+	@PostLoad
+	void onLoad(FuelConsumption fc) {
+		Dimensions d = dimensions.getObject();
+		fc.loadNames(d.driverID(fc.getDriverKey()), d.fuelType(fc.getFuelTypeKey()));
+	}
+
+}
@@ -0,0 +1,18 @@
+package swedbank.TestAssignment.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import swedbank.TestAssignment.domain.Driver;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Repository methods to operate Driver table</p>
+ */
+public interface DriverRepository extends JpaRepository<Driver, Integer> {
+	
+	Optional<Driver> findByName(String name);
+	
+}
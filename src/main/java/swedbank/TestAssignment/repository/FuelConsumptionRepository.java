@@ -1,9 +1,19 @@
 package swedbank.TestAssignment.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import swedbank.TestAssignment.domain.FuelConsumption;
 
@@ -12,7 +22,45 @@ import swedbank.TestAssignment.domain.FuelConsumption;
  * @author denizalp@ut.ee
  * <p>Repository methods to operate FuelConsumption table</p>
  */
-public interface FuelConsumptionRepository extends JpaRepository<FuelConsumption, Long> {
+public interface FuelConsumptionRepository extends JpaRepository<FuelConsumption, Long>, FuelConsumptionRepositoryCustom {
+	
+	/**
+	 * Select of FuelConsumptionView, queries returning views append their from clause, which joins
+	 * the Driver table as d and the FuelType table as ft for the names of the keys
+	 */
+	String VIEW = "select new swedbank.TestAssignment.repository.FuelConsumptionView(fc.id, ft.name, fc.pricePerLitter, fc.volume, fc.date, d.name, fc.totalPrice, fc.month, fc.yearMonth) ";
+	
+	/**
+	 * Must be called in a transaction and the stream must be closed
+	 * @return fingerprints of all registered fuel consumptions
+	 */
+	@QueryHints(@QueryHint(name=HINT_FETCH_SIZE, value="1000"))
+	@Query("select fc.fingerprint from FuelConsumption fc")
+	Stream<Long> streamAllFingerprints();
+	
+	/**
+	 * Must be called in a transaction and the stream must be closed
+	 * @param yearMonthKey year and month as yyyyMM
+	 * @return fingerprints of the fuel consumptions of param yearMonthKey
+	 */
+	@QueryHints(@QueryHint(name=HINT_FETCH_SIZE, value="1000"))
+	@Query("select fc.fingerprint from FuelConsumption fc where fc.yearMonth = ?1")
+	Stream<Long> streamFingerprintsByYearMonth(int yearMonthKey);
+	
+	/**
+	 * Must be called in a transaction and the stream must be closed. Rows are fetched
+	 * from a database cursor.
+	 * @return views of all fuel consumptions in identifier order
+	 */
+	@QueryHints(@QueryHint(name=HINT_FETCH_SIZE, value="1000"))
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey order by fc.id")
+	Stream<FuelConsumptionView> streamAllViews();
+	
+	/**
+	 * @return sums of volume, pricePerLitter and totalPrice for each driver, year-month and fuel type
+	 */
+	@Query("select new swedbank.TestAssignment.repository.FuelStatTotals(d.name, fc.yearMonth, ft.name, sum(fc.volume), sum(fc.pricePerLitter), sum(fc.totalPrice), count(fc)) from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey group by fc.driverKey, d.name, fc.yearMonth, fc.fuelTypeKey, ft.name")
+	List<FuelStatTotals> computeStatTotals();
 	
 	/**
 	 * 
@@ -29,34 +77,212 @@ public interface FuelConsumptionRepository extends JpaRepository<FuelConsumption
 	 * @return list of fuel consumptions that have been registered at param month
 	 * for param driverID
 	 */
-	@Query("select fc from FuelConsumption fc where fc.month = ?1 and fc.driverID = ?2")
+	@Query("select fc from FuelConsumption fc, Driver d where d.id = fc.driverKey and fc.month = ?1 and d.name = ?2")
 	List<FuelConsumption> findAllByMonthForSingleDriver(int month, String driverID);
 	
+	/**
+	 * 
+	 * @param yearMonthKey year and month as yyyyMM
+	 * @return list of fuel consumptions that have been registered at param yearMonthKey, read with the year-month index
+	 * @see swedbank.TestAssignment.util.YearMonthKey
+	 */
+	@Query("select fc from FuelConsumption fc where fc.yearMonth = ?1")
+	List<FuelConsumption> findAllByYearMonth(int yearMonthKey);
+	
+	/**
+	 * 
+	 * @param yearMonthKey year and month as yyyyMM
+	 * @param driverID driver identifier
+	 * @return list of fuel consumptions that have been registered at param yearMonthKey
+	 * for param driverID
+	 */
+	@Query("select fc from FuelConsumption fc, Driver d where d.id = fc.driverKey and fc.yearMonth = ?1 and d.name = ?2")
+	List<FuelConsumption> findAllByYearMonthForSingleDriver(int yearMonthKey, String driverID);
+	
+	/**
+	 * 
+	 * @param yearMonthKeys partitions as yyyyMM, each one read as a range of the year-month index
+	 * @return list of fuel consumptions that have been registered at one of param yearMonthKeys
+	 * @see swedbank.TestAssignment.service.PartitionCatalog
+	 */
+	@Query("select fc from FuelConsumption fc where fc.yearMonth in ?1")
+	List<FuelConsumption> findAllByYearMonthIn(Collection<Integer> yearMonthKeys);
+	
+	/**
+	 * 
+	 * @param yearMonthKeys partitions as yyyyMM
+	 * @param driverID driver identifier
+	 * @return list of fuel consumptions that have been registered at one of param yearMonthKeys
+	 * for param driverID
+	 */
+	@Query("select fc from FuelConsumption fc, Driver d where d.id = fc.driverKey and fc.yearMonth in ?1 and d.name = ?2")
+	List<FuelConsumption> findAllByYearMonthInForSingleDriver(Collection<Integer> yearMonthKeys, String driverID);
+	
+	/**
+	 * @return year-months of all fuel consumptions as yyyyMM, read from the year-month index
+	 */
+	@Query("select distinct fc.yearMonth from FuelConsumption fc")
+	List<Integer> findAllYearMonths();
+	
+	/**
+	 * Deletes a partition with one statement on the year-month index, without loading the fuel consumptions
+	 * or running their entity listeners
+	 * @param yearMonthKey year and month as yyyyMM
+	 * @return number of deleted fuel consumptions
+	 */
+	@Modifying
+	@Query("delete from FuelConsumption fc where fc.yearMonth = ?1")
+	int deleteByYearMonth(int yearMonthKey);
+	
+	/**
+	 * Must be called in a transaction and the stream must be closed
+	 * @param yearMonthKey year and month as yyyyMM
+	 * @return views of the fuel consumptions of param yearMonthKey in identifier order
+	 */
+	@QueryHints(@QueryHint(name=HINT_FETCH_SIZE, value="1000"))
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.yearMonth = ?1 order by fc.id")
+	Stream<FuelConsumptionView> streamViewsByYearMonth(int yearMonthKey);
+	
+	/**
+	 * Views of {@link #findAllByMonth(int)}
+	 */
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.month = ?1")
+	List<FuelConsumptionView> findViewsByMonth(int month);
+	
+	/**
+	 * Views of {@link #findAllByMonthForSingleDriver(int, String)}
+	 */
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.month = ?1 and d.name = ?2")
+	List<FuelConsumptionView> findViewsByMonthForSingleDriver(int month, String driverID);
+	
+	/**
+	 * Views of {@link #findAllByYearMonth(int)}
+	 */
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.yearMonth = ?1")
+	List<FuelConsumptionView> findViewsByYearMonth(int yearMonthKey);
+	
+	/**
+	 * Views of {@link #findAllByYearMonthForSingleDriver(int, String)}
+	 */
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.yearMonth = ?1 and d.name = ?2")
+	List<FuelConsumptionView> findViewsByYearMonthForSingleDriver(int yearMonthKey, String driverID);
+	
+	/**
+	 * Views of {@link #findAllByYearMonthIn(Collection)}
+	 */
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.yearMonth in ?1")
+	List<FuelConsumptionView> findViewsByYearMonthIn(Collection<Integer> yearMonthKeys);
+	
+	/**
+	 * Views of {@link #findAllByYearMonthInForSingleDriver(Collection, String)}
+	 */
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.yearMonth in ?1 and d.name = ?2")
+	List<FuelConsumptionView> findViewsByYearMonthInForSingleDriver(Collection<Integer> yearMonthKeys, String driverID);
+	
+	/**
+	 * Keyset page of a date range, read as a range of the year-month index, the dates filter the first and last month of it
+	 * @param fromYearMonth year-month key of param from
+	 * @param toYearMonth year-month key of the last date before param to
+	 * @param from start of the range, inclusive
+	 * @param to end of the range, exclusive
+	 * @param afterDate date of the last fuel consumption of the previous page, param from for the first page
+	 * @param afterId identifier of the last fuel consumption of the previous page, 0 for the first page
+	 * @param page maximum number of results, the page number must be 0
+	 * @return views of the fuel consumptions of the range after param afterDate and param afterId in date and identifier order
+	 * @see swedbank.TestAssignment.util.YearMonthKey
+	 */
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.yearMonth between ?1 and ?2 and fc.date >= ?3 and fc.date < ?4 "
+			+ "and (fc.date > ?5 or (fc.date = ?5 and fc.id > ?6)) order by fc.date, fc.id")
+	List<FuelConsumptionView> findPageInRangeAfter(int fromYearMonth, int toYearMonth, LocalDateTime from, LocalDateTime to,
+			LocalDateTime afterDate, long afterId, Pageable page);
+	
+	/**
+	 * Keyset page of {@link #findPageInRangeAfter(int, int, LocalDateTime, LocalDateTime, LocalDateTime, long, Pageable)} for param driverID,
+	 * read from the driver and year-month index
+	 */
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.yearMonth between ?1 and ?2 and fc.date >= ?3 and fc.date < ?4 "
+			+ "and d.name = ?5 and (fc.date > ?6 or (fc.date = ?6 and fc.id > ?7)) order by fc.date, fc.id")
+	List<FuelConsumptionView> findPageInRangeForSingleDriverAfter(int fromYearMonth, int toYearMonth, LocalDateTime from, LocalDateTime to,
+			String driverID, LocalDateTime afterDate, long afterId, Pageable page);
+	
+	/**
+	 * Must be called in a transaction and the stream must be closed. Rows are fetched from a database cursor.
+	 * @return views of the date range of {@link #findPageInRangeAfter(int, int, LocalDateTime, LocalDateTime, LocalDateTime, long, Pageable)} in no particular order
+	 */
+	@QueryHints(@QueryHint(name=HINT_FETCH_SIZE, value="1000"))
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.yearMonth between ?1 and ?2 and fc.date >= ?3 and fc.date < ?4")
+	Stream<FuelConsumptionView> streamViewsInRange(int fromYearMonth, int toYearMonth, LocalDateTime from, LocalDateTime to);
+	
+	/**
+	 * Must be called in a transaction and the stream must be closed. Rows are fetched from a database cursor.
+	 * @return views of the date range of {@link #findPageInRangeForSingleDriverAfter(int, int, LocalDateTime, LocalDateTime, String, LocalDateTime, long, Pageable)} in no particular order
+	 */
+	@QueryHints(@QueryHint(name=HINT_FETCH_SIZE, value="1000"))
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.yearMonth between ?1 and ?2 and fc.date >= ?3 and fc.date < ?4 and d.name = ?5")
+	Stream<FuelConsumptionView> streamViewsInRangeForSingleDriver(int fromYearMonth, int toYearMonth, LocalDateTime from, LocalDateTime to, String driverID);
+	
+	/**
+	 * Keyset page, read from the primary key index starting after param after
+	 * @param after identifier of the last fuel consumption of the previous page, 0 for the first page
+	 * @param page maximum number of results, the page number must be 0
+	 * @return views of the fuel consumptions with identifiers greater than param after in identifier order
+	 */
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.id > ?1 order by fc.id")
+	List<FuelConsumptionView> findPageAfter(long after, Pageable page);
+	
+	/**
+	 * Keyset page of {@link #findAllByMonth(int)}
+	 * @see #findPageAfter(long, Pageable)
+	 */
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.month = ?1 and fc.id > ?2 order by fc.id")
+	List<FuelConsumptionView> findPageByMonthAfter(int month, long after, Pageable page);
+	
+	/**
+	 * Keyset page of {@link #findAllByMonthForSingleDriver(int, String)}
+	 * @see #findPageAfter(long, Pageable)
+	 */
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.month = ?1 and d.name = ?2 and fc.id > ?3 order by fc.id")
+	List<FuelConsumptionView> findPageByMonthForSingleDriverAfter(int month, String driverID, long after, Pageable page);
+	
+	/**
+	 * Keyset page of {@link #findAllByYearMonth(int)}
+	 * @see #findPageAfter(long, Pageable)
+	 */
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.yearMonth = ?1 and fc.id > ?2 order by fc.id")
+	List<FuelConsumptionView> findPageByYearMonthAfter(int yearMonthKey, long after, Pageable page);
+	
+	/**
+	 * Keyset page of {@link #findAllByYearMonthForSingleDriver(int, String)}
+	 * @see #findPageAfter(long, Pageable)
+	 */
+	@Query(VIEW + "from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and fc.yearMonth = ?1 and d.name = ?2 and fc.id > ?3 order by fc.id")
+	List<FuelConsumptionView> findPageByYearMonthForSingleDriverAfter(int yearMonthKey, String driverID, long after, Pageable page);
+	
 	/**
 	 * @return list of TotalSpentMoneyByMonth<br>
-	 * TotalSpentMoneyByMonth is a class with fields month and total price spent on that month<br>
+	 * TotalSpentMoneyByMonth is a class with fields month, year-month and total price spent on that month<br>
 	 * This class is used because it is easier to operate the result with this than an Object[]
 	 */
-	@Query("select new swedbank.TestAssignment.repository.TotalSpentMoneyByMonth(fc.month, sum(fc.totalPrice)) from FuelConsumption fc group by fc.month")
+	@Query("select new swedbank.TestAssignment.repository.TotalSpentMoneyByMonth(fc.month, sum(fc.totalPrice), fc.yearMonth) from FuelConsumption fc group by fc.yearMonth, fc.month order by fc.yearMonth")
 	List<TotalSpentMoneyByMonth> findTotalPricesGroupedByMonth();
 	
 	/**
 	 * @param driverID driver identifier
 	 * @return list of TotalSpentMoneyByMonth for param driver<br>
-	 * TotalSpentMoneyByMonth is a class with fields month and total price spent on that month<br>
+	 * TotalSpentMoneyByMonth is a class with fields month, year-month and total price spent on that month<br>
 	 * This class is used because it is easier to operate the result with this than an Object[]
 	 */
-	@Query("select new swedbank.TestAssignment.repository.TotalSpentMoneyByMonth(fc.month, sum(fc.totalPrice)) from FuelConsumption fc where fc.driverID = ?1 group by fc.month")
+	@Query("select new swedbank.TestAssignment.repository.TotalSpentMoneyByMonth(fc.month, sum(fc.totalPrice), fc.yearMonth) from FuelConsumption fc, Driver d where d.id = fc.driverKey and d.name = ?1 group by fc.yearMonth, fc.month order by fc.yearMonth")
 	List<TotalSpentMoneyByMonth> findTotalPricesGroupedByMonthForSingleDriver(String driverID);
 	
 	/**
 	 * 
 	 * @return list of StatByMonthAndFuelType<br>
 	 * StatByMonthAndFuelType is a class with fields fuel type, total volume for this fuel type, average price per litter
-	 * for this fuel type, total price spent on this fuel type and month for the calculations<br>
+	 * for this fuel type, total price spent on this fuel type and the month and year-month of the calculations<br>
 	 * This class is used because it is easier to operate the result with this than an Object[]
 	 */
-	@Query("select new swedbank.TestAssignment.repository.StatByMonthAndFuelType(fc.fuelType, sum(fc.volume), avg(fc.pricePerLitter), sum(fc.totalPrice), fc.month) from FuelConsumption fc group by fc.month, fc.fuelType")
+	@Query("select new swedbank.TestAssignment.repository.StatByMonthAndFuelType(ft.name, sum(fc.volume), avg(fc.pricePerLitter), sum(fc.totalPrice), fc.month, fc.yearMonth) from FuelConsumption fc, FuelType ft where ft.id = fc.fuelTypeKey group by fc.yearMonth, fc.month, fc.fuelTypeKey, ft.name order by fc.yearMonth, ft.name")
 	List<StatByMonthAndFuelType> getStatisticsGroupedByFuelType();
 	
 	/**
@@ -64,11 +290,11 @@ public interface FuelConsumptionRepository extends JpaRepository<FuelConsumption
 	 * @param driverID driver identifier
 	 * @return list of StatByMonthAndFuelType for param driver<br>
 	 * StatByMonthAndFuelType is a class with fields fuel type, total volume for this fuel type, average price per litter
-	 * for this fuel type, total price spent on this fuel type and month for the calculations<br>
+	 * for this fuel type, total price spent on this fuel type and the month and year-month of the calculations<br>
 	 * This class is used because it is easier to operate the result with this than an Object[]
 	 *
 	 */
-	@Query("select new swedbank.TestAssignment.repository.StatByMonthAndFuelType(fc.fuelType, sum(fc.volume), avg(fc.pricePerLitter), sum(fc.totalPrice), fc.month) from FuelConsumption fc where fc.driverID = ?1 group by fc.month, fc.fuelType")
+	@Query("select new swedbank.TestAssignment.repository.StatByMonthAndFuelType(ft.name, sum(fc.volume), avg(fc.pricePerLitter), sum(fc.totalPrice), fc.month, fc.yearMonth) from FuelConsumption fc, Driver d, FuelType ft where d.id = fc.driverKey and ft.id = fc.fuelTypeKey and d.name = ?1 group by fc.yearMonth, fc.month, fc.fuelTypeKey, ft.name order by fc.yearMonth, ft.name")
 	List<StatByMonthAndFuelType> getStatisticsGroupedByFuelTypeForSingleDriver(String driverID);
 	
 }
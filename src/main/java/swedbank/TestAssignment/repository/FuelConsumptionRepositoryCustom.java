@@ -0,0 +1,23 @@
+package swedbank.TestAssignment.repository;
+
+import java.util.List;
+
+import swedbank.TestAssignment.domain.FuelConsumption;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Repository methods which are implemented with the entity manager directly</p>
+ * @see FuelConsumptionRepositoryImpl
+ */
+public interface FuelConsumptionRepositoryCustom {
+	
+	/**
+	 * Inserts new fuel consumptions with JDBC batching. Persistence context is flushed
+	 * and cleared after every batch, so the registered entities are detached.
+	 * @param list of new fuel consumptions
+	 * @return param list with identifiers assigned
+	 */
+	List<FuelConsumption> saveAllInBatches(List<FuelConsumption> list);
+	
+}
@@ -0,0 +1,44 @@
+package swedbank.TestAssignment.repository;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+
+import swedbank.TestAssignment.domain.FuelConsumption;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Entity manager based implementation of FuelConsumptionRepositoryCustom</p>
+ */
+public class FuelConsumptionRepositoryImpl implements FuelConsumptionRepositoryCustom {
+	
+	@PersistenceContext
+	private EntityManager em;
+	
+	/**
+	 * Same as hibernate.jdbc.batch_size so that every flush sends full batches
+	 */
+	@Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+	private int batchSize;
+	
+	@Override
+	@Transactional
+	public List<FuelConsumption> saveAllInBatches(List<FuelConsumption> list) {
+		for(int i=0; i<list.size(); i++) {
+			em.persist(list.get(i));
+			if((i+1) % batchSize == 0) {
+				em.flush();
+				em.clear();
+			}
+		}
+		em.flush();
+		em.clear();
+		return list;
+	}
+	
+}
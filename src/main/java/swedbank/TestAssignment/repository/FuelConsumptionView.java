@@ -0,0 +1,73 @@
+package swedbank.TestAssignment.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+import swedbank.TestAssignment.util.YearMonthKey;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Read-only copy of a FuelConsumption for listing, built by a constructor expression so that
+ * no entity is hydrated, snapshotted or kept in the persistence context. Serialised to the
+ * same JSON as FuelConsumption.</p>
+ * @see FuelConsumptionRepository#VIEW
+ */
+public class FuelConsumptionView {
+
+	private final long id;
+	private final String fuelType;
+	private final BigDecimal pricePerLitter;
+	private final BigDecimal volume;
+	private final LocalDateTime date;
+	private final String driverID;
+	private final BigDecimal totalPrice;
+	private final int month;
+	private final YearMonth yearMonth;
+
+	/**
+	 * @param yearMonthKey year and month as yyyyMM
+	 * @see YearMonthKey
+	 */
+	public FuelConsumptionView(long id, String fuelType, BigDecimal pricePerLitter, BigDecimal volume,
+			LocalDateTime date, String driverID, BigDecimal totalPrice, int month, int yearMonthKey) {
+		this.id = id;
+		this.fuelType = fuelType;
+		this.pricePerLitter = pricePerLitter;
+		this.volume = volume;
+		this.date = date;
+		this.driverID = driverID;
+		this.totalPrice = totalPrice;
+		this.month = month;
+		this.yearMonth = yearMonthKey == 0 ? null : YearMonthKey.toYearMonth(yearMonthKey);
+	}
+
+	public long getId() {
+		return id;
+	}
+	public String getFuelType() {
+		return fuelType;
+	}
+	public BigDecimal getPricePerLitter() {
+		return pricePerLitter;
+	}
+	public BigDecimal getVolume() {
+		return volume;
+	}
+	public LocalDateTime getDate() {
+		return date;
+	}
+	public String getDriverID() {
+		return driverID;
+	}
+	public BigDecimal getTotalPrice() {
+		return totalPrice;
+	}
+	public int getMonth() {
+		return month;
+	}
+	public YearMonth getYearMonth() {
+		return yearMonth;
+	}
+}
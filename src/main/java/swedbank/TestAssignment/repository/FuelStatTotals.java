@@ -0,0 +1,66 @@
+package swedbank.TestAssignment.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Sums of the fuel consumptions of a driver for a year-month and fuel type</p>
+ * @see FuelConsumptionRepository#computeStatTotals()
+ */
+public class FuelStatTotals {
+	
+	private String driverID;
+	
+	/**
+	 * Year and month as yyyyMM
+	 */
+	private int yearMonth;
+	
+	private String fuelType;
+	
+	private BigDecimal totalVolume;
+	
+	/**
+	 * Sum of pricePerLitter, divided by count for the average
+	 */
+	private BigDecimal totalPricePerLitter;
+	
+	private BigDecimal totalPrice;
+	
+	private long count;
+	
+	public FuelStatTotals(String driverID, int yearMonth, String fuelType, BigDecimal totalVolume,
+			BigDecimal totalPricePerLitter, BigDecimal totalPrice, long count) {
+		this.driverID = driverID;
+		this.yearMonth = yearMonth;
+		this.fuelType = fuelType;
+		this.totalVolume = totalVolume;
+		this.totalPricePerLitter = totalPricePerLitter;
+		this.totalPrice = totalPrice;
+		this.count = count;
+	}
+	
+	public String getDriverID() {
+		return driverID;
+	}
+	public int getYearMonth() {
+		return yearMonth;
+	}
+	public String getFuelType() {
+		return fuelType;
+	}
+	public BigDecimal getTotalVolume() {
+		return totalVolume;
+	}
+	public BigDecimal getTotalPricePerLitter() {
+		return totalPricePerLitter;
+	}
+	public BigDecimal getTotalPrice() {
+		return totalPrice;
+	}
+	public long getCount() {
+		return count;
+	}
+	
+}
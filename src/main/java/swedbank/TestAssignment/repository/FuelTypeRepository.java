@@ -0,0 +1,18 @@
+package swedbank.TestAssignment.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import swedbank.TestAssignment.domain.FuelType;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Repository methods to operate FuelType table</p>
+ */
+public interface FuelTypeRepository extends JpaRepository<FuelType, Integer> {
+	
+	Optional<FuelType> findByName(String name);
+	
+}
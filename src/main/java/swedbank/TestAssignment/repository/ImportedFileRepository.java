@@ -0,0 +1,25 @@
+package swedbank.TestAssignment.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import swedbank.TestAssignment.domain.ImportedFile;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Repository methods to operate ImportedFile table</p>
+ */
+public interface ImportedFileRepository extends JpaRepository<ImportedFile, String> {
+	
+	/**
+	 * Forgets the files with rows in a dropped partition, in the transaction of the caller
+	 * @param yearMonth year and month as yyyyMM
+	 * @return number of forgotten files
+	 */
+	@Modifying
+	@Query("delete from ImportedFile f where f.firstYearMonth <= ?1 and f.lastYearMonth >= ?1")
+	int deleteByYearMonth(int yearMonth);
+	
+}
@@ -0,0 +1,65 @@
+package swedbank.TestAssignment.repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import swedbank.TestAssignment.domain.MonthlySpend;
+import swedbank.TestAssignment.domain.MonthlySpendId;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Repository methods to operate MonthlySpend table</p>
+ */
+public interface MonthlySpendRepository extends JpaRepository<MonthlySpend, MonthlySpendId> {
+	
+	/**
+	 * Adds to the totals of a driver in a month of a year, in the transaction of the caller
+	 * @param yearMonth year and month as yyyyMM
+	 * @return number of updated rows, 0 if the rollup has no row for param driverID and param yearMonth yet
+	 */
+	@Modifying
+	@Query("update MonthlySpend m set m.totalPrice = m.totalPrice + ?3, m.rowCount = m.rowCount + ?4 where m.driverID = ?1 and m.yearMonth = ?2")
+	int addToTotals(String driverID, int yearMonth, BigDecimal totalPrice, long rowCount);
+	
+	/**
+	 * Deletes the rollup rows of a dropped partition, in the transaction of the caller
+	 * @param yearMonth year and month as yyyyMM
+	 * @return number of deleted rows
+	 */
+	@Modifying
+	@Query("delete from MonthlySpend m where m.yearMonth = ?1")
+	int deleteByYearMonth(int yearMonth);
+	
+	/**
+	 * @return number of fuel consumptions and total price of each year-month read from the rollup, in year-month order
+	 */
+	@Query("select new swedbank.TestAssignment.repository.PartitionSummary(m.yearMonth, sum(m.rowCount), sum(m.totalPrice)) from MonthlySpend m group by m.yearMonth order by m.yearMonth")
+	List<PartitionSummary> summarizeByYearMonth();
+	
+	/**
+	 * @return rollup computed from the FuelConsumption table
+	 */
+	@Query("select new swedbank.TestAssignment.domain.MonthlySpend(d.name, fc.yearMonth, fc.month, sum(fc.totalPrice), count(fc)) from FuelConsumption fc, Driver d where d.id = fc.driverKey group by fc.driverKey, d.name, fc.yearMonth, fc.month")
+	List<MonthlySpend> computeFromFuelConsumptions();
+	
+	/**
+	 * @return list of TotalSpentMoneyByMonth read from the rollup
+	 * @see FuelConsumptionRepository#findTotalPricesGroupedByMonth()
+	 */
+	@Query("select new swedbank.TestAssignment.repository.TotalSpentMoneyByMonth(m.month, sum(m.totalPrice), m.yearMonth) from MonthlySpend m where m.rowCount > 0 group by m.yearMonth, m.month order by m.yearMonth")
+	List<TotalSpentMoneyByMonth> findTotalPricesGroupedByMonth();
+	
+	/**
+	 * @param driverID driver identifier
+	 * @return list of TotalSpentMoneyByMonth for param driver read from the rollup
+	 * @see FuelConsumptionRepository#findTotalPricesGroupedByMonthForSingleDriver(String)
+	 */
+	@Query("select new swedbank.TestAssignment.repository.TotalSpentMoneyByMonth(m.month, m.totalPrice, m.yearMonth) from MonthlySpend m where m.driverID = ?1 and m.rowCount > 0 order by m.yearMonth")
+	List<TotalSpentMoneyByMonth> findTotalPricesGroupedByMonthForSingleDriver(String driverID);
+	
+}
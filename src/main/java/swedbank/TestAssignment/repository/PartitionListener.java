@@ -0,0 +1,27 @@
+package swedbank.TestAssignment.repository;
+
+import javax.persistence.PrePersist;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import swedbank.TestAssignment.domain.FuelConsumption;
+import swedbank.TestAssignment.service.PartitionCatalog;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Entity listener registering the partition of every inserted FuelConsumption before it is written</p>
+ * @see ConsumptionEventListener
+ */
+public class PartitionListener {
+	
+	@Autowired
+	private ObjectProvider<PartitionCatalog> catalog;
+	
+	@PrePersist
+	void onPersist(FuelConsumption fc) {
+		if(fc.getYearMonthKey() != 0) catalog.getObject().register(fc.getYearMonthKey());
+	}
+	
+}
@@ -0,0 +1,50 @@
+package swedbank.TestAssignment.repository;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+
+import swedbank.TestAssignment.util.YearMonthKey;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Number of fuel consumptions and total price of a year-month partition</p>
+ * @see MonthlySpendRepository#summarizeByYearMonth()
+ */
+public class PartitionSummary {
+	
+	private YearMonth yearMonth;
+	private long rowCount;
+	private BigDecimal totalPrice;
+	
+	/**
+	 * @param yearMonthKey year and month as yyyyMM
+	 * @see YearMonthKey
+	 */
+	public PartitionSummary(int yearMonthKey, Long rowCount, BigDecimal totalPrice) {
+		this.yearMonth = YearMonthKey.toYearMonth(yearMonthKey);
+		this.rowCount = rowCount != null ? rowCount : 0;
+		this.totalPrice = totalPrice != null ? totalPrice : BigDecimal.ZERO;
+	}
+	
+	public PartitionSummary() {}
+	
+	public void setYearMonth(YearMonth yearMonth) {
+		this.yearMonth = yearMonth;
+	}
+	public void setRowCount(long rowCount) {
+		this.rowCount = rowCount;
+	}
+	public void setTotalPrice(BigDecimal totalPrice) {
+		this.totalPrice = totalPrice;
+	}
+	public YearMonth getYearMonth() {
+		return yearMonth;
+	}
+	public long getRowCount() {
+		return rowCount;
+	}
+	public BigDecimal getTotalPrice() {
+		return totalPrice;
+	}
+}
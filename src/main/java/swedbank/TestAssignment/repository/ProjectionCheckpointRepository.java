@@ -0,0 +1,24 @@
+package swedbank.TestAssignment.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import swedbank.TestAssignment.domain.ProjectionCheckpoint;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Repository methods to operate ProjectionCheckpoint table</p>
+ */
+public interface ProjectionCheckpointRepository extends JpaRepository<ProjectionCheckpoint, String> {
+	
+	/**
+	 * Adds to the applied events of a projection, in the transaction of the caller
+	 * @return number of updated rows, 0 if param name has no checkpoint
+	 */
+	@Modifying
+	@Query("update ProjectionCheckpoint p set p.applied = p.applied + ?2 where p.name = ?1")
+	int addApplied(String name, long events);
+	
+}
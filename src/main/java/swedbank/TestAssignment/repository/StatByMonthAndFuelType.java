@@ -1,6 +1,12 @@
 package swedbank.TestAssignment.repository;
 
 import java.math.BigDecimal;
+import java.time.YearMonth;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+import swedbank.TestAssignment.util.YearMonthKey;
 
 /**
  * 
@@ -22,6 +28,12 @@ public class StatByMonthAndFuelType {
 	
 	private int month;
 	
+	/**
+	 * Year and month of the statistic, null for statistics of a month over all years
+	 */
+	@JsonInclude(Include.NON_NULL)
+	private YearMonth yearMonth;
+	
 	public StatByMonthAndFuelType(String fuelType, BigDecimal totalVolume,
 			double averagePricePerLitter, BigDecimal totalPrice, int month) {
 		this.fuelType = fuelType;
@@ -31,6 +43,16 @@ public class StatByMonthAndFuelType {
 		this.month = month;
 	}
 	
+	/**
+	 * @param yearMonthKey year and month as yyyyMM
+	 * @see YearMonthKey
+	 */
+	public StatByMonthAndFuelType(String fuelType, BigDecimal totalVolume,
+			double averagePricePerLitter, BigDecimal totalPrice, int month, int yearMonthKey) {
+		this(fuelType, totalVolume, averagePricePerLitter, totalPrice, month);
+		this.yearMonth = YearMonthKey.toYearMonth(yearMonthKey);
+	}
+	
 	public StatByMonthAndFuelType() {}
 	
 	public void setAveragePricePerLitter(double averagePricePerLitter) {
@@ -48,6 +70,9 @@ public class StatByMonthAndFuelType {
 	public void setTotalVolume(BigDecimal totalVolume) {
 		this.totalVolume = totalVolume;
 	}
+	public void setYearMonth(YearMonth yearMonth) {
+		this.yearMonth = yearMonth;
+	}
 	public double getAveragePricePerLitter() {
 		return averagePricePerLitter;
 	}
@@ -63,5 +88,8 @@ public class StatByMonthAndFuelType {
 	public BigDecimal getTotalVolume() {
 		return totalVolume;
 	}
+	public YearMonth getYearMonth() {
+		return yearMonth;
+	}
 
 }
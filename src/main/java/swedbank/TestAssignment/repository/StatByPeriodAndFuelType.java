@@ -0,0 +1,85 @@
+package swedbank.TestAssignment.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Statistics of a fuel type in a period of a date range, same fields as StatByMonthAndFuelType
+ * with the period instead of the month</p>
+ * @see swedbank.TestAssignment.service.PeriodAggregator
+ */
+public class StatByPeriodAndFuelType {
+	
+	/**
+	 * Fuel type in FuelConsumption entity
+	 */
+	private String fuelType;
+	
+	private BigDecimal totalVolume;
+	
+	private double averagePricePerLitter;
+	
+	private BigDecimal totalPrice;
+	
+	/**
+	 * First day of the period, not before the start of the range
+	 */
+	private LocalDate from;
+	
+	/**
+	 * Last day of the period, not after the end of the range
+	 */
+	private LocalDate to;
+	
+	public StatByPeriodAndFuelType(String fuelType, BigDecimal totalVolume,
+			double averagePricePerLitter, BigDecimal totalPrice, LocalDate from, LocalDate to) {
+		this.fuelType = fuelType;
+		this.totalVolume = totalVolume;
+		this.averagePricePerLitter = averagePricePerLitter;
+		this.totalPrice = totalPrice;
+		this.from = from;
+		this.to = to;
+	}
+	
+	public StatByPeriodAndFuelType() {}
+	
+	public void setAveragePricePerLitter(double averagePricePerLitter) {
+		this.averagePricePerLitter = averagePricePerLitter;
+	}
+	public void setFuelType(String fuelType) {
+		this.fuelType = fuelType;
+	}
+	public void setTotalPrice(BigDecimal totalPrice) {
+		this.totalPrice = totalPrice;
+	}
+	public void setTotalVolume(BigDecimal totalVolume) {
+		this.totalVolume = totalVolume;
+	}
+	public void setFrom(LocalDate from) {
+		this.from = from;
+	}
+	public void setTo(LocalDate to) {
+		this.to = to;
+	}
+	public double getAveragePricePerLitter() {
+		return averagePricePerLitter;
+	}
+	public String getFuelType() {
+		return fuelType;
+	}
+	public BigDecimal getTotalPrice() {
+		return totalPrice;
+	}
+	public BigDecimal getTotalVolume() {
+		return totalVolume;
+	}
+	public LocalDate getFrom() {
+		return from;
+	}
+	public LocalDate getTo() {
+		return to;
+	}
+
+}
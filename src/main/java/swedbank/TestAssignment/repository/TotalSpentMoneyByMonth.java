@@ -1,6 +1,12 @@
 package swedbank.TestAssignment.repository;
 
 import java.math.BigDecimal;
+import java.time.YearMonth;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+import swedbank.TestAssignment.util.YearMonthKey;
 
 /**
  * 
@@ -12,11 +18,26 @@ public class TotalSpentMoneyByMonth {
 	private int month;
 	private BigDecimal totalMoneySpent;
 	
+	/**
+	 * Year and month of the total, null for totals of a month over all years
+	 */
+	@JsonInclude(Include.NON_NULL)
+	private YearMonth yearMonth;
+	
 	public TotalSpentMoneyByMonth(int month, BigDecimal totalMoneySpent) {
 		this.month = month;
 		this.totalMoneySpent = totalMoneySpent;
 	}
 	
+	/**
+	 * @param yearMonthKey year and month as yyyyMM
+	 * @see YearMonthKey
+	 */
+	public TotalSpentMoneyByMonth(int month, BigDecimal totalMoneySpent, int yearMonthKey) {
+		this(month, totalMoneySpent);
+		this.yearMonth = YearMonthKey.toYearMonth(yearMonthKey);
+	}
+	
 	public TotalSpentMoneyByMonth() {}
 	
 	public void setMonth(int month) {
@@ -25,10 +46,16 @@ public class TotalSpentMoneyByMonth {
 	public void setTotalMoneySpent(BigDecimal totalMoneySpent) {
 		this.totalMoneySpent = totalMoneySpent;
 	}
+	public void setYearMonth(YearMonth yearMonth) {
+		this.yearMonth = yearMonth;
+	}
 	public int getMonth() {
 		return month;
 	}
 	public BigDecimal getTotalMoneySpent() {
 		return totalMoneySpent;
 	}
+	public YearMonth getYearMonth() {
+		return yearMonth;
+	}
 }
@@ -0,0 +1,52 @@
+package swedbank.TestAssignment.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Total price of the fuel consumptions of a period of a date range</p>
+ * @see swedbank.TestAssignment.service.PeriodAggregator
+ */
+public class TotalSpentMoneyByPeriod {
+	
+	/**
+	 * First day of the period, not before the start of the range
+	 */
+	private LocalDate from;
+	
+	/**
+	 * Last day of the period, not after the end of the range
+	 */
+	private LocalDate to;
+	
+	private BigDecimal totalMoneySpent;
+	
+	public TotalSpentMoneyByPeriod(LocalDate from, LocalDate to, BigDecimal totalMoneySpent) {
+		this.from = from;
+		this.to = to;
+		this.totalMoneySpent = totalMoneySpent;
+	}
+	
+	public TotalSpentMoneyByPeriod() {}
+	
+	public void setFrom(LocalDate from) {
+		this.from = from;
+	}
+	public void setTo(LocalDate to) {
+		this.to = to;
+	}
+	public void setTotalMoneySpent(BigDecimal totalMoneySpent) {
+		this.totalMoneySpent = totalMoneySpent;
+	}
+	public LocalDate getFrom() {
+		return from;
+	}
+	public LocalDate getTo() {
+		return to;
+	}
+	public BigDecimal getTotalMoneySpent() {
+		return totalMoneySpent;
+	}
+}
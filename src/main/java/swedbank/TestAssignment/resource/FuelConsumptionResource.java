@@ -1,22 +1,65 @@
 package swedbank.TestAssignment.resource;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import swedbank.TestAssignment.domain.FuelConsumption;
+import swedbank.TestAssignment.ingest.CompressedInput;
+import swedbank.TestAssignment.ingest.CsvIngestPipeline;
+import swedbank.TestAssignment.ingest.IngestJob;
+import swedbank.TestAssignment.ingest.IngestJobService;
+import swedbank.TestAssignment.ingest.MappedCsvImporter;
+import swedbank.TestAssignment.ingest.RejectFile;
+import swedbank.TestAssignment.ingest.RejectFileStore;
+import swedbank.TestAssignment.repository.FuelConsumptionView;
+import swedbank.TestAssignment.repository.PartitionSummary;
 import swedbank.TestAssignment.repository.StatByMonthAndFuelType;
+import swedbank.TestAssignment.repository.StatByPeriodAndFuelType;
 import swedbank.TestAssignment.repository.TotalSpentMoneyByMonth;
+import swedbank.TestAssignment.repository.TotalSpentMoneyByPeriod;
+import swedbank.TestAssignment.service.CacheStats;
+import swedbank.TestAssignment.service.ConsumptionExporter;
+import swedbank.TestAssignment.service.CsvIngestResult;
+import swedbank.TestAssignment.service.DataVersions;
+import swedbank.TestAssignment.service.DeduplicationService;
 import swedbank.TestAssignment.service.FuelConsumptionService;
+import swedbank.TestAssignment.service.PartitionArchive;
+import swedbank.TestAssignment.service.PartitionService;
+import swedbank.TestAssignment.service.ProjectionStatus;
+import swedbank.TestAssignment.util.Granularity;
 
 /**
  * 
@@ -31,6 +74,49 @@ public class FuelConsumptionResource {
 	@Autowired
 	private FuelConsumptionService service;
 	
+	@Autowired
+	private CsvIngestPipeline pipeline;
+	
+	@Autowired
+	private IngestJobService jobService;
+	
+	@Autowired
+	private MappedCsvImporter importer;
+	
+	@Autowired
+	private DeduplicationService dedupService;
+	
+	@Autowired
+	private RejectFileStore rejectFileStore;
+	
+	@Autowired
+	private ConsumptionExporter exporter;
+	
+	@Autowired
+	private DataVersions versions;
+	
+	@Autowired
+	private PartitionService partitionService;
+	
+	private static final MediaType CSV = MediaType.parseMediaType("text/csv");
+	
+	private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+	
+	/**
+	 * Response header with the cursor of the next page
+	 */
+	public static final String NEXT_CURSOR = "Next-Cursor";
+	
+	/**
+	 * Response header with the number of committed changes the projections had not applied
+	 * when the aggregate was read, 0 unless the wait for them timed out
+	 */
+	public static final String PROJECTION_LAG = "Projection-Lag";
+	
+	public static final int DEFAULT_PAGE_SIZE = 100;
+	
+	public static final int MAX_PAGE_SIZE = 10000;
+	
 	/**
 	 * POST request for registering a fuel consumption
 	 * @param fuelConsumption Request Body
@@ -44,51 +130,504 @@ public class FuelConsumptionResource {
 	/**
 	 * POST request with csv file to register fuel consumptions from the file
 	 * @param file RequestParam including csv file
-	 * @return result message of the operation
+	 * @param dedup optional RequestParam, true to skip the file if its content has already been
+	 * registered and to skip rows already registered, fuelconsumption.ingest.dedup by default
+	 * @return result message of the operation, {@link FuelConsumptionService#DUPLICATE_FILE} if the file is skipped
 	 * @throws Exception
 	 */
 	@PostMapping(path="/file")
-	public String registerFromFile(@RequestParam("file") MultipartFile file) throws Exception {
-		Scanner s = new Scanner(file.getInputStream());
-		return service.addFuelConsumptionsFromCsvFile(s);
+	public String registerFromFile(@RequestParam("file") MultipartFile file,
+			@RequestParam(value="dedup", required=false) Boolean dedup) throws Exception {
+		CsvIngestResult result = newResult(0, dedup, false, false);
+		String digest = digestIfDedup(file, result);
+		if(isImported(digest)) return FuelConsumptionService.DUPLICATE_FILE;
+		Scanner s = openCsv(file);
+		result.setMessage(service.addFuelConsumptionsFromCsvFile(s, result));
+		recordIfSuccessful(digest, file, result);
+		return result.getMessage();
+	}
+	
+	/**
+	 * POST request with csv file to register fuel consumptions from the file in chunks
+	 * @param file RequestParam including csv file
+	 * @param chunkSize optional RequestParam for the number of rows persisted together
+	 * @param dedup optional RequestParam, true to skip the file and rows already registered
+	 * @param collectErrors optional RequestParam, true to reject invalid rows and persist all valid rows
+	 * @param rejectFile optional RequestParam, true to write the rejected rows to a downloadable csv file
+	 * @return result of the operation with rows written per chunk
+	 * @throws Exception
+	 * @see FuelConsumptionService#addFuelConsumptionsFromCsvFileInChunks(Scanner, int)
+	 */
+	@PostMapping(path="/file", params="mode=stream")
+	public CsvIngestResult registerFromFileInChunks(@RequestParam("file") MultipartFile file,
+			@RequestParam(value="chunkSize", required=false) @Positive Integer chunkSize,
+			@RequestParam(value="dedup", required=false) Boolean dedup,
+			@RequestParam(value="collectErrors", defaultValue="false") boolean collectErrors,
+			@RequestParam(value="rejectFile", defaultValue="false") boolean rejectFile) throws Exception {
+		CsvIngestResult result = newResult(chunkSize, dedup, collectErrors, rejectFile);
+		String digest = digestIfDedup(file, result);
+		if(isImported(digest)) {
+			result.setMessage(FuelConsumptionService.DUPLICATE_FILE);
+			return result;
+		}
+		Scanner s = openCsv(file);
+		service.addFuelConsumptionsFromCsvFileInChunks(s, result);
+		recordIfSuccessful(digest, file, result);
+		return result;
+	}
+	
+	/**
+	 * POST request with csv file to register fuel consumptions from the file with parallel
+	 * parse and persist stages
+	 * @param file RequestParam including csv file
+	 * @param chunkSize optional RequestParam for the number of rows passed between the stages together
+	 * @param dedup optional RequestParam, true to skip the file and rows already registered
+	 * @param collectErrors optional RequestParam, true to reject invalid rows and persist all valid rows
+	 * @param rejectFile optional RequestParam, true to write the rejected rows to a downloadable csv file
+	 * @return result of the operation with rows written per chunk
+	 * @throws Exception
+	 * @see CsvIngestPipeline#ingest(Scanner, int)
+	 */
+	@PostMapping(path="/file", params="mode=parallel")
+	public CsvIngestResult registerFromFileInParallel(@RequestParam("file") MultipartFile file,
+			@RequestParam(value="chunkSize", required=false) @Positive Integer chunkSize,
+			@RequestParam(value="dedup", required=false) Boolean dedup,
+			@RequestParam(value="collectErrors", defaultValue="false") boolean collectErrors,
+			@RequestParam(value="rejectFile", defaultValue="false") boolean rejectFile) throws Exception {
+		CsvIngestResult result = newResult(chunkSize, dedup, collectErrors, rejectFile);
+		String digest = digestIfDedup(file, result);
+		if(isImported(digest)) {
+			result.setMessage(FuelConsumptionService.DUPLICATE_FILE);
+			return result;
+		}
+		Scanner s = openCsv(file);
+		pipeline.ingest(s, result);
+		recordIfSuccessful(digest, file, result);
+		return result;
+	}
+	
+	/**
+	 * POST request with csv file to register fuel consumptions from the file in the background<br>
+	 * The file is stored in a temporary file and the request returns before the ingest starts.
+	 * @param file RequestParam including csv file
+	 * @param chunkSize optional RequestParam for the number of rows persisted together
+	 * @param dedup optional RequestParam, true to skip the file and rows already registered
+	 * @param collectErrors optional RequestParam, true to reject invalid rows and persist all valid rows
+	 * @param rejectFile optional RequestParam, true to write the rejected rows to a downloadable csv file
+	 * @return ACCEPTED(202) with the queued job and its location,
+	 * SERVICE_UNAVAILABLE(503) if there are too many jobs waiting
+	 * @throws Exception
+	 * @see IngestJobService#submit(File, String, String, CsvIngestResult)
+	 */
+	@PostMapping(path="/file", params="mode=async")
+	public ResponseEntity<IngestJob> registerFromFileAsync(@RequestParam("file") MultipartFile file,
+			@RequestParam(value="chunkSize", required=false) @Positive Integer chunkSize,
+			@RequestParam(value="dedup", required=false) Boolean dedup,
+			@RequestParam(value="collectErrors", defaultValue="false") boolean collectErrors,
+			@RequestParam(value="rejectFile", defaultValue="false") boolean rejectFile) throws Exception {
+		File tmp = File.createTempFile("ingest-", ".csv");
+		try {
+			file.transferTo(tmp);
+		}
+		catch(IOException e) {
+			tmp.delete();
+			throw e;
+		}
+		IngestJob job;
+		try {
+			job = jobService.submit(tmp, file.getOriginalFilename(), file.getContentType(),
+					newResult(chunkSize, dedup, collectErrors, rejectFile));
+		}
+		catch(RejectedExecutionException e) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+		}
+		return ResponseEntity.accepted().location(URI.create("/api/consumptions/jobs/"+job.getId())).body(job);
+	}
+	
+	/**
+	 * POST request to import csv files which are already on the server<br>
+	 * Files are memory mapped and imported in the background, one job per file.
+	 * @param path RequestParam with a csv file or a directory of csv files relative to fuelconsumption.import.root
+	 * @param chunkSize optional RequestParam for the number of rows persisted together
+	 * @param dedup optional RequestParam, true to skip the file and rows already registered
+	 * @param collectErrors optional RequestParam, true to reject invalid rows and persist all valid rows
+	 * @param rejectFile optional RequestParam, true to write the rejected rows to a downloadable csv file
+	 * @return ACCEPTED(202) with the queued jobs, FORBIDDEN(403) if import is disabled,
+	 * BAD_REQUEST(400) if param path is not an importable file or directory
+	 * @throws Exception
+	 * @see MappedCsvImporter#importPath(String, CsvIngestResult)
+	 */
+	@PostMapping("/import")
+	public ResponseEntity<List<IngestJob>> importFromServer(@RequestParam("path") String path,
+			@RequestParam(value="chunkSize", required=false) @Positive Integer chunkSize,
+			@RequestParam(value="dedup", required=false) Boolean dedup,
+			@RequestParam(value="collectErrors", defaultValue="false") boolean collectErrors,
+			@RequestParam(value="rejectFile", defaultValue="false") boolean rejectFile) throws Exception {
+		if(!importer.isEnabled()) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+		try {
+			return ResponseEntity.accepted().body(importer.importPath(path, newResult(chunkSize, dedup, collectErrors, rejectFile)));
+		}
+		catch(IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param id identifier of a job started by {@link #registerFromFileAsync(MultipartFile, Integer, Boolean, boolean, boolean)}
+	 * or {@link #importFromServer(String, Integer, Boolean, boolean, boolean)}
+	 * @return job with rows parsed, rows persisted, rows per second and status,
+	 * NOT_FOUND(404) if there is no such job
+	 */
+	@GetMapping("/jobs/{id}")
+	public ResponseEntity<IngestJob> getJob(@PathVariable("id") String id) {
+		IngestJob job = jobService.getJob(id);
+		if(job == null) return ResponseEntity.notFound().build();
+		return ResponseEntity.ok(job);
+	}
+	
+	/**
+	 * 
+	 * @param id identifier of a reject file written by an ingest with collectErrors and rejectFile
+	 * @return csv file with the header of the ingested file, the rejected rows and their errors,
+	 * CONFLICT(409) while the ingest is still running, NOT_FOUND(404) if there is no such file
+	 */
+	@GetMapping("/rejects/{id}")
+	public ResponseEntity<Resource> getRejectFile(@PathVariable("id") String id) {
+		RejectFile file = rejectFileStore.get(id);
+		if(file == null) return ResponseEntity.notFound().build();
+		if(!file.isClosed()) return ResponseEntity.status(HttpStatus.CONFLICT).build();
+		return ResponseEntity.ok()
+				.contentType(CSV)
+				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"rejects-"+id+".csv\"")
+				.body(new FileSystemResource(file.getPath()));
 	}
 	
 	/**
 	 * 
 	 * @param driverID optional RequestParam to narrow the results for a driver
+	 * @param request to answer If-None-Match with NOT_MODIFIED(304) while the data version in the ETag is current
+	 * @param response to set the PROJECTION_LAG header
 	 * @return list of TotalSpentMoneyByMonth
 	 * @see FuelConsumptionRepository
 	 */
 	@GetMapping("/totalSpentMoneyByMonth")
-	public List<TotalSpentMoneyByMonth> getTotalSpentMoneyByMonth(@RequestParam(value="driver",required=false) String driverID) {
+	public List<TotalSpentMoneyByMonth> getTotalSpentMoneyByMonth(@RequestParam(value="driver",required=false) String driverID,
+			WebRequest request, HttpServletResponse response) {
+		awaitProjections(response);
+		if(request.checkNotModified(versions.etag(driverID))) return null;
 		if(driverID != null) return service.findTotalPricesGroupedByMonthForSingleDriver(driverID);
 		else return service.findTotalPricesGroupedByMonth();
 	}
 	
 	/**
 	 * 
-	 * @param month optional RequestParam to narrow the results for a month
+	 * @param from RequestParam, first day of the range as yyyy-MM-dd
+	 * @param to RequestParam, last day of the range as yyyy-MM-dd
+	 * @param granularity optional RequestParam, day, week, month(default) or quarter
 	 * @param driverID optional RequestParam to narrow the results for a driver
-	 * @return list of FuelConsumption
+	 * @param request to answer If-None-Match with NOT_MODIFIED(304) while the committed data version in the ETag is current,
+	 * read from the table without waiting for the projections
+	 * @return list of TotalSpentMoneyByPeriod in date order, BAD_REQUEST(400) if a date or param granularity
+	 * is not valid or param from is after param to
+	 * @see swedbank.TestAssignment.service.PeriodAggregator
+	 */
+	@GetMapping(path="/totalSpentMoneyByMonth", params={"from", "to"})
+	public ResponseEntity<List<TotalSpentMoneyByPeriod>> getTotalSpentMoneyByPeriod(@RequestParam("from") String from, @RequestParam("to") String to,
+			@RequestParam(value="granularity", defaultValue="month") String granularity, @RequestParam(value="driver", required=false) String driverID,
+			WebRequest request) {
+		if(request.checkNotModified(versions.committedEtag(driverID))) return null;
+		try {
+			return ResponseEntity.ok(service.findTotalPricesGroupedByPeriod(LocalDate.parse(from), LocalDate.parse(to),
+					Granularity.valueOf(granularity.toUpperCase()), driverID));
+		}
+		catch(DateTimeParseException | IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param month optional RequestParam to narrow the results for a month,
+	 * either a month of a year as yyyy-MM or a month number between 1 and 12 for that month of every year
+	 * @param driverID optional RequestParam to narrow the results for a driver
+	 * @param after optional RequestParam, cursor of the page: the NEXT_CURSOR header of the previous page
+	 * @param limit optional RequestParam, maximum number of results in the page, {@value #DEFAULT_PAGE_SIZE}(default)
+	 * and at most {@value #MAX_PAGE_SIZE}
+	 * @param request to answer If-None-Match with NOT_MODIFIED(304) while the data version in the ETag is current
+	 * @return one page of FuelConsumptionView, same JSON as FuelConsumption, in identifier order with the NEXT_CURSOR header
+	 * if there may be more, BAD_REQUEST(400) if param month is neither yyyy-MM nor a number<br>
+	 * GET /export streams all of them in one response
 	 * @see FuelConsumptionRepository
 	 */
 	@GetMapping
-	public List<FuelConsumption> getConsumptionsForMonth(@RequestParam(value="month", required=false) Integer month, @RequestParam(value="driver",required=false) String driverID) {
-		if(driverID != null && month != null) return service.findAllByMonthForSingleDriver(month, driverID);
-		else if(month != null) return service.findAllByMonth(month);
-		else return service.getAllFuelConsumptions();
+	public ResponseEntity<List<FuelConsumptionView>> getConsumptionsForMonth(@RequestParam(value="month", required=false) String month, @RequestParam(value="driver",required=false) String driverID,
+			@RequestParam(value="after", required=false) @PositiveOrZero Long after,
+			@RequestParam(value="limit", required=false) @Positive @Max(MAX_PAGE_SIZE) Integer limit, WebRequest request) {
+		// without a month param all drivers are listed
+		if(request.checkNotModified(versions.committedEtag(month != null ? driverID : null))) return null;
+		long cursor = after != null ? after : 0;
+		int size = limit != null ? limit : DEFAULT_PAGE_SIZE;
+		if(month == null) return page(service.findPage(cursor, size), size);
+		if(month.indexOf('-') > 0) {
+			YearMonth yearMonth;
+			try {
+				yearMonth = YearMonth.parse(month);
+			}
+			catch(DateTimeParseException e) {
+				return ResponseEntity.badRequest().build();
+			}
+			if(driverID != null) return page(service.findPageByYearMonthForSingleDriver(yearMonth, driverID, cursor, size), size);
+			return page(service.findPageByYearMonth(yearMonth, cursor, size), size);
+		}
+		int monthNumber;
+		try {
+			monthNumber = Integer.parseInt(month);
+		}
+		catch(NumberFormatException e) {
+			return ResponseEntity.badRequest().build();
+		}
+		if(driverID != null) return page(service.findPageByMonthForSingleDriver(monthNumber, driverID, cursor, size), size);
+		return page(service.findPageByMonth(monthNumber, cursor, size), size);
+	}
+	
+	/**
+	 * 
+	 * @param from RequestParam, first day of the range as yyyy-MM-dd
+	 * @param to RequestParam, last day of the range as yyyy-MM-dd
+	 * @param driverID optional RequestParam to narrow the results for a driver
+	 * @param after optional RequestParam, cursor of the page: the NEXT_CURSOR header of the previous page
+	 * @param limit optional RequestParam, maximum number of results in the page, {@value #DEFAULT_PAGE_SIZE}(default)
+	 * and at most {@value #MAX_PAGE_SIZE}
+	 * @param request to answer If-None-Match with NOT_MODIFIED(304) while the data version in the ETag is current
+	 * @return one page of FuelConsumptionView of the range in date order with the NEXT_CURSOR header if there may be more,
+	 * BAD_REQUEST(400) if a date or param after is not valid or param from is after param to
+	 * @see swedbank.TestAssignment.service.PeriodAggregator
+	 */
+	@GetMapping(params={"from", "to"})
+	public ResponseEntity<List<FuelConsumptionView>> getConsumptionsForRange(@RequestParam("from") String from, @RequestParam("to") String to,
+			@RequestParam(value="driver", required=false) String driverID, @RequestParam(value="after", required=false) String after,
+			@RequestParam(value="limit", required=false) @Positive @Max(MAX_PAGE_SIZE) Integer limit, WebRequest request) {
+		if(request.checkNotModified(versions.committedEtag(driverID))) return null;
+		int size = limit != null ? limit : DEFAULT_PAGE_SIZE;
+		try {
+			LocalDateTime afterDate = null;
+			long afterId = 0;
+			if(after != null) {
+				// the cursor of a date range is the date and the identifier of the last row
+				int comma = after.lastIndexOf(',');
+				if(comma < 0) return ResponseEntity.badRequest().build();
+				afterDate = LocalDateTime.parse(after.substring(0, comma));
+				afterId = Long.parseLong(after.substring(comma + 1));
+			}
+			List<FuelConsumptionView> list = service.findPageInRange(LocalDate.parse(from), LocalDate.parse(to), driverID, afterDate, afterId, size);
+			if(list.size() < size) return ResponseEntity.ok(list);
+			FuelConsumptionView last = list.get(list.size() - 1);
+			return ResponseEntity.ok()
+					.header(NEXT_CURSOR, last.getDate() + "," + last.getId())
+					.body(list);
+		}
+		catch(DateTimeParseException | IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+	}
+	
+	/**
+	 * @param list page of fuel consumptions in identifier order
+	 * @param limit requested size of the page
+	 * @return param list with the NEXT_CURSOR header if the page is full
+	 */
+	private static ResponseEntity<List<FuelConsumptionView>> page(List<FuelConsumptionView> list, int limit) {
+		if(list.size() < limit) return ResponseEntity.ok(list);
+		return ResponseEntity.ok()
+				.header(NEXT_CURSOR, String.valueOf(list.get(list.size() - 1).getId()))
+				.body(list);
+	}
+	
+	/**
+	 * GET request exporting all fuel consumptions, written to the response while they are read
+	 * from the database
+	 * @param format optional RequestParam, json for one JSON array(default) or ndjson for one
+	 * fuel consumption per line
+	 * @param request to answer If-None-Match with NOT_MODIFIED(304) while the data version in the ETag is current
+	 * @return streamed response body
+	 * @see ConsumptionExporter
+	 */
+	@GetMapping("/export")
+	public ResponseEntity<StreamingResponseBody> exportConsumptions(@RequestParam(value="format", defaultValue="json") String format, WebRequest request) {
+		if(request.checkNotModified(versions.committedEtag(null))) return null;
+		ConsumptionExporter.Format exportFormat;
+		try {
+			exportFormat = ConsumptionExporter.Format.valueOf(format.toUpperCase());
+		}
+		catch(IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+		return ResponseEntity.ok()
+				.contentType(exportFormat == ConsumptionExporter.Format.NDJSON ? NDJSON : MediaType.APPLICATION_JSON)
+				.body(out -> exporter.export(out, exportFormat));
 	}
 	
 	/**
 	 * 
 	 * @param driverID optional RequestParam to narrow the results for a driver
+	 * @param request to answer If-None-Match with NOT_MODIFIED(304) while the data version in the ETag is current
+	 * @param response to set the PROJECTION_LAG header
 	 * @return list of StatByMonthAndFuelType
 	 * @see FuelConsumptionRepository
 	 */
 	@GetMapping("/statsByFuelType")
-	public List<StatByMonthAndFuelType> getStatsByFuelType(@RequestParam(value="driver", required=false) String driverID) {
+	public List<StatByMonthAndFuelType> getStatsByFuelType(@RequestParam(value="driver", required=false) String driverID,
+			WebRequest request, HttpServletResponse response) {
+		awaitProjections(response);
+		if(request.checkNotModified(versions.etag(driverID))) return null;
 		if(driverID != null) return service.getStatisticsGroupedByFuelTypeForSingleDriver(driverID);
 		else return service.getStatisticsGroupedByFuelType();
 	}
 	
+	/**
+	 * 
+	 * @param from RequestParam, first day of the range as yyyy-MM-dd
+	 * @param to RequestParam, last day of the range as yyyy-MM-dd
+	 * @param granularity optional RequestParam, day, week, month(default) or quarter
+	 * @param driverID optional RequestParam to narrow the results for a driver
+	 * @param request to answer If-None-Match with NOT_MODIFIED(304) while the committed data version in the ETag is current,
+	 * read from the table without waiting for the projections
+	 * @return list of StatByPeriodAndFuelType ordered by period and fuel type, BAD_REQUEST(400) if a date or
+	 * param granularity is not valid or param from is after param to
+	 * @see swedbank.TestAssignment.service.PeriodAggregator
+	 */
+	@GetMapping(path="/statsByFuelType", params={"from", "to"})
+	public ResponseEntity<List<StatByPeriodAndFuelType>> getStatsByPeriodAndFuelType(@RequestParam("from") String from, @RequestParam("to") String to,
+			@RequestParam(value="granularity", defaultValue="month") String granularity, @RequestParam(value="driver", required=false) String driverID,
+			WebRequest request) {
+		if(request.checkNotModified(versions.committedEtag(driverID))) return null;
+		try {
+			return ResponseEntity.ok(service.getStatisticsGroupedByPeriodAndFuelType(LocalDate.parse(from), LocalDate.parse(to),
+					Granularity.valueOf(granularity.toUpperCase()), driverID));
+		}
+		catch(DateTimeParseException | IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+	}
+	
+	/**
+	 * 
+	 * @return hits, misses, evictions, invalidations and size of the cache of
+	 * totalSpentMoneyByMonth and statsByFuelType results
+	 * @see swedbank.TestAssignment.service.AggregateCache
+	 */
+	@GetMapping("/cache/stats")
+	public CacheStats getCacheStats() {
+		return service.getCacheStats();
+	}
+	
+	/**
+	 * 
+	 * @return events committed and applied to the totals and statistics projections since startup,
+	 * the lag between them and the error of the last projection if it failed
+	 * @see swedbank.TestAssignment.service.Projector
+	 */
+	@GetMapping("/projections/status")
+	public ProjectionStatus getProjectionStatus() {
+		return service.getProjectionStatus();
+	}
+	
+	/**
+	 * 
+	 * @param response to set the PROJECTION_LAG header
+	 * @return year-month partitions with their number of fuel consumptions and total price
+	 * @see PartitionService
+	 */
+	@GetMapping("/partitions")
+	public List<PartitionSummary> getPartitions(HttpServletResponse response) {
+		awaitProjections(response);
+		return partitionService.getPartitions();
+	}
+	
+	/**
+	 * DELETE request dropping all fuel consumptions of a month of a year at once
+	 * @param month PathVariable as yyyy-MM, before the current month
+	 * @return NO_CONTENT(204) when dropped, NOT_FOUND(404) if the month has no partition,
+	 * BAD_REQUEST(400) if param month is not yyyy-MM or not before the current month
+	 * @see PartitionService#drop(YearMonth)
+	 */
+	@DeleteMapping("/partitions/{month}")
+	public ResponseEntity<Void> dropPartition(@PathVariable("month") String month) {
+		try {
+			if(partitionService.drop(YearMonth.parse(month)) < 0) return ResponseEntity.notFound().build();
+			return ResponseEntity.noContent().build();
+		}
+		catch(DateTimeParseException | IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+	}
+	
+	/**
+	 * POST request writing all fuel consumptions of a month of a year to a compressed file on the server
+	 * and dropping them
+	 * @param month PathVariable as yyyy-MM, before the current month
+	 * @return the archive file and the number of archived fuel consumptions, NOT_FOUND(404) if the month
+	 * has no partition, BAD_REQUEST(400) if param month is not yyyy-MM or not before the current month
+	 * @see PartitionService#archive(YearMonth)
+	 */
+	@PostMapping("/partitions/{month}/archive")
+	public ResponseEntity<PartitionArchive> archivePartition(@PathVariable("month") String month) {
+		PartitionArchive archive;
+		try {
+			archive = partitionService.archive(YearMonth.parse(month));
+		}
+		catch(DateTimeParseException | IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+		if(archive == null) return ResponseEntity.notFound().build();
+		return ResponseEntity.ok(archive);
+	}
+	
+	/**
+	 * Waits for the projections so that the ETag and the result include the writes committed before the request.
+	 * The only wait of a request, the service reads the projections as they are.
+	 */
+	private void awaitProjections(HttpServletResponse response) {
+		ProjectionStatus status = service.awaitProjections();
+		response.setHeader(PROJECTION_LAG, String.valueOf(status.getLag()));
+	}
+	
+	/**
+	 * @param file uploaded csv file, plain or compressed
+	 * @return Scanner reading the decompressed file
+	 * @throws IOException
+	 * @see CompressedInput#open(java.io.InputStream, String, String)
+	 */
+	private Scanner openCsv(MultipartFile file) throws IOException {
+		return new Scanner(CompressedInput.open(file.getInputStream(), file.getContentType(), file.getOriginalFilename()));
+	}
+	
+	private CsvIngestResult newResult(Integer chunkSize, Boolean dedup, boolean collectErrors, boolean rejectFile) {
+		CsvIngestResult result = new CsvIngestResult(chunkSize != null ? chunkSize : service.getDefaultChunkSize());
+		result.setDedup(dedup != null ? dedup : service.isDedupByDefault());
+		result.setCollectErrors(collectErrors);
+		result.setWriteRejectFile(rejectFile);
+		result.setMaxRejectedRows(service.getMaxRejectedRows());
+		return result;
+	}
+	
+	/**
+	 * @return digest of the uploaded bytes if param result is set to dedup, otherwise null
+	 * @see DeduplicationService#digest(java.io.InputStream)
+	 */
+	private String digestIfDedup(MultipartFile file, CsvIngestResult result) throws IOException {
+		return result.isDedup() ? dedupService.digest(file.getInputStream()) : null;
+	}
+	
+	private boolean isImported(String digest) {
+		return digest != null && dedupService.findImportedFile(digest) != null;
+	}
+	
+	private void recordIfSuccessful(String digest, MultipartFile file, CsvIngestResult result) {
+		if(digest != null && "Successful".equals(result.getMessage())) {
+			dedupService.recordImportedFile(digest, file.getOriginalFilename(), result);
+		}
+	}
+	
 }
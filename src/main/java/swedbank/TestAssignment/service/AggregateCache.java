@@ -0,0 +1,155 @@
+package swedbank.TestAssignment.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Bounded cache of the aggregate results of FuelConsumptionService, one entry per
+ * aggregate and driver, null driver for the aggregates of all drivers</p>
+ * <ul>
+ * <li>Entries are evicted in least recently used order beyond max-entries and expire after ttl-seconds.</li>
+ * <li>Every entry keeps the data version of its driver read before it was computed. When the projections
+ * apply changes of fuel consumptions of a driver, the versions of that driver and of all drivers are
+ * increased, so only their entries are invalidated and dropped when they are read next.</li>
+ * <li>A result computed while a write committed keeps the older version, so a stale result is never served.</li>
+ * </ul>
+ * @see DataVersions
+ */
+@Component
+public class AggregateCache {
+
+	@Value("${fuelconsumption.cache.max-entries:1000}")
+	private int maxEntries;
+
+	@Value("${fuelconsumption.cache.ttl-seconds:60}")
+	private long ttlSeconds;
+
+	@Autowired
+	private DataVersions versions;
+
+	/**
+	 * Entries in access order, guarded by this
+	 */
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+			if(size() <= maxEntries) return false;
+			evictions++;
+			return true;
+		}
+	};
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	private long invalidations;
+
+	/**
+	 * @param name name of the aggregate
+	 * @param driverID driver of the aggregate, null for all drivers
+	 * @param loader computes the aggregate on a miss
+	 * @return the cached aggregate or the one computed by param loader, not modifiable
+	 */
+	public <T> List<T> get(String name, String driverID, Supplier<List<T>> loader) {
+		Key key = new Key(name, driverID);
+		long version = versions.getVersion(driverID);
+		synchronized(this) {
+			Entry entry = entries.get(key);
+			if(entry != null && entry.version == version && entry.expiresAt - System.nanoTime() > 0) {
+				hits++;
+				@SuppressWarnings("unchecked")
+				List<T> value = (List<T>) entry.value;
+				return value;
+			}
+			if(entry != null) {
+				entries.remove(key);
+				if(entry.version != version) invalidations++;
+				else evictions++;
+			}
+			misses++;
+		}
+		List<T> value = Collections.unmodifiableList(loader.get());
+		if(maxEntries > 0) {
+			synchronized(this) {
+				Entry newer = entries.get(key);
+				// stored meanwhile by a reader of a later version
+				if(newer == null || newer.version < version) {
+					entries.put(key, new Entry(value, version, System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds)));
+				}
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Removes all entries, for changes the data versions are not told about
+	 */
+	public synchronized void clear() {
+		invalidations += entries.size();
+		entries.clear();
+	}
+
+	public synchronized CacheStats getStats() {
+		return new CacheStats(hits, misses, evictions, invalidations, entries.size());
+	}
+
+	private static class Key {
+
+		final String name;
+
+		final String driverID;
+
+		Key(String name, String driverID) {
+			this.name = name;
+			this.driverID = driverID;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Key)) return false;
+			Key other = (Key) obj;
+			return name.equals(other.name) && Objects.equals(driverID, other.driverID);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(name, driverID);
+		}
+	}
+
+	private static class Entry {
+
+		final List<?> value;
+
+		/**
+		 * Data version of the driver when the value was computed
+		 */
+		final long version;
+
+		final long expiresAt;
+
+		Entry(List<?> value, long version, long expiresAt) {
+			this.value = value;
+			this.version = version;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package swedbank.TestAssignment.service;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Counters of the aggregate cache since startup</p>
+ * @see AggregateCache
+ */
+public class CacheStats {
+
+	private final long hits;
+
+	private final long misses;
+
+	/**
+	 * Entries removed because the cache was full or they expired
+	 */
+	private final long evictions;
+
+	/**
+	 * Entries removed because fuel consumptions of their driver changed
+	 */
+	private final long invalidations;
+
+	private final int size;
+
+	public CacheStats(long hits, long misses, long evictions, long invalidations, int size) {
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.invalidations = invalidations;
+		this.size = size;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+	public long getMisses() {
+		return misses;
+	}
+	public long getEvictions() {
+		return evictions;
+	}
+	public long getInvalidations() {
+		return invalidations;
+	}
+	public int getSize() {
+		return size;
+	}
+
+}
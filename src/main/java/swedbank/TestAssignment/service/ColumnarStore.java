@@ -0,0 +1,399 @@
+package swedbank.TestAssignment.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import swedbank.TestAssignment.domain.ConsumptionEvent;
+import swedbank.TestAssignment.repository.FuelConsumptionRepository;
+import swedbank.TestAssignment.repository.FuelConsumptionView;
+import swedbank.TestAssignment.repository.StatByMonthAndFuelType;
+import swedbank.TestAssignment.util.LongHashSet;
+import swedbank.TestAssignment.util.Micros;
+import swedbank.TestAssignment.util.YearMonthKey;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Optional in-memory copy of the FuelConsumption table in columns of primitives, for scans
+ * computing statistics. Enabled with fuelconsumption.columnar.enabled.</p>
+ * <ul>
+ * <li>Rows are kept in blocks of {@value #BLOCK_SIZE}, every block has one array per column: identifier,
+ * volume, price per litter and total price in millionths rounded to the scale of the columns, and dictionary codes
+ * of year-month, driver and fuel type. A row takes 40 bytes, 100M rows about 4 GB.</li>
+ * <li>Statistics are one pass over the blocks, in parallel on the common pool, summing into
+ * arrays indexed by month code and fuel type code without objects per row. Month codes are dense over the distinct
+ * months, so the arrays do not grow with the range of dates.</li>
+ * <li>Committed events are applied by the Projector like in FuelStatsEngine, before the data versions are
+ * increased, so a statistic cached or tagged with a version always includes its changes. Removed rows are marked
+ * with driver code -1 and skipped by the scans.</li>
+ * </ul>
+ * <p>The rows are loaded from the database at startup. Like the rollup, bulk JPQL deletes are not seen, except
+ * the drop of a partition which has its own event.</p>
+ * @see FuelStatsEngine
+ * @see Projector
+ */
+@Component
+@ConditionalOnProperty(name="fuelconsumption.columnar.enabled", havingValue="true")
+public class ColumnarStore {
+
+	static final int BLOCK_SIZE = 1 << 16;
+
+	/**
+	 * Scale of the decimal columns of FuelConsumption
+	 */
+	private static final int SCALE = 2;
+
+	/**
+	 * Driver code of removed rows
+	 */
+	private static final int REMOVED = -1;
+
+	@Autowired
+	private FuelConsumptionRepository repo;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Blocks and dictionaries are guarded by lock
+	 */
+	private final List<Block> blocks = new ArrayList<Block>();
+
+	private final Map<String, Integer> driverCodes = new HashMap<String, Integer>();
+
+	private final Map<String, Integer> fuelTypeCodes = new HashMap<String, Integer>();
+
+	private final List<String> fuelTypes = new ArrayList<String>();
+
+	private final Map<Integer, Integer> monthCodes = new HashMap<Integer, Integer>();
+
+	/**
+	 * Year-month keys by month code
+	 */
+	private final List<Integer> months = new ArrayList<Integer>();
+
+	@PostConstruct
+	public void load() {
+		TransactionTemplate readOnlyTemplate = new TransactionTemplate(transactionManager);
+		readOnlyTemplate.setReadOnly(true);
+		readOnlyTemplate.execute(status -> {
+			try(Stream<FuelConsumptionView> rows = repo.streamAllViews()) {
+				List<Row> chunk = new ArrayList<Row>(BLOCK_SIZE);
+				rows.forEach(view -> {
+					chunk.add(new Row(view.getId(), view.getDriverID(), view.getFuelType(), view.getDate(),
+							view.getVolume(), view.getPricePerLitter(), view.getTotalPrice()));
+					if(chunk.size() == BLOCK_SIZE) {
+						append(chunk);
+						chunk.clear();
+					}
+				});
+				append(chunk);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Called by the Projector only, events are applied in log order: consecutive insertions are appended
+	 * together, removals and drops mark their rows
+	 * @param events committed events which are not applied yet
+	 */
+	public void apply(List<ConsumptionEvent> events) {
+		List<Row> added = new ArrayList<Row>();
+		List<Long> removed = new ArrayList<Long>();
+		for(ConsumptionEvent event : events) {
+			if(event.getType() == ConsumptionEvent.Type.ADDED) {
+				if(!removed.isEmpty()) {
+					remove(removed);
+					removed.clear();
+				}
+				added.add(new Row(event.getConsumptionId(), event.getDriverID(), event.getFuelType(), event.getDate(),
+						event.getVolume(), event.getPricePerLitter(), event.getTotalPrice()));
+				continue;
+			}
+			append(added);
+			added.clear();
+			if(event.getType() == ConsumptionEvent.Type.REMOVED) {
+				removed.add(event.getConsumptionId());
+				continue;
+			}
+			remove(removed);
+			removed.clear();
+			removeMonth(event.getYearMonth());
+		}
+		append(added);
+		remove(removed);
+	}
+
+	/**
+	 * @return number of rows which are not removed
+	 */
+	public long size() {
+		lock.readLock().lock();
+		try {
+			long size = 0;
+			for(Block block : blocks) {
+				for(int i=0; i<block.size; i++) {
+					if(block.driver[i] != REMOVED) size++;
+				}
+			}
+			return size;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return statistics of all drivers ordered by year-month and fuel type
+	 */
+	public List<StatByMonthAndFuelType> getStatistics() {
+		return statistics(null);
+	}
+
+	/**
+	 * @param driverID driver identifier
+	 * @return statistics of param driverID ordered by year-month and fuel type
+	 */
+	public List<StatByMonthAndFuelType> getStatistics(String driverID) {
+		return statistics(driverID);
+	}
+
+	private List<StatByMonthAndFuelType> statistics(String driverID) {
+		lock.readLock().lock();
+		try {
+			if(blocks.isEmpty()) return new ArrayList<StatByMonthAndFuelType>();
+			int driver = REMOVED;
+			if(driverID != null) {
+				Integer code = driverCodes.get(driverID);
+				if(code == null) return new ArrayList<StatByMonthAndFuelType>();
+				driver = code;
+			}
+			final int filter = driver;
+			int fuelTypeCount = fuelTypes.size();
+			int groups = months.size() * fuelTypeCount;
+			int tasks = Math.min(blocks.size(), ForkJoinPool.getCommonPoolParallelism() * 4);
+			Sums sums = IntStream.range(0, tasks).parallel()
+					.mapToObj(task -> {
+						Sums partial = new Sums(groups);
+						for(int b=task; b<blocks.size(); b+=tasks) {
+							scan(blocks.get(b), filter, fuelTypeCount, partial);
+						}
+						return partial;
+					})
+					.reduce(Sums::add).get();
+			List<StatByMonthAndFuelType> result = new ArrayList<StatByMonthAndFuelType>();
+			for(int g=0; g<groups; g++) {
+				if(sums.count[g] == 0) continue;
+				int yearMonth = months.get(g / fuelTypeCount);
+				result.add(new StatByMonthAndFuelType(fuelTypes.get(g % fuelTypeCount), Micros.toBigDecimal(sums.volume[g], SCALE),
+						Micros.toDouble(sums.pricePerLitter[g]) / sums.count[g], Micros.toBigDecimal(sums.totalPrice[g], SCALE),
+						YearMonthKey.month(yearMonth), yearMonth));
+			}
+			result.sort(Comparator.comparing(StatByMonthAndFuelType::getYearMonth).thenComparing(StatByMonthAndFuelType::getFuelType));
+			return result;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Sums the rows of param block with driver code param driver, all rows if it is -1
+	 */
+	private static void scan(Block block, int driver, int fuelTypeCount, Sums sums) {
+		int[] drivers = block.driver;
+		int[] months = block.month;
+		int[] fuelTypes = block.fuelType;
+		long[] volume = block.volume;
+		long[] pricePerLitter = block.pricePerLitter;
+		long[] totalPrice = block.totalPrice;
+		for(int i=0, n=block.size; i<n; i++) {
+			int d = drivers[i];
+			if(d == REMOVED || (driver != REMOVED && d != driver)) continue;
+			int g = months[i] * fuelTypeCount + fuelTypes[i];
+			sums.volume[g] = Math.addExact(sums.volume[g], volume[i]);
+			sums.pricePerLitter[g] = Math.addExact(sums.pricePerLitter[g], pricePerLitter[i]);
+			sums.totalPrice[g] = Math.addExact(sums.totalPrice[g], totalPrice[i]);
+			sums.count[g]++;
+		}
+	}
+
+	private void append(List<Row> rows) {
+		if(rows.isEmpty()) return;
+		lock.writeLock().lock();
+		try {
+			for(Row row : rows) {
+				Block block = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+				if(block == null || block.size == BLOCK_SIZE) {
+					block = new Block();
+					blocks.add(block);
+				}
+				int i = block.size++;
+				block.id[i] = row.id;
+				block.volume[i] = row.volume;
+				block.pricePerLitter[i] = row.pricePerLitter;
+				block.totalPrice[i] = row.totalPrice;
+				block.month[i] = monthCodes.computeIfAbsent(row.yearMonth, key -> {
+					months.add(key);
+					return months.size() - 1;
+				});
+				block.driver[i] = driverCodes.computeIfAbsent(row.driverID, key -> driverCodes.size());
+				block.fuelType[i] = fuelTypeCodes.computeIfAbsent(row.fuelType, key -> {
+					fuelTypes.add(key);
+					return fuelTypes.size() - 1;
+				});
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void remove(List<Long> ids) {
+		if(ids.isEmpty()) return;
+		lock.writeLock().lock();
+		try {
+			// one scan of the identifier column for the whole batch, cheaper to keep than an index
+			LongHashSet pending = new LongHashSet(ids.size());
+			for(long id : ids) pending.add(id);
+			for(int b=blocks.size()-1; b>=0 && pending.size() > 0; b--) {
+				Block block = blocks.get(b);
+				for(int i=0; i<block.size; i++) {
+					if(block.driver[i] != REMOVED && pending.remove(block.id[i])) block.driver[i] = REMOVED;
+				}
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @param yearMonth year-month key of a dropped partition
+	 */
+	private void removeMonth(int yearMonth) {
+		lock.writeLock().lock();
+		try {
+			Integer code = monthCodes.get(yearMonth);
+			if(code == null) return;
+			int month = code;
+			for(Block block : blocks) {
+				for(int i=0; i<block.size; i++) {
+					if(block.month[i] == month) block.driver[i] = REMOVED;
+				}
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return param value rounded to the scale of the database columns, in millionths
+	 */
+	private static long micros(BigDecimal value) {
+		return Micros.round(Micros.of(value), SCALE);
+	}
+
+	/**
+	 * Row converted to the column types
+	 */
+	private static class Row {
+
+		final long id;
+
+		final String driverID;
+
+		final String fuelType;
+
+		final int yearMonth;
+
+		final long volume;
+
+		final long pricePerLitter;
+
+		final long totalPrice;
+
+		Row(long id, String driverID, String fuelType, LocalDateTime date, BigDecimal volume, BigDecimal pricePerLitter, BigDecimal totalPrice) {
+			this.id = id;
+			this.driverID = driverID;
+			this.fuelType = fuelType;
+			this.yearMonth = YearMonthKey.of(date);
+			this.volume = micros(volume);
+			this.pricePerLitter = micros(pricePerLitter);
+			this.totalPrice = micros(totalPrice);
+		}
+	}
+
+	private static class Block {
+
+		final long[] id = new long[BLOCK_SIZE];
+
+		final long[] volume = new long[BLOCK_SIZE];
+
+		final long[] pricePerLitter = new long[BLOCK_SIZE];
+
+		final long[] totalPrice = new long[BLOCK_SIZE];
+
+		final int[] month = new int[BLOCK_SIZE];
+
+		final int[] driver = new int[BLOCK_SIZE];
+
+		final int[] fuelType = new int[BLOCK_SIZE];
+
+		int size;
+	}
+
+	/**
+	 * Sums in millionths and number of rows per group
+	 */
+	private static class Sums {
+
+		final long[] volume;
+
+		final long[] pricePerLitter;
+
+		final long[] totalPrice;
+
+		final long[] count;
+
+		Sums(int groups) {
+			volume = new long[groups];
+			pricePerLitter = new long[groups];
+			totalPrice = new long[groups];
+			count = new long[groups];
+		}
+
+		Sums add(Sums other) {
+			for(int g=0; g<count.length; g++) {
+				volume[g] = Math.addExact(volume[g], other.volume[g]);
+				pricePerLitter[g] = Math.addExact(pricePerLitter[g], other.pricePerLitter[g]);
+				totalPrice[g] = Math.addExact(totalPrice[g], other.totalPrice[g]);
+				count[g] += other.count[g];
+			}
+			return this;
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package swedbank.TestAssignment.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import swedbank.TestAssignment.domain.ConsumptionEvent;
+import swedbank.TestAssignment.repository.ConsumptionEventRepository;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Append-only log of the changes of fuel consumptions, the write side of the read projections</p>
+ * <ul>
+ * <li>Events of a transaction are kept in memory and inserted just before it commits, in JDBC batches. The
+ * transaction is tracked from the first persist or remove of a fuel consumption, before Hibernate flushes it,
+ * so the events of inserts and deletes flushed only by the commit are inserted too.
+ * Writers only append to the log and the FuelConsumption table, they never update an aggregate row.</li>
+ * <li>After the transaction commits the committed data versions of its drivers are increased and its events
+ * are published to the Projector, which applies them to the projections on its own thread.</li>
+ * </ul>
+ * @see Projector
+ */
+@Component
+public class ConsumptionEventLog {
+
+	@Autowired
+	private ConsumptionEventRepository repo;
+
+	@Autowired
+	private Projector projector;
+
+	@Autowired
+	private DataVersions versions;
+
+	@Autowired
+	private Dimensions dimensions;
+
+	/**
+	 * Tracks the current transaction so that its events are inserted before it commits, called before a
+	 * fuel consumption is persisted or removed
+	 */
+	public void begin() {
+		changes();
+	}
+
+	/**
+	 * @param event change of a fuel consumption in the current transaction
+	 * @throws IllegalStateException if param event has no driver, fuel type or total price, the projections
+	 * would miss the change
+	 */
+	public void append(ConsumptionEvent event) {
+		if(event.getType() != ConsumptionEvent.Type.PARTITION_DROPPED
+				&& (event.getDriverKey() == 0 || event.getFuelTypeKey() == 0 || event.getTotalPrice() == null)) {
+			throw new IllegalStateException("Fuel consumption "+event.getConsumptionId()+" has no driver, fuel type or total price");
+		}
+		changes().events.add(event);
+	}
+
+	private Changes changes() {
+		if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+			throw new IllegalStateException("Fuel consumptions must be changed in a transaction");
+		}
+		Changes changes = (Changes) TransactionSynchronizationManager.getResource(this);
+		if(changes == null) {
+			changes = new Changes();
+			TransactionSynchronizationManager.bindResource(this, changes);
+			TransactionSynchronizationManager.registerSynchronization(changes);
+		}
+		return changes;
+	}
+
+	/**
+	 * @return number of events in the log
+	 */
+	public long count() {
+		return repo.count();
+	}
+
+	/**
+	 * Events of one transaction
+	 */
+	private class Changes extends TransactionSynchronizationAdapter {
+
+		final List<ConsumptionEvent> events = new ArrayList<ConsumptionEvent>();
+
+		@Override
+		public void beforeCommit(boolean readOnly) {
+			// inserts and deletes still pending run their post callbacks, which append to events
+			repo.flush();
+			repo.saveAll(events);
+		}
+
+		@Override
+		public void afterCommit() {
+			Set<String> driverIDs = new HashSet<String>();
+			boolean dropped = false;
+			for(ConsumptionEvent event : events) {
+				if(event.getType() == ConsumptionEvent.Type.PARTITION_DROPPED) dropped = true;
+				else driverIDs.add(dimensions.driverID(event.getDriverKey()));
+			}
+			if(!events.isEmpty()) versions.committed(driverIDs, dropped);
+			projector.publish(events);
+		}
+
+		@Override
+		public void afterCompletion(int status) {
+			TransactionSynchronizationManager.unbindResourceIfPossible(ConsumptionEventLog.this);
+		}
+	}
+
+}
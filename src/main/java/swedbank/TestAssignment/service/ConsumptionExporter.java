@@ -0,0 +1,115 @@
+package swedbank.TestAssignment.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import swedbank.TestAssignment.repository.FuelConsumptionRepository;
+import swedbank.TestAssignment.repository.FuelConsumptionView;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Writes all fuel consumptions to a stream without holding them in memory</p>
+ * <ul>
+ * <li>Rows are read from a database cursor in identifier order in one read-only transaction.</li>
+ * <li>Every row is read as a FuelConsumptionView, which is not kept in the persistence context, and written
+ * with the ObjectMapper of the application as soon as it is read, so memory does not depend on the size of the table.</li>
+ * </ul>
+ */
+@Component
+public class ConsumptionExporter {
+
+	public enum Format {
+		/**
+		 * One JSON array, same as GET /api/consumptions
+		 */
+		JSON,
+		/**
+		 * Newline delimited JSON, one fuel consumption per line
+		 */
+		NDJSON
+	}
+
+	@Autowired
+	private FuelConsumptionRepository repo;
+
+	@Autowired
+	private ObjectMapper om;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate readOnlyTemplate;
+
+	@PostConstruct
+	public void init() {
+		readOnlyTemplate = new TransactionTemplate(transactionManager);
+		readOnlyTemplate.setReadOnly(true);
+	}
+
+	/**
+	 * @param out stream the fuel consumptions are written to, not closed
+	 * @param format JSON or NDJSON
+	 * @return number of written fuel consumptions
+	 * @throws IOException if param out can not be written
+	 */
+	public long export(OutputStream out, Format format) throws IOException {
+		return export(out, format, repo::streamAllViews);
+	}
+
+	/**
+	 * Joins the transaction of the caller if there is one
+	 * @param out stream the fuel consumptions are written to, not closed
+	 * @param format JSON or NDJSON
+	 * @param yearMonth year and month of the partition as yyyyMM
+	 * @return number of written fuel consumptions of param yearMonth
+	 * @throws IOException if param out can not be written
+	 */
+	public long export(OutputStream out, Format format, int yearMonth) throws IOException {
+		return export(out, format, () -> repo.streamViewsByYearMonth(yearMonth));
+	}
+
+	private long export(OutputStream out, Format format, Supplier<Stream<FuelConsumptionView>> query) throws IOException {
+		try(JsonGenerator generator = om.getFactory().createGenerator(out)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.setRootValueSeparator(null);
+			if(format == Format.JSON) generator.writeStartArray();
+			long count = readOnlyTemplate.execute(status -> {
+				try(Stream<FuelConsumptionView> rows = query.get()) {
+					return rows.mapToLong(fc -> write(generator, fc, format)).sum();
+				}
+			});
+			if(format == Format.JSON) generator.writeEndArray();
+			else generator.flush();
+			return count;
+		}
+		catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private long write(JsonGenerator generator, FuelConsumptionView fc, Format format) {
+		try {
+			generator.writeObject(fc);
+			if(format == Format.NDJSON) generator.writeRaw('\n');
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return 1;
+	}
+
+}
@@ -0,0 +1,226 @@
+package swedbank.TestAssignment.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import swedbank.TestAssignment.ingest.RejectFile;
+import swedbank.TestAssignment.util.LongHashSet;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Result of a chunked csv ingest. Counters can be updated by several threads.</p>
+ * @see FuelConsumptionService#addFuelConsumptionsFromCsvFileInChunks(java.util.Scanner, int)
+ */
+public class CsvIngestResult {
+
+	/**
+	 * Same result messages as FuelConsumptionService#addFuelConsumptionsFromCsvFile(java.util.Scanner)
+	 */
+	private volatile String message;
+
+	private int chunkSize;
+
+	private volatile long rowsParsed;
+
+	private volatile long rowsPersisted;
+
+	/**
+	 * True if rows which are already registered are skipped
+	 */
+	private boolean dedup;
+
+	private volatile long rowsSkippedAsDuplicate;
+
+	private LongHashSet seenFingerprints;
+
+	/**
+	 * True if invalid rows are rejected and the ingest goes on, false if it stops at the first one
+	 */
+	private boolean collectErrors;
+
+	/**
+	 * True if rejected rows are also written to a reject file
+	 */
+	private boolean writeRejectFile;
+
+	private int maxRejectedRows = 100;
+
+	private volatile long rowsRejected;
+
+	/**
+	 * First rejected rows found, at most maxRejectedRows
+	 */
+	private List<RejectedRow> rejectedRows = new ArrayList<RejectedRow>();
+
+	private volatile RejectFile rejectFile;
+
+	/**
+	 * Number of rows written by each chunk in the order they are persisted
+	 */
+	private List<Integer> rowsWrittenPerChunk = new ArrayList<Integer>();
+
+	/**
+	 * First and last year-month of the valid rows as yyyyMM, 0 before the first chunk
+	 */
+	private int firstYearMonth;
+
+	private int lastYearMonth;
+
+	public CsvIngestResult(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	public CsvIngestResult() {}
+
+	/**
+	 * @return empty result with the chunk size and the dedup and reject settings of this result
+	 */
+	public CsvIngestResult copySettings() {
+		CsvIngestResult copy = new CsvIngestResult(chunkSize);
+		copy.dedup = dedup;
+		copy.collectErrors = collectErrors;
+		copy.writeRejectFile = writeRejectFile;
+		copy.maxRejectedRows = maxRejectedRows;
+		return copy;
+	}
+
+	public synchronized void chunkWritten(int rows) {
+		this.rowsWrittenPerChunk.add(rows);
+		this.rowsPersisted += rows;
+	}
+
+	/**
+	 * Widens the year-months of the ingest to param first and param last
+	 */
+	public synchronized void monthsWritten(int first, int last) {
+		if(firstYearMonth == 0 || first < firstYearMonth) firstYearMonth = first;
+		if(last > lastYearMonth) lastYearMonth = last;
+	}
+
+	public synchronized void rowsParsed(int rows) {
+		this.rowsParsed += rows;
+	}
+
+	public synchronized void rowsSkippedAsDuplicate(int rows) {
+		this.rowsSkippedAsDuplicate += rows;
+	}
+
+	/**
+	 * Counts param rejected, keeps it if there are less than maxRejectedRows
+	 * and writes it to the reject file if there is one
+	 * @param rejected position and error of the row
+	 * @param line content of the row, only needed if there is a reject file
+	 */
+	public void rejected(RejectedRow rejected, String line) {
+		synchronized(this) {
+			this.rowsRejected++;
+			if(rejectedRows.size() < maxRejectedRows) rejectedRows.add(rejected);
+		}
+		RejectFile file = rejectFile;
+		if(file != null) file.write(rejected, line);
+	}
+
+	/**
+	 * @return fingerprints of the rows of this ingest seen so far, callers synchronize on it
+	 */
+	@JsonIgnore
+	public synchronized LongHashSet getSeenFingerprints() {
+		if(seenFingerprints == null) seenFingerprints = new LongHashSet();
+		return seenFingerprints;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+	public void setRowsParsed(long rowsParsed) {
+		this.rowsParsed = rowsParsed;
+	}
+	public void setRowsPersisted(long rowsPersisted) {
+		this.rowsPersisted = rowsPersisted;
+	}
+	public synchronized void setRowsWrittenPerChunk(List<Integer> rowsWrittenPerChunk) {
+		this.rowsWrittenPerChunk = rowsWrittenPerChunk;
+	}
+	public void setDedup(boolean dedup) {
+		this.dedup = dedup;
+	}
+	public void setRowsSkippedAsDuplicate(long rowsSkippedAsDuplicate) {
+		this.rowsSkippedAsDuplicate = rowsSkippedAsDuplicate;
+	}
+	public void setCollectErrors(boolean collectErrors) {
+		this.collectErrors = collectErrors;
+	}
+	public void setWriteRejectFile(boolean writeRejectFile) {
+		this.writeRejectFile = writeRejectFile;
+	}
+	public void setMaxRejectedRows(int maxRejectedRows) {
+		this.maxRejectedRows = maxRejectedRows;
+	}
+	public void setRowsRejected(long rowsRejected) {
+		this.rowsRejected = rowsRejected;
+	}
+	public void setRejectFile(RejectFile rejectFile) {
+		this.rejectFile = rejectFile;
+	}
+	public String getMessage() {
+		return message;
+	}
+	public int getChunkSize() {
+		return chunkSize;
+	}
+	public long getRowsParsed() {
+		return rowsParsed;
+	}
+	public long getRowsPersisted() {
+		return rowsPersisted;
+	}
+	@JsonIgnore
+	public synchronized int getFirstYearMonth() {
+		return firstYearMonth;
+	}
+	@JsonIgnore
+	public synchronized int getLastYearMonth() {
+		return lastYearMonth;
+	}
+	public boolean isDedup() {
+		return dedup;
+	}
+	public long getRowsSkippedAsDuplicate() {
+		return rowsSkippedAsDuplicate;
+	}
+	public boolean isCollectErrors() {
+		return collectErrors;
+	}
+	public boolean isWriteRejectFile() {
+		return writeRejectFile;
+	}
+	public int getMaxRejectedRows() {
+		return maxRejectedRows;
+	}
+	public long getRowsRejected() {
+		return rowsRejected;
+	}
+	public synchronized List<RejectedRow> getRejectedRows() {
+		return new ArrayList<RejectedRow>(rejectedRows);
+	}
+	@JsonIgnore
+	public RejectFile getRejectFile() {
+		return rejectFile;
+	}
+	/**
+	 * @return identifier of the reject file, null if there is none
+	 */
+	public String getRejectFileId() {
+		RejectFile file = rejectFile;
+		return file != null ? file.getId() : null;
+	}
+	public synchronized List<Integer> getRowsWrittenPerChunk() {
+		return new ArrayList<Integer>(rowsWrittenPerChunk);
+	}
+}
@@ -0,0 +1,131 @@
+package swedbank.TestAssignment.service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Monotonic versions of the fuel consumptions, one for all drivers and one for each driver</p>
+ * <ul>
+ * <li>When the Projector applies committed events, the global version is increased and
+ * becomes the version of every driver they changed, so versions of a driver never go back.</li>
+ * <li>Versions are increased after the rollup and the statistics engine have applied the events, so a
+ * version read before a query is never newer than the data the query returns.</li>
+ * <li>Committed versions count the same way but are increased by the writer as soon as its transaction commits.
+ * They tag reads of the FuelConsumption table itself, which do not wait for the projections.</li>
+ * <li>Versions start from 0 at every startup, the epoch tells versions of different runs apart.</li>
+ * </ul>
+ * <p>The drop of a partition may change any driver, it increases the versions of all of them.
+ * Like the rollup, other bulk JPQL deletes are not seen.</p>
+ */
+@Component
+public class DataVersions {
+
+	private final long epoch = System.currentTimeMillis();
+
+	/**
+	 * Versions of the projections
+	 */
+	private final Counter projected = new Counter();
+
+	/**
+	 * Versions of the FuelConsumption table
+	 */
+	private final Counter committed = new Counter();
+
+	/**
+	 * @return version of the fuel consumptions of all drivers
+	 */
+	public long getVersion() {
+		return projected.version.get();
+	}
+
+	/**
+	 * @param driverID driver identifier, null for all drivers
+	 * @return version of the fuel consumptions of param driverID, 0 if they have not changed since startup
+	 */
+	public long getVersion(String driverID) {
+		return projected.get(driverID);
+	}
+
+	/**
+	 * @return start time of the application in milliseconds
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * @param driverID driver identifier, null for all drivers
+	 * @return strong entity tag of the current version of param driverID
+	 */
+	public String etag(String driverID) {
+		return "\""+epoch+"-"+projected.get(driverID)+"\"";
+	}
+
+	/**
+	 * @param driverID driver identifier, null for all drivers
+	 * @return strong entity tag of the current committed version of param driverID
+	 */
+	public String committedEtag(String driverID) {
+		return "\""+epoch+"-c"+committed.get(driverID)+"\"";
+	}
+
+	/**
+	 * Increases the global version and the versions of param driverIDs, called by the Projector
+	 */
+	public void increase(Set<String> driverIDs) {
+		projected.increase(driverIDs);
+	}
+
+	/**
+	 * Increases the global version and the versions of all drivers, called by the Projector
+	 */
+	public void increaseAll() {
+		projected.increaseAll();
+	}
+
+	/**
+	 * Increases the committed versions of param driverIDs, of all drivers if param all is true,
+	 * called after a writer transaction commits
+	 */
+	public void committed(Set<String> driverIDs, boolean all) {
+		if(all) committed.increaseAll();
+		else committed.increase(driverIDs);
+	}
+
+	/**
+	 * Global version and versions of the drivers
+	 */
+	private static class Counter {
+
+		final AtomicLong version = new AtomicLong();
+
+		final ConcurrentMap<String, Long> driverVersions = new ConcurrentHashMap<String, Long>();
+
+		/**
+		 * Minimum version of every driver, the global version of the last increase of all drivers
+		 */
+		volatile long floor;
+
+		long get(String driverID) {
+			if(driverID == null) return version.get();
+			return Math.max(driverVersions.getOrDefault(driverID, 0L), floor);
+		}
+
+		void increase(Set<String> driverIDs) {
+			long next = version.incrementAndGet();
+			for(String driverID : driverIDs) driverVersions.merge(driverID, next, Math::max);
+		}
+
+		void increaseAll() {
+			floor = version.incrementAndGet();
+		}
+	}
+
+}
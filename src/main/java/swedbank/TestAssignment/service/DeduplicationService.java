@@ -0,0 +1,208 @@
+package swedbank.TestAssignment.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import swedbank.TestAssignment.domain.FuelConsumption;
+import swedbank.TestAssignment.domain.ImportedFile;
+import swedbank.TestAssignment.repository.FuelConsumptionRepository;
+import swedbank.TestAssignment.repository.ImportedFileRepository;
+import swedbank.TestAssignment.util.LongHashSet;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Finds csv files and rows which have already been registered</p>
+ * <ul>
+ * <li>Files are identified by the SHA-256 digest of their content, an exact re-upload is
+ * found before it is parsed.</li>
+ * <li>Rows are identified by their 64 bit fingerprint. Fingerprints of all registered rows are
+ * kept in memory and a row is a duplicate if its fingerprint is there, without asking the database.
+ * Fingerprints are added when the rows commit and removed when their partition is dropped, so the
+ * set follows the table. Two different rows sharing a fingerprint are unlikely enough to be ignored.</li>
+ * <li>The fingerprints are loaded at startup if fuelconsumption.ingest.dedup is true, otherwise by
+ * the first ingest with dedup.</li>
+ * </ul>
+ * <p>Two uploads running at the same time may both register a row they share.</p>
+ * @see FuelConsumption#computeFingerprint()
+ */
+@Service
+public class DeduplicationService {
+
+	@Autowired
+	private FuelConsumptionRepository repo;
+
+	@Autowired
+	private ImportedFileRepository importedFileRepo;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Value("${fuelconsumption.ingest.dedup:false}")
+	private boolean dedupByDefault;
+
+	/**
+	 * Fingerprints of registered rows, null until they are loaded. Guarded by itself once loaded
+	 * and by this service while loading.
+	 */
+	private volatile LongHashSet fingerprints;
+
+	@PostConstruct
+	public void init() {
+		if(dedupByDefault) load();
+	}
+
+	/**
+	 * Loads the fingerprints of registered rows unless they are loaded. Rows committing meanwhile
+	 * wait for the load and are applied after it.
+	 */
+	private LongHashSet load() {
+		LongHashSet loaded = fingerprints;
+		if(loaded != null) return loaded;
+		return transactionTemplate.execute(status -> {
+			synchronized(this) {
+				if(fingerprints == null) {
+					LongHashSet set = new LongHashSet();
+					try(Stream<Long> stream = repo.streamAllFingerprints()) {
+						stream.forEach(set::add);
+					}
+					fingerprints = set;
+				}
+				return fingerprints;
+			}
+		});
+	}
+
+	/**
+	 * Reads param in to the end and closes it
+	 * @param in file content
+	 * @return hex encoded SHA-256 digest of the content
+	 * @throws IOException
+	 */
+	public String digest(InputStream in) throws IOException {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		}
+		catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		byte[] buffer = new byte[64 * 1024];
+		try(DigestInputStream digestIn = new DigestInputStream(in, md)) {
+			while(digestIn.read(buffer) != -1);
+		}
+		StringBuilder hex = new StringBuilder();
+		for(byte b : md.digest()) hex.append(String.format("%02x", b));
+		return hex.toString();
+	}
+
+	/**
+	 * @param digest digest of a file
+	 * @return the earlier successful ingest of the same content, null if there is none
+	 */
+	public ImportedFile findImportedFile(String digest) {
+		return importedFileRepo.findById(digest).orElse(null);
+	}
+
+	/**
+	 * Records a successful ingest so that later uploads of the same content are skipped
+	 * @param result result of the ingest with its rows persisted and year-months
+	 */
+	public void recordImportedFile(String digest, String fileName, CsvIngestResult result) {
+		importedFileRepo.save(new ImportedFile(digest, fileName, LocalDateTime.now(), result.getRowsPersisted(),
+				result.getFirstYearMonth(), result.getLastYearMonth()));
+	}
+
+	/**
+	 * Forgets the files and rows of a partition dropped in the current transaction, so that they can be
+	 * ingested again, for example to restore an archived month. Must be called before its rows are deleted.
+	 * @param yearMonth year and month as yyyyMM
+	 */
+	public void partitionDropped(int yearMonth) {
+		importedFileRepo.deleteByYearMonth(yearMonth);
+		long[] dropped;
+		try(Stream<Long> stream = repo.streamFingerprintsByYearMonth(yearMonth)) {
+			dropped = stream.mapToLong(Long::longValue).toArray();
+		}
+		afterCommit(() -> {
+			for(long fingerprint : dropped) fingerprints.remove(fingerprint);
+		});
+	}
+
+	/**
+	 * @param chunk valid fuel consumptions of a csv file
+	 * @param result ingest the chunk belongs to, its earlier rows are duplicates too
+	 * @return rows of param chunk which are neither registered nor earlier in the same ingest
+	 */
+	public List<FuelConsumption> removeDuplicates(List<FuelConsumption> chunk, CsvIngestResult result) {
+		LongHashSet registered = load();
+		LongHashSet seen = result.getSeenFingerprints();
+		List<FuelConsumption> fresh = new ArrayList<FuelConsumption>(chunk.size());
+		for(FuelConsumption fc : chunk) {
+			long fingerprint = fc.computeFingerprint();
+			boolean firstInIngest;
+			synchronized(seen) {
+				firstInIngest = seen.add(fingerprint);
+			}
+			if(!firstInIngest) continue;
+			synchronized(registered) {
+				if(!registered.contains(fingerprint)) fresh.add(fc);
+			}
+		}
+		return fresh;
+	}
+
+	/**
+	 * Adds the fingerprints of newly registered rows when the current transaction commits
+	 */
+	public void registered(List<FuelConsumption> list) {
+		long[] added = list.stream().mapToLong(FuelConsumption::getFingerprint).toArray();
+		afterCommit(() -> {
+			for(long fingerprint : added) fingerprints.add(fingerprint);
+		});
+	}
+
+	/**
+	 * Runs param change of the fingerprints when the current transaction commits, at once without one.
+	 * A change waits while the fingerprints are loaded, the load may have read the rows before they committed,
+	 * and is skipped before the load, which reads the committed rows.
+	 */
+	private void afterCommit(Runnable change) {
+		if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+			apply(change);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				apply(change);
+			}
+		});
+	}
+
+	private void apply(Runnable change) {
+		synchronized(this) {
+			if(fingerprints == null) return;
+			synchronized(fingerprints) {
+				change.run();
+			}
+		}
+	}
+
+}
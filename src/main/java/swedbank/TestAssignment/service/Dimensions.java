@@ -0,0 +1,152 @@
+package swedbank.TestAssignment.service;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import swedbank.TestAssignment.domain.Driver;
+import swedbank.TestAssignment.domain.FuelType;
+import swedbank.TestAssignment.repository.DriverRepository;
+import swedbank.TestAssignment.repository.FuelTypeRepository;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Interns driver identifiers and fuel types as the integer keys of the Driver and FuelType tables</p>
+ * <ul>
+ * <li>Both tables are small and kept in memory in both directions, they are loaded at startup.</li>
+ * <li>A new name is inserted in its own transaction, so it is visible to every writer at once and
+ * two writers never insert the same name. It stays if the transaction of the fuel consumption rolls back.</li>
+ * <li>Writers intern the names of their rows before their transaction starts, a new name met inside a transaction
+ * needs a second pooled connection for its insert.</li>
+ * </ul>
+ */
+@Component
+public class Dimensions {
+
+	@Autowired
+	private DriverRepository driverRepo;
+
+	@Autowired
+	private FuelTypeRepository fuelTypeRepo;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private Dictionary drivers;
+
+	private Dictionary fuelTypes;
+
+	@PostConstruct
+	public void init() {
+		TransactionTemplate newTransactionTemplate = new TransactionTemplate(transactionManager);
+		newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		drivers = new Dictionary(newTransactionTemplate,
+				name -> driverRepo.findByName(name).map(Driver::getId),
+				name -> driverRepo.saveAndFlush(new Driver(name)).getId(),
+				key -> driverRepo.findById(key).map(Driver::getName));
+		fuelTypes = new Dictionary(newTransactionTemplate,
+				name -> fuelTypeRepo.findByName(name).map(FuelType::getId),
+				name -> fuelTypeRepo.saveAndFlush(new FuelType(name)).getId(),
+				key -> fuelTypeRepo.findById(key).map(FuelType::getName));
+		driverRepo.findAll().forEach(driver -> drivers.put(driver.getName(), driver.getId()));
+		fuelTypeRepo.findAll().forEach(fuelType -> fuelTypes.put(fuelType.getName(), fuelType.getId()));
+	}
+
+	/**
+	 * @param driverID driver identifier
+	 * @return key of param driverID, inserted if it is new
+	 */
+	public int driverKey(String driverID) {
+		return drivers.intern(driverID);
+	}
+
+	/**
+	 * @param key driver key
+	 * @return driver identifier of param key
+	 */
+	public String driverID(int key) {
+		return drivers.name(key);
+	}
+
+	/**
+	 * @param fuelType fuel type
+	 * @return key of param fuelType, inserted if it is new
+	 */
+	public int fuelTypeKey(String fuelType) {
+		return fuelTypes.intern(fuelType);
+	}
+
+	/**
+	 * @param key fuel type key
+	 * @return fuel type of param key
+	 */
+	public String fuelType(int key) {
+		return fuelTypes.name(key);
+	}
+
+	/**
+	 * Names and keys of one dimension table
+	 */
+	private static class Dictionary {
+
+		final ConcurrentMap<String, Integer> keys = new ConcurrentHashMap<String, Integer>();
+
+		final ConcurrentMap<Integer, String> names = new ConcurrentHashMap<Integer, String>();
+
+		final TransactionTemplate newTransactionTemplate;
+
+		final Function<String, Optional<Integer>> find;
+
+		final Function<String, Integer> insert;
+
+		final Function<Integer, Optional<String>> findName;
+
+		Dictionary(TransactionTemplate newTransactionTemplate, Function<String, Optional<Integer>> find,
+				Function<String, Integer> insert, Function<Integer, Optional<String>> findName) {
+			this.newTransactionTemplate = newTransactionTemplate;
+			this.find = find;
+			this.insert = insert;
+			this.findName = findName;
+		}
+
+		void put(String name, int key) {
+			keys.put(name, key);
+			names.put(key, name);
+		}
+
+		int intern(String name) {
+			Integer key = keys.get(name);
+			if(key != null) return key;
+			try {
+				key = newTransactionTemplate.execute(status -> find.apply(name).orElseGet(() -> insert.apply(name)));
+			}
+			catch(DataIntegrityViolationException e) {
+				// inserted by a concurrent transaction
+				key = newTransactionTemplate.execute(status -> find.apply(name).get());
+			}
+			put(name, key);
+			return key;
+		}
+
+		String name(int key) {
+			String name = names.get(key);
+			if(name != null) return name;
+			// inserted in a transaction which has not returned yet
+			name = newTransactionTemplate.execute(status -> findName.apply(key).orElse(null));
+			if(name != null) put(name, key);
+			return name;
+		}
+	}
+
+}
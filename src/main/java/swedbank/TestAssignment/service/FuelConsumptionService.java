@@ -1,22 +1,41 @@
 package swedbank.TestAssignment.service;
 
 import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Scanner;
 
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 
 import swedbank.TestAssignment.domain.FuelConsumption;
+import swedbank.TestAssignment.ingest.CsvRowException;
+import swedbank.TestAssignment.ingest.CsvRowParser;
+import swedbank.TestAssignment.ingest.RejectFile;
+import swedbank.TestAssignment.ingest.RejectFileStore;
 import swedbank.TestAssignment.repository.FuelConsumptionRepository;
+import swedbank.TestAssignment.repository.FuelConsumptionView;
+import swedbank.TestAssignment.repository.FuelConsumptionRepositoryCustom;
+import swedbank.TestAssignment.repository.MonthlySpendRepository;
 import swedbank.TestAssignment.repository.StatByMonthAndFuelType;
+import swedbank.TestAssignment.repository.StatByPeriodAndFuelType;
 import swedbank.TestAssignment.repository.TotalSpentMoneyByMonth;
+import swedbank.TestAssignment.repository.TotalSpentMoneyByPeriod;
+import swedbank.TestAssignment.util.Granularity;
+import swedbank.TestAssignment.util.YearMonthKey;
 
 /**
  * 
@@ -28,9 +47,71 @@ import swedbank.TestAssignment.repository.TotalSpentMoneyByMonth;
 @Validated
 public class FuelConsumptionService {
 	
+	/**
+	 * Message of an ingest skipped because the same file content has already been ingested
+	 */
+	public static final String DUPLICATE_FILE = "Duplicate file";
+	
+	/**
+	 * Message of an ingest which collected errors, persisted the valid rows and rejected some rows
+	 */
+	public static final String SUCCESSFUL_WITH_REJECTED_ROWS = "Successful with rejected rows";
+	
+	private static final String TOTAL_SPENT_MONEY_BY_MONTH = "totalSpentMoneyByMonth";
+	
+	private static final String STATS_BY_FUEL_TYPE = "statsByFuelType";
+	
 	@Autowired
 	private FuelConsumptionRepository repo;
 	
+	@Autowired
+	private MonthlySpendRepository monthlySpendRepo;
+	
+	@Autowired
+	private FuelStatsEngine statsEngine;
+	
+	@Autowired
+	private AggregateCache cache;
+	
+	@Autowired
+	private Projector projector;
+	
+	@Autowired
+	private PartitionCatalog partitions;
+	
+	@Autowired
+	private Dimensions dimensions;
+	
+	@Autowired
+	private PeriodAggregator periods;
+	
+	/**
+	 * Null unless fuelconsumption.columnar.enabled
+	 */
+	@Autowired(required = false)
+	private ColumnarStore columnar;
+	
+	@Autowired
+	private DeduplicationService dedupService;
+	
+	@Autowired
+	private RejectFileStore rejectFileStore;
+	
+	@Value("${fuelconsumption.ingest.chunk-size:1000}")
+	private int defaultChunkSize;
+	
+	@Value("${fuelconsumption.ingest.delimiter:;}")
+	private char delimiter;
+	
+	@Value("${fuelconsumption.ingest.dedup:false}")
+	private boolean dedupByDefault;
+	
+	/**
+	 * Rejected rows listed in the result of an ingest collecting errors, all of them are counted
+	 */
+	@Value("${fuelconsumption.ingest.max-rejected-rows:100}")
+	private int maxRejectedRows;
+	
 	/**
 	 * 
 	 * @param fc FuelConsumption with valid fields
@@ -38,16 +119,41 @@ public class FuelConsumptionService {
 	 */
 	public FuelConsumption addFuelConsumption(@Valid FuelConsumption fc) {
 		//System.out.println("Trying to add fc");
-		return repo.save(fc);
+		resolveKeys(Collections.singletonList(fc));
+		FuelConsumption saved = repo.save(fc);
+		dedupService.registered(Collections.singletonList(saved));
+		return saved;
 	}
 	
 	/**
 	 * 
-	 * @param list of fuel consumptions where each element must be valid
-	 * @return registered fuel consumptions
+	 * @param list of new fuel consumptions where each element must be valid
+	 * @return registered fuel consumptions, inserted with JDBC batches
+	 * @see FuelConsumptionRepositoryCustom#saveAllInBatches(List)
 	 */
 	public List<FuelConsumption> addFuelConsumptionList(List<FuelConsumption> list) {
-		return repo.saveAll(list);
+		resolveKeys(list);
+		List<FuelConsumption> saved = repo.saveAllInBatches(list);
+		dedupService.registered(saved);
+		return saved;
+	}
+	
+	/**
+	 * Interns the drivers and fuel types and registers the partitions of param list before the insert transaction
+	 * starts, so the entity listeners find them in memory. New ones are inserted here on one connection, instead of
+	 * in a nested transaction on a second connection while the insert transaction holds the first one.
+	 * @see Dimensions
+	 * @see PartitionCatalog
+	 */
+	private void resolveKeys(List<FuelConsumption> list) {
+		int lastYearMonth = 0;
+		for(FuelConsumption fc : list) {
+			if(fc.getDriverKey() == 0) fc.setDriverKey(dimensions.driverKey(fc.getDriverID()));
+			if(fc.getFuelTypeKey() == 0) fc.setFuelTypeKey(dimensions.fuelTypeKey(fc.getFuelType()));
+			int yearMonth = fc.getYearMonthKey();
+			if(yearMonth != 0 && yearMonth != lastYearMonth && !partitions.contains(yearMonth)) partitions.register(yearMonth);
+			lastYearMonth = yearMonth;
+		}
 	}
 	
 	/**
@@ -67,106 +173,463 @@ public class FuelConsumptionService {
 	
 	/**
 	 * 
-	 * @param s Scanner object with constructed a csv file where separator is ";"
+	 * @param s Scanner object with constructed a csv file where separator is fuelconsumption.ingest.delimiter, ";" by default
 	 * @return message string stating result of the operation<br>
 	 * Successful - if the operation is successful<br>
 	 * Column size mismatch - if attribute column number is not equal to values column number<br>
 	 * Row column error - if the entered field for fuel consumption is not valid
 	 */
 	public String addFuelConsumptionsFromCsvFile(Scanner s) {
-		String[] columns = null;
+		return addFuelConsumptionsFromCsvFile(s, new CsvIngestResult());
+	}
+	
+	/**
+	 * Same as {@link #addFuelConsumptionsFromCsvFile(Scanner)}, rows already registered are
+	 * skipped if param result is set to dedup
+	 * @param s Scanner object with constructed a csv file
+	 * @param result counts of the persisted and skipped rows
+	 * @return message string stating result of the operation
+	 */
+	public String addFuelConsumptionsFromCsvFile(Scanner s, CsvIngestResult result) {
+		CsvRowParser parser = null;
 		int row = 0;
 		if(s.hasNextLine()) {
 			row++;
-			columns = s.nextLine().split(";");
+			parser = newRowParser(s.nextLine());
 		}
 		List<FuelConsumption> list = new ArrayList<FuelConsumption>();
 		while(s.hasNextLine()) {
 			row++;
 			String line = s.nextLine();
-			//System.out.println(line);
-			String[] values = line.split(";");
-			if(columns.length != values.length) {
-				return "Value column size must be equal to Attribute column size";
-			}
-			else {
-				FuelConsumption fc = new FuelConsumption();
-				int column = 0;
-				for(int i=0; i<columns.length; i++) {
-					column = i+1;
-					if(columns[i].equalsIgnoreCase("FuelType")) {
-						fc.setFuelType(values[i]);
-					}
-					if(columns[i].equalsIgnoreCase("PricePerLitter")) {
-						fc.setPricePerLitter(new BigDecimal(values[i]));
-					}
-					if(columns[i].equalsIgnoreCase("Volume")) {
-						fc.setVolume(new BigDecimal(values[i]));
-					}
-					if(columns[i].equalsIgnoreCase("Date")) {
-						DateTimeFormatter formatter = DateTimeFormatter.ISO_DATE_TIME; 
-						LocalDateTime dateTime = LocalDateTime.parse(values[i], formatter);
-						fc.setDate(dateTime);
-					}
-					if(columns[i].equalsIgnoreCase("DriverID")) {
-						fc.setDriverID(values[i]);
+			String error = parseValidRow(parser, line, row, list);
+			if(error != null) return error;
+		}
+		s.close();
+		result.rowsParsed(list.size());
+		persistChunk(list, result);
+		return "Successful";
+	}
+	
+	/**
+	 * Streaming version of {@link #addFuelConsumptionsFromCsvFile(Scanner)}<br>
+	 * Rows are parsed, validated and persisted in chunks of param chunkSize, so only one
+	 * chunk is kept in memory whatever the file size.<br>
+	 * Ingest stops at the first invalid row. Rows before that row are persisted,
+	 * the invalid row and the rest of the file are not.
+	 * @param s Scanner object with constructed a csv file where separator is fuelconsumption.ingest.delimiter, ";" by default
+	 * @param chunkSize number of rows persisted together, must be positive
+	 * @return result with the same message as {@link #addFuelConsumptionsFromCsvFile(Scanner)}
+	 * and the number of rows written per chunk
+	 */
+	public CsvIngestResult addFuelConsumptionsFromCsvFileInChunks(Scanner s, int chunkSize) {
+		return addFuelConsumptionsFromCsvFileInChunks(s, new CsvIngestResult(chunkSize));
+	}
+	
+	/**
+	 * Same as {@link #addFuelConsumptionsFromCsvFileInChunks(Scanner, int)} but the progress
+	 * is written to param result while the ingest runs.<br>
+	 * If param result collects errors, invalid rows are rejected and the rest of the file is
+	 * still ingested, so all valid rows are persisted in one pass.
+	 * @param s Scanner object with constructed a csv file
+	 * @param result empty result whose chunk size, dedup and reject settings are used
+	 * @return param result, with the message {@link #SUCCESSFUL_WITH_REJECTED_ROWS} if rows were rejected
+	 */
+	public CsvIngestResult addFuelConsumptionsFromCsvFileInChunks(Scanner s, CsvIngestResult result) {
+		int chunkSize = result.getChunkSize();
+		if(chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+		CsvRowParser parser = null;
+		int row = 0;
+		if(s.hasNextLine()) {
+			row++;
+			String header = s.nextLine();
+			parser = newRowParser(header);
+			openRejectFile(result, header);
+		}
+		List<FuelConsumption> chunk = new ArrayList<FuelConsumption>(chunkSize);
+		try {
+			while(s.hasNextLine()) {
+				row++;
+				String line = s.nextLine();
+				RejectedRow rejected = parseRow(parser, line, row, chunk);
+				if(rejected != null) {
+					if(!result.isCollectErrors()) {
+						result.setMessage(rejected.getMessage());
+						break;
 					}
+					result.rejected(rejected, line);
+					continue;
 				}
-				boolean isValidObject = false;
-				try {
-					isValidObject = isValidObject(fc);
-				}
-				catch(Exception e) {
-					return "In row: "+row+" column: "+column+" error: "+e.getMessage();
+				result.rowsParsed(1);
+				if(chunk.size() == chunkSize) {
+					persistChunk(chunk, result);
 				}
-				//ystem.out.println("Driver: "+fc.getDriverID());
-				if(isValidObject) list.add(fc);
 			}
+			s.close();
+			if(!chunk.isEmpty()) persistChunk(chunk, result);
+		}
+		finally {
+			closeRejectFile(result);
+		}
+		if(result.getMessage() == null) result.setMessage(successMessage(result));
+		return result;
+	}
+	
+	/**
+	 * @return "Successful" or {@link #SUCCESSFUL_WITH_REJECTED_ROWS} if param result has rejected rows
+	 */
+	public String successMessage(CsvIngestResult result) {
+		return result.getRowsRejected() > 0 ? SUCCESSFUL_WITH_REJECTED_ROWS : "Successful";
+	}
+	
+	/**
+	 * Creates the reject file of param result if it collects errors and asks for a reject file
+	 * @param header header line of the ingested file
+	 * @throws UncheckedIOException if the file can not be created
+	 */
+	public void openRejectFile(CsvIngestResult result, String header) {
+		if(!result.isCollectErrors() || !result.isWriteRejectFile()) return;
+		try {
+			result.setRejectFile(rejectFileStore.create(header));
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
 		}
-		s.close();
-		addFuelConsumptionList(list);
-		return "Successful";
 	}
+	
+	/**
+	 * Closes the reject file of param result if there is one, so that it can be downloaded
+	 */
+	public void closeRejectFile(CsvIngestResult result) {
+		RejectFile file = result.getRejectFile();
+		if(file != null) file.close();
+	}
+	
+	/**
+	 * Parses and validates a csv row, adding it to param list if it is valid
+	 * @param parser parser built from the header of the csv file
+	 * @param line csv row
+	 * @param row number of the row in the file starting from 1 for the header
+	 * @param list valid fuel consumptions
+	 * @return null if the row is valid, otherwise error message of the row
+	 */
+	public String parseValidRow(CsvRowParser parser, String line, int row, List<FuelConsumption> list) {
+		RejectedRow rejected = parseRow(parser, line, row, list);
+		return rejected != null ? rejected.getMessage() : null;
+	}
+	
+	/**
+	 * Same as {@link #parseValidRow(CsvRowParser, String, int, List)} with the position of the error
+	 * @return null if the row is valid, otherwise the rejected row
+	 */
+	public RejectedRow parseRow(CsvRowParser parser, String line, int row, List<FuelConsumption> list) {
+		FuelConsumption fc;
+		try {
+			fc = parser.parse(line);
+		}
+		catch(CsvRowException e) {
+			return new RejectedRow(row, e.getColumn(), e.getMessage());
+		}
+		return addValidRow(parser, fc, row, list);
+	}
+	
+	/**
+	 * Same as {@link #parseRow(CsvRowParser, String, int, List)} for a row of UTF-8 encoded bytes
+	 * @param bytes csv content
+	 * @param start offset of the first byte of the row
+	 * @param end offset after the last byte of the row, without the line break
+	 */
+	public RejectedRow parseRow(CsvRowParser parser, ByteBuffer bytes, int start, int end, int row, List<FuelConsumption> list) {
+		FuelConsumption fc;
+		try {
+			fc = parser.parse(bytes, start, end);
+		}
+		catch(CsvRowException e) {
+			return new RejectedRow(row, e.getColumn(), e.getMessage());
+		}
+		return addValidRow(parser, fc, row, list);
+	}
+	
+	private RejectedRow addValidRow(CsvRowParser parser, FuelConsumption fc, int row, List<FuelConsumption> list) {
+		try {
+			isValidObject(fc);
+		}
+		catch(Exception e) {
+			return new RejectedRow(row, parser.getColumnCount(), e.getMessage());
+		}
+		list.add(fc);
+		return null;
+	}
+	
 	/**
+	 * @param header first line of a csv file
+	 * @return parser for the rows of the file, separated by the configured delimiter
+	 */
+	public CsvRowParser newRowParser(String header) {
+		return new CsvRowParser(header, delimiter);
+	}
+	
+	/**
+	 * @return chunk size used when the request does not give one
+	 */
+	public int getDefaultChunkSize() {
+		return defaultChunkSize;
+	}
+	
+	/**
+	 * @return number of rejected rows listed in the result of an ingest collecting errors
+	 */
+	public int getMaxRejectedRows() {
+		return maxRejectedRows;
+	}
+	
+	/**
+	 * @return true if csv ingest skips rows already registered when the request does not say
+	 */
+	public boolean isDedupByDefault() {
+		return dedupByDefault;
+	}
+	
+	/**
+	 * Persists param chunk and clears it. If param result is set to dedup, rows already registered
+	 * or earlier in the same ingest are skipped and counted as duplicates.
+	 * @param chunk valid fuel consumptions
+	 * @param result progress of the ingest the chunk belongs to
+	 * @see DeduplicationService#removeDuplicates(List, CsvIngestResult)
+	 */
+	public void persistChunk(List<FuelConsumption> chunk, CsvIngestResult result) {
+		List<FuelConsumption> fresh = chunk;
+		int first = Integer.MAX_VALUE, last = 0;
+		for(FuelConsumption fc : chunk) {
+			first = Math.min(first, fc.getYearMonthKey());
+			last = Math.max(last, fc.getYearMonthKey());
+		}
+		if(!chunk.isEmpty()) result.monthsWritten(first, last);
+		if(result.isDedup()) {
+			fresh = dedupService.removeDuplicates(chunk, result);
+			result.rowsSkippedAsDuplicate(chunk.size() - fresh.size());
+		}
+		if(!fresh.isEmpty()) addFuelConsumptionList(fresh);
+		result.chunkWritten(fresh.size());
+		chunk.clear();
+	}
+	
+	/**
+	 * Reads only the partitions of param month, without a query if it has none
+	 * @see PartitionCatalog
 	 * @see FuelConsumptionRepository
 	 */
 	public List<FuelConsumption> findAllByMonth(int month) {
-		return repo.findAllByMonth(month);
+		List<Integer> keys = partitions.getPartitionsOfMonth(month);
+		if(keys.isEmpty()) return new ArrayList<FuelConsumption>();
+		return repo.findAllByYearMonthIn(keys);
 	}
 	
 	/**
+	 * Reads only the partitions of param month
 	 * @see FuelConsumptionRepository
 	 */
 	public List<FuelConsumption> findAllByMonthForSingleDriver(int month, String driverID) {
-		return repo.findAllByMonthForSingleDriver(month,driverID);
+		List<Integer> keys = partitions.getPartitionsOfMonth(month);
+		if(keys.isEmpty()) return new ArrayList<FuelConsumption>();
+		return repo.findAllByYearMonthInForSingleDriver(keys, driverID);
 	}
 	
 	/**
 	 * @see FuelConsumptionRepository
 	 */
-	public List<TotalSpentMoneyByMonth> findTotalPricesGroupedByMonth() {
-		return repo.findTotalPricesGroupedByMonth();
+	public List<FuelConsumption> findAllByYearMonth(YearMonth yearMonth) {
+		int key = YearMonthKey.of(yearMonth);
+		if(!partitions.contains(key)) return new ArrayList<FuelConsumption>();
+		return repo.findAllByYearMonth(key);
 	}
 	
 	/**
 	 * @see FuelConsumptionRepository
 	 */
-	public List<TotalSpentMoneyByMonth> findTotalPricesGroupedByMonthForSingleDriver(String driverID) {
-		return repo.findTotalPricesGroupedByMonthForSingleDriver(driverID);
+	public List<FuelConsumption> findAllByYearMonthForSingleDriver(YearMonth yearMonth, String driverID) {
+		int key = YearMonthKey.of(yearMonth);
+		if(!partitions.contains(key)) return new ArrayList<FuelConsumption>();
+		return repo.findAllByYearMonthForSingleDriver(key, driverID);
 	}
 	
 	/**
+	 * Reads only the partitions of param month, without a query if it has none
+	 * @see PartitionCatalog
 	 * @see FuelConsumptionRepository
 	 */
-	public List<StatByMonthAndFuelType> getStatisticsGroupedByFuelType() {
-		return repo.getStatisticsGroupedByFuelType();
+	@Transactional(readOnly = true)
+	public List<FuelConsumptionView> findViewsByMonth(int month) {
+		List<Integer> keys = partitions.getPartitionsOfMonth(month);
+		if(keys.isEmpty()) return new ArrayList<FuelConsumptionView>();
+		return repo.findViewsByYearMonthIn(keys);
+	}
+	
+	/**
+	 * Reads only the partitions of param month
+	 * @see FuelConsumptionRepository
+	 */
+	@Transactional(readOnly = true)
+	public List<FuelConsumptionView> findViewsByMonthForSingleDriver(int month, String driverID) {
+		List<Integer> keys = partitions.getPartitionsOfMonth(month);
+		if(keys.isEmpty()) return new ArrayList<FuelConsumptionView>();
+		return repo.findViewsByYearMonthInForSingleDriver(keys, driverID);
+	}
+	
+	/**
+	 * @see FuelConsumptionRepository
+	 */
+	@Transactional(readOnly = true)
+	public List<FuelConsumptionView> findViewsByYearMonth(YearMonth yearMonth) {
+		int key = YearMonthKey.of(yearMonth);
+		if(!partitions.contains(key)) return new ArrayList<FuelConsumptionView>();
+		return repo.findViewsByYearMonth(key);
+	}
+	
+	/**
+	 * @see FuelConsumptionRepository
+	 */
+	@Transactional(readOnly = true)
+	public List<FuelConsumptionView> findViewsByYearMonthForSingleDriver(YearMonth yearMonth, String driverID) {
+		int key = YearMonthKey.of(yearMonth);
+		if(!partitions.contains(key)) return new ArrayList<FuelConsumptionView>();
+		return repo.findViewsByYearMonthForSingleDriver(key, driverID);
+	}
+	
+	/**
+	 * @param after identifier of the last fuel consumption of the previous page, 0 for the first page
+	 * @param limit maximum number of fuel consumptions
+	 * @see FuelConsumptionRepository#findPageAfter(long, org.springframework.data.domain.Pageable)
+	 */
+	@Transactional(readOnly = true)
+	public List<FuelConsumptionView> findPage(long after, int limit) {
+		return repo.findPageAfter(after, PageRequest.of(0, limit));
+	}
+	
+	/**
+	 * @see FuelConsumptionRepository
+	 */
+	@Transactional(readOnly = true)
+	public List<FuelConsumptionView> findPageByMonth(int month, long after, int limit) {
+		return repo.findPageByMonthAfter(month, after, PageRequest.of(0, limit));
+	}
+	
+	/**
+	 * @see FuelConsumptionRepository
+	 */
+	@Transactional(readOnly = true)
+	public List<FuelConsumptionView> findPageByMonthForSingleDriver(int month, String driverID, long after, int limit) {
+		return repo.findPageByMonthForSingleDriverAfter(month, driverID, after, PageRequest.of(0, limit));
 	}
 	
 	/**
 	 * @see FuelConsumptionRepository
 	 */
+	@Transactional(readOnly = true)
+	public List<FuelConsumptionView> findPageByYearMonth(YearMonth yearMonth, long after, int limit) {
+		return repo.findPageByYearMonthAfter(YearMonthKey.of(yearMonth), after, PageRequest.of(0, limit));
+	}
+	
+	/**
+	 * @see FuelConsumptionRepository
+	 */
+	@Transactional(readOnly = true)
+	public List<FuelConsumptionView> findPageByYearMonthForSingleDriver(YearMonth yearMonth, String driverID, long after, int limit) {
+		return repo.findPageByYearMonthForSingleDriverAfter(YearMonthKey.of(yearMonth), driverID, after, PageRequest.of(0, limit));
+	}
+	
+	/**
+	 * Read from the aggregate cache or the rollup, the cost depends on the number of drivers and months.
+	 * Does not wait for the projections, the caller waits once per request.
+	 * @see MonthlySpendRepository
+	 * @see #awaitProjections()
+	 */
+	public List<TotalSpentMoneyByMonth> findTotalPricesGroupedByMonth() {
+		return cache.get(TOTAL_SPENT_MONEY_BY_MONTH, null, monthlySpendRepo::findTotalPricesGroupedByMonth);
+	}
+	
+	/**
+	 * Read from the aggregate cache or the rollup, the cost depends on the number of months
+	 * @see MonthlySpendRepository
+	 */
+	public List<TotalSpentMoneyByMonth> findTotalPricesGroupedByMonthForSingleDriver(String driverID) {
+		return cache.get(TOTAL_SPENT_MONEY_BY_MONTH, driverID, () -> monthlySpendRepo.findTotalPricesGroupedByMonthForSingleDriver(driverID));
+	}
+	
+	/**
+	 * Read from the aggregate cache or memory, ordered by month and fuel type.
+	 * Scanned from the columnar store if it is enabled.
+	 * @see FuelStatsEngine
+	 * @see ColumnarStore
+	 */
+	public List<StatByMonthAndFuelType> getStatisticsGroupedByFuelType() {
+		if(columnar != null) return cache.get(STATS_BY_FUEL_TYPE, null, columnar::getStatistics);
+		return cache.get(STATS_BY_FUEL_TYPE, null, statsEngine::getStatistics);
+	}
+	
+	/**
+	 * Read from the aggregate cache or memory, ordered by month and fuel type.
+	 * Scanned from the columnar store if it is enabled.
+	 * @see FuelStatsEngine
+	 * @see ColumnarStore
+	 */
 	public List<StatByMonthAndFuelType> getStatisticsGroupedByFuelTypeForSingleDriver(String driverID) {
-		return repo.getStatisticsGroupedByFuelTypeForSingleDriver(driverID);
+		if(columnar != null) return cache.get(STATS_BY_FUEL_TYPE, driverID, () -> columnar.getStatistics(driverID));
+		return cache.get(STATS_BY_FUEL_TYPE, driverID, () -> statsEngine.getStatistics(driverID));
+	}
+	
+	/**
+	 * @param from first day of the range
+	 * @param to last day of the range
+	 * @param driverID driver identifier, null for all drivers
+	 * @param afterDate date of the last fuel consumption of the previous page, null for the first page
+	 * @param afterId identifier of the last fuel consumption of the previous page
+	 * @param limit maximum number of fuel consumptions
+	 * @see PeriodAggregator#findPage(LocalDate, LocalDate, String, LocalDateTime, long, int)
+	 */
+	public List<FuelConsumptionView> findPageInRange(LocalDate from, LocalDate to, String driverID, LocalDateTime afterDate, long afterId, int limit) {
+		return periods.findPage(from, to, driverID, afterDate, afterId, limit);
+	}
+	
+	/**
+	 * Computed in one pass over the range, not cached
+	 * @param driverID driver identifier, null for all drivers
+	 * @see PeriodAggregator#getTotals(LocalDate, LocalDate, Granularity, String)
+	 */
+	public List<TotalSpentMoneyByPeriod> findTotalPricesGroupedByPeriod(LocalDate from, LocalDate to, Granularity granularity, String driverID) {
+		return periods.getTotals(from, to, granularity, driverID);
+	}
+	
+	/**
+	 * Computed in one pass over the range, not cached
+	 * @param driverID driver identifier, null for all drivers
+	 * @see PeriodAggregator#getStatistics(LocalDate, LocalDate, Granularity, String)
+	 */
+	public List<StatByPeriodAndFuelType> getStatisticsGroupedByPeriodAndFuelType(LocalDate from, LocalDate to, Granularity granularity, String driverID) {
+		return periods.getStatistics(from, to, granularity, driverID);
+	}
+	
+	/**
+	 * Waits until the projections have the writes committed before the call, at most
+	 * fuelconsumption.projection.max-wait-ms, so that a client reads its own writes
+	 * @return status of the projections, not consistent if the wait timed out
+	 * @see Projector
+	 */
+	public ProjectionStatus awaitProjections() {
+		return projector.await();
+	}
+	
+	/**
+	 * @return current lag of the projections behind the event log, without waiting
+	 */
+	public ProjectionStatus getProjectionStatus() {
+		return projector.getStatus();
+	}
+	
+	/**
+	 * @return counters of the aggregate cache
+	 */
+	public CacheStats getCacheStats() {
+		return cache.getStats();
 	}
 	
 	/**
@@ -0,0 +1,234 @@
+package swedbank.TestAssignment.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import swedbank.TestAssignment.domain.ConsumptionEvent;
+import swedbank.TestAssignment.repository.FuelConsumptionRepository;
+import swedbank.TestAssignment.repository.FuelStatTotals;
+import swedbank.TestAssignment.repository.StatByMonthAndFuelType;
+import swedbank.TestAssignment.util.Micros;
+import swedbank.TestAssignment.util.YearMonthKey;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Keeps StatByMonthAndFuelType in memory so that statistics are read without querying the database</p>
+ * <ul>
+ * <li>Totals are kept per year-month and fuel type, once for all drivers and once for each driver.
+ * Decimals are kept as millionths in longs, every row rounded to the scale of the database columns,
+ * and converted to BigDecimal only when statistics are read.</li>
+ * <li>Totals are immutable and replaced in the ConcurrentHashMap, so readers never lock.</li>
+ * <li>Committed events are applied by the Projector, so statistics never show uncommitted rows.</li>
+ * </ul>
+ * <p>The totals are loaded from the database at startup. Like the rollup, bulk JPQL deletes are not seen,
+ * except the drop of a partition.</p>
+ * @see Projector
+ */
+@Component
+public class FuelStatsEngine {
+
+	@Autowired
+	private FuelConsumptionRepository repo;
+
+	/**
+	 * Scale of the decimal columns of FuelConsumption
+	 */
+	private static final int SCALE = 2;
+
+	private final ConcurrentMap<StatKey, Totals> totals = new ConcurrentHashMap<StatKey, Totals>();
+
+	private final ConcurrentMap<String, ConcurrentMap<StatKey, Totals>> totalsByDriver = new ConcurrentHashMap<String, ConcurrentMap<StatKey, Totals>>();
+
+	/**
+	 * Replaces the totals with the ones computed from the FuelConsumption table,
+	 * writes committing meanwhile may be lost
+	 */
+	@PostConstruct
+	public synchronized void rebuild() {
+		totals.clear();
+		totalsByDriver.clear();
+		for(FuelStatTotals row : repo.computeStatTotals()) {
+			apply(row.getDriverID(), new StatKey(row.getYearMonth(), row.getFuelType()), new Totals(micros(row.getTotalVolume()),
+					micros(row.getTotalPricePerLitter()), micros(row.getTotalPrice()), row.getCount()));
+		}
+	}
+
+	/**
+	 * @return statistics of all drivers ordered by year-month and fuel type
+	 */
+	public List<StatByMonthAndFuelType> getStatistics() {
+		return toStatistics(totals);
+	}
+
+	/**
+	 * @param driverID driver identifier
+	 * @return statistics of param driverID ordered by year-month and fuel type
+	 */
+	public List<StatByMonthAndFuelType> getStatistics(String driverID) {
+		Map<StatKey, Totals> driverTotals = totalsByDriver.get(driverID);
+		return driverTotals != null ? toStatistics(driverTotals) : new ArrayList<StatByMonthAndFuelType>();
+	}
+
+	/**
+	 * Called by the Projector only, changes are summed per driver and key first so that a batch of
+	 * rows is one update per key. The events are applied all or nothing, so the Projector can retry them.
+	 * @param events committed events which are not applied yet
+	 */
+	public void apply(List<ConsumptionEvent> events) {
+		Map<String, Map<StatKey, Totals>> changes = new HashMap<String, Map<StatKey, Totals>>();
+		Set<Integer> dropped = new HashSet<Integer>();
+		for(ConsumptionEvent event : events) {
+			if(event.getType() == ConsumptionEvent.Type.PARTITION_DROPPED) {
+				// changes before the drop are dropped with the totals, the ones after it are applied to an empty month
+				changes.values().forEach(driverChanges -> driverChanges.keySet().removeIf(key -> key.yearMonth == event.getYearMonth()));
+				dropped.add(event.getYearMonth());
+				continue;
+			}
+			Totals row = new Totals(micros(event.getVolume()), micros(event.getPricePerLitter()), micros(event.getTotalPrice()), 1);
+			changes.computeIfAbsent(event.getDriverID(), id -> new HashMap<StatKey, Totals>())
+					.merge(new StatKey(event.getYearMonth(), event.getFuelType()), event.getSign() > 0 ? row : row.negate(), Totals::plus);
+		}
+		// new totals are computed before any of them is stored, so a failure leaves the totals unchanged for a retry
+		Map<StatKey, Totals> sums = new HashMap<StatKey, Totals>();
+		Map<String, Map<StatKey, Totals>> driverSums = new HashMap<String, Map<StatKey, Totals>>();
+		changes.forEach((driverID, driverChanges) -> driverChanges.forEach((key, change) -> {
+			sums.put(key, plus(sums.containsKey(key) ? sums.get(key) : current(totals, key, dropped), change));
+			driverSums.computeIfAbsent(driverID, id -> new HashMap<StatKey, Totals>())
+					.put(key, plus(current(totalsByDriver.get(driverID), key, dropped), change));
+		}));
+		for(int yearMonth : dropped) drop(yearMonth);
+		store(totals, sums);
+		driverSums.forEach((driverID, values) -> store(totalsByDriver.computeIfAbsent(driverID, id -> new ConcurrentHashMap<StatKey, Totals>()), values));
+	}
+
+	private void drop(int yearMonth) {
+		totals.keySet().removeIf(key -> key.yearMonth == yearMonth);
+		totalsByDriver.values().forEach(driverTotals -> driverTotals.keySet().removeIf(key -> key.yearMonth == yearMonth));
+	}
+
+	/**
+	 * @return totals of param key before the events, null if there are none or its month was dropped
+	 */
+	private static Totals current(Map<StatKey, Totals> totals, StatKey key, Set<Integer> dropped) {
+		return totals == null || dropped.contains(key.yearMonth) ? null : totals.get(key);
+	}
+
+	private static Totals plus(Totals totals, Totals change) {
+		return totals == null ? change : totals.plus(change);
+	}
+
+	/**
+	 * Stores param values in param totals, a null value removes its key
+	 */
+	private static void store(Map<StatKey, Totals> totals, Map<StatKey, Totals> values) {
+		values.forEach((key, value) -> {
+			if(value == null) totals.remove(key);
+			else totals.put(key, value);
+		});
+	}
+
+	private static List<StatByMonthAndFuelType> toStatistics(Map<StatKey, Totals> totals) {
+		List<StatKey> keys = new ArrayList<StatKey>(totals.keySet());
+		Collections.sort(keys);
+		List<StatByMonthAndFuelType> result = new ArrayList<StatByMonthAndFuelType>(keys.size());
+		for(StatKey key : keys) {
+			Totals t = totals.get(key);
+			// removed since the keys were read
+			if(t == null) continue;
+			result.add(new StatByMonthAndFuelType(key.fuelType, Micros.toBigDecimal(t.volume, SCALE),
+					Micros.toDouble(t.pricePerLitter) / t.count, Micros.toBigDecimal(t.totalPrice, SCALE), YearMonthKey.month(key.yearMonth), key.yearMonth));
+		}
+		return result;
+	}
+
+	/**
+	 * @return param value rounded to the scale of the database columns, in millionths
+	 */
+	private static long micros(BigDecimal value) {
+		return Micros.round(Micros.of(value), SCALE);
+	}
+
+	private static class StatKey implements Comparable<StatKey> {
+
+		/**
+		 * Year and month as yyyyMM
+		 */
+		final int yearMonth;
+
+		final String fuelType;
+
+		StatKey(int yearMonth, String fuelType) {
+			this.yearMonth = yearMonth;
+			this.fuelType = fuelType;
+		}
+
+		@Override
+		public int compareTo(StatKey other) {
+			int c = Integer.compare(yearMonth, other.yearMonth);
+			return c != 0 ? c : fuelType.compareTo(other.fuelType);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof StatKey)) return false;
+			StatKey other = (StatKey) obj;
+			return yearMonth == other.yearMonth && fuelType.equals(other.fuelType);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(yearMonth, fuelType);
+		}
+	}
+
+	/**
+	 * Sums in millionths and the number of rows
+	 */
+	private static class Totals {
+
+		final long volume;
+
+		final long pricePerLitter;
+
+		final long totalPrice;
+
+		final long count;
+
+		Totals(long volume, long pricePerLitter, long totalPrice, long count) {
+			this.volume = volume;
+			this.pricePerLitter = pricePerLitter;
+			this.totalPrice = totalPrice;
+			this.count = count;
+		}
+
+		Totals negate() {
+			return new Totals(-volume, -pricePerLitter, -totalPrice, -count);
+		}
+
+		/**
+		 * @return the sum, null if no rows are left so that the key is removed
+		 */
+		Totals plus(Totals other) {
+			long sum = count + other.count;
+			if(sum == 0) return null;
+			return new Totals(Micros.add(volume, other.volume), Micros.add(pricePerLitter, other.pricePerLitter),
+					Micros.add(totalPrice, other.totalPrice), sum);
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+package swedbank.TestAssignment.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import swedbank.TestAssignment.domain.ConsumptionEvent;
+import swedbank.TestAssignment.domain.MonthlySpend;
+import swedbank.TestAssignment.domain.MonthlySpendId;
+import swedbank.TestAssignment.domain.ProjectionCheckpoint;
+import swedbank.TestAssignment.repository.ConsumptionEventRepository;
+import swedbank.TestAssignment.repository.MonthlySpendRepository;
+import swedbank.TestAssignment.repository.ProjectionCheckpointRepository;
+import swedbank.TestAssignment.util.Micros;
+import swedbank.TestAssignment.util.YearMonthKey;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Projection of the consumption events into the MonthlySpend rollup</p>
+ * <ul>
+ * <li>The Projector passes the events of many transactions at once. Their total prices are summed per
+ * driver and month in millionths and applied with one update per driver and month, in one transaction
+ * together with the checkpoint of the rollup.</li>
+ * <li>Only the projector thread updates the rollup, so writers never wait for rollup rows and
+ * a missing row is inserted without conflicts.</li>
+ * <li>At startup the rollup is rebuilt from the fuel consumptions if it is empty or its checkpoint is
+ * not the number of events in the log, for example after a crash before the last events were applied.</li>
+ * </ul>
+ * <p>Bulk JPQL deletes and deleteAllInBatch bypass entity callbacks and are not seen by the rollup, except
+ * the drop of a partition which has its own event and deletes the rows of its year-month.
+ * Fuel consumptions are never updated in place.</p>
+ * @see Projector
+ */
+@Component
+public class MonthlySpendRollup {
+
+	/**
+	 * Name of the checkpoint of the rollup
+	 */
+	public static final String CHECKPOINT = "monthlySpend";
+
+	/**
+	 * Scale of FuelConsumption#totalPrice in the database
+	 */
+	private static final int SCALE = 2;
+
+	@Autowired
+	private MonthlySpendRepository repo;
+
+	@Autowired
+	private ProjectionCheckpointRepository checkpointRepo;
+
+	@Autowired
+	private ConsumptionEventRepository eventRepo;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+
+	@PostConstruct
+	public void init() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		long logged = eventRepo.count();
+		long applied = checkpointRepo.findById(CHECKPOINT).map(ProjectionCheckpoint::getApplied).orElse(-1L);
+		// the rollup of an existing database is built once
+		if(repo.count() == 0 || applied != logged) rebuild();
+	}
+
+	/**
+	 * Replaces the rollup with the one computed from the FuelConsumption table and moves its
+	 * checkpoint to the end of the log, must not run while events are projected
+	 */
+	public void rebuild() {
+		transactionTemplate.execute(status -> {
+			repo.deleteAllInBatch();
+			repo.saveAll(repo.computeFromFuelConsumptions());
+			checkpointRepo.save(new ProjectionCheckpoint(CHECKPOINT, eventRepo.count()));
+			return null;
+		});
+	}
+
+	/**
+	 * @param events committed events which are not applied yet
+	 */
+	public void apply(List<ConsumptionEvent> events) {
+		Map<MonthlySpendId, Change> changes = new HashMap<MonthlySpendId, Change>();
+		Set<Integer> dropped = new LinkedHashSet<Integer>();
+		for(ConsumptionEvent event : events) {
+			if(event.getType() == ConsumptionEvent.Type.PARTITION_DROPPED) {
+				// changes before the drop are deleted with it, the ones after it are applied to an empty month
+				changes.keySet().removeIf(id -> id.getYearMonth() == event.getYearMonth());
+				dropped.add(event.getYearMonth());
+				continue;
+			}
+			long price = Micros.round(Micros.of(event.getTotalPrice()), SCALE);
+			Change change = changes.computeIfAbsent(new MonthlySpendId(event.getDriverID(), event.getYearMonth()), key -> new Change());
+			change.totalPrice = Micros.add(change.totalPrice, event.getSign() * price);
+			change.rowCount += event.getSign();
+		}
+		List<MonthlySpendId> ids = new ArrayList<MonthlySpendId>(changes.keySet());
+		ids.sort(Comparator.comparing(MonthlySpendId::getDriverID).thenComparingInt(MonthlySpendId::getYearMonth));
+		transactionTemplate.execute(status -> {
+			for(int yearMonth : dropped) repo.deleteByYearMonth(yearMonth);
+			for(MonthlySpendId id : ids) {
+				Change change = changes.get(id);
+				if(change.rowCount != 0 || change.totalPrice != 0) apply(id, change);
+			}
+			checkpointRepo.addApplied(CHECKPOINT, events.size());
+			return null;
+		});
+	}
+
+	private void apply(MonthlySpendId id, Change change) {
+		BigDecimal totalPrice = Micros.toBigDecimal(change.totalPrice, SCALE);
+		if(repo.addToTotals(id.getDriverID(), id.getYearMonth(), totalPrice, change.rowCount) > 0) return;
+		// only the projector writes the rollup, so the row can not be created meanwhile
+		repo.save(new MonthlySpend(id.getDriverID(), id.getYearMonth(), YearMonthKey.month(id.getYearMonth()), totalPrice, change.rowCount));
+	}
+
+	private static class Change {
+
+		/**
+		 * In millionths
+		 */
+		long totalPrice;
+
+		long rowCount;
+	}
+
+}
@@ -0,0 +1,38 @@
+package swedbank.TestAssignment.service;
+
+import java.time.YearMonth;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Result of archiving a partition: the fuel consumptions of a month written to a file and dropped</p>
+ * @see PartitionService#archive(YearMonth)
+ */
+public class PartitionArchive {
+
+	private final YearMonth yearMonth;
+
+	private final long rowCount;
+
+	/**
+	 * Absolute path of the gzip compressed NDJSON file
+	 */
+	private final String file;
+
+	public PartitionArchive(YearMonth yearMonth, long rowCount, String file) {
+		this.yearMonth = yearMonth;
+		this.rowCount = rowCount;
+		this.file = file;
+	}
+
+	public YearMonth getYearMonth() {
+		return yearMonth;
+	}
+	public long getRowCount() {
+		return rowCount;
+	}
+	public String getFile() {
+		return file;
+	}
+
+}
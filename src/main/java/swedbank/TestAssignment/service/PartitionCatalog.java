@@ -0,0 +1,190 @@
+package swedbank.TestAssignment.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import swedbank.TestAssignment.domain.ConsumptionPartition;
+import swedbank.TestAssignment.repository.ConsumptionPartitionRepository;
+import swedbank.TestAssignment.repository.FuelConsumptionRepository;
+import swedbank.TestAssignment.util.YearMonthKey;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Catalog of the year-month partitions of the fuel consumptions, kept in memory and in the
+ * ConsumptionPartition table</p>
+ * <ul>
+ * <li>A partition is registered in its own transaction by the first fuel consumption of its month, like a new
+ * driver in Dimensions, and stays registered if that transaction rolls back. Writers register the partitions of their
+ * rows before their transaction starts, so the nested transaction does not hold a second pooled connection.</li>
+ * <li>Queries by month number are routed to the partitions of that month, each one a range of the year-month
+ * index, and a month without partitions is answered without a query.</li>
+ * <li>A partition of an existing database is registered from the distinct year-months of the table at startup.</li>
+ * <li>Every transaction inserting into a month holds the read lock of the month until it completes, and a drop holds
+ * its write lock. So a drop waits for the inserts into its month, and an insert starting after the drop sees the
+ * partition unregistered and registers it again, its rows are never left outside the catalog.</li>
+ * </ul>
+ * @see PartitionService
+ */
+@Component
+public class PartitionCatalog {
+
+	@Autowired
+	private ConsumptionPartitionRepository repo;
+
+	@Autowired
+	private FuelConsumptionRepository fuelConsumptionRepo;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate newTransactionTemplate;
+
+	/**
+	 * Year-month keys in ascending order
+	 */
+	private final ConcurrentSkipListSet<Integer> partitions = new ConcurrentSkipListSet<Integer>();
+
+	/**
+	 * Fair locks, so new inserts wait behind a waiting drop
+	 */
+	private final ConcurrentMap<Integer, ReadWriteLock> locks = new ConcurrentHashMap<Integer, ReadWriteLock>();
+
+	@PostConstruct
+	public void init() {
+		newTransactionTemplate = new TransactionTemplate(transactionManager);
+		newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		if(repo.count() == 0) {
+			LocalDateTime now = LocalDateTime.now();
+			repo.saveAll(fuelConsumptionRepo.findAllYearMonths().stream()
+					.map(yearMonth -> new ConsumptionPartition(yearMonth, now)).collect(Collectors.toList()));
+		}
+		repo.findAll().forEach(partition -> partitions.add(partition.getYearMonth()));
+	}
+
+	/**
+	 * Registers the partition of param yearMonth if it is new. In a transaction, the partition can not be dropped
+	 * until the transaction completes.
+	 * @param yearMonth year and month as yyyyMM
+	 */
+	public void register(int yearMonth) {
+		if(TransactionSynchronizationManager.isSynchronizationActive()) locks().lock(yearMonth, false);
+		if(partitions.contains(yearMonth)) return;
+		try {
+			newTransactionTemplate.execute(status -> repo.existsById(yearMonth) ? null
+					: repo.saveAndFlush(new ConsumptionPartition(yearMonth, LocalDateTime.now())));
+		}
+		catch(DataIntegrityViolationException e) {
+			// registered by a concurrent transaction
+		}
+		partitions.add(yearMonth);
+	}
+
+	/**
+	 * Waits until no other transaction inserts into param yearMonth and keeps new inserts waiting
+	 * until the current transaction completes
+	 * @param yearMonth year and month as yyyyMM
+	 */
+	public void lockForDrop(int yearMonth) {
+		locks().lock(yearMonth, true);
+	}
+
+	/**
+	 * Removes the partition of param yearMonth in the current transaction, and from memory when it commits.
+	 * The caller must hold {@link #lockForDrop(int)}.
+	 * @param yearMonth year and month as yyyyMM
+	 */
+	public void unregister(int yearMonth) {
+		if(repo.existsById(yearMonth)) repo.deleteById(yearMonth);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				partitions.remove(yearMonth);
+			}
+		});
+	}
+
+	/**
+	 * @return year-month keys of all partitions in ascending order
+	 */
+	public List<Integer> getPartitions() {
+		return new ArrayList<Integer>(partitions);
+	}
+
+	/**
+	 * @param month between 1 and 12
+	 * @return year-month keys of the partitions of param month in every year, in ascending order
+	 */
+	public List<Integer> getPartitionsOfMonth(int month) {
+		List<Integer> result = new ArrayList<Integer>();
+		for(int yearMonth : partitions) {
+			if(YearMonthKey.month(yearMonth) == month) result.add(yearMonth);
+		}
+		return result;
+	}
+
+	/**
+	 * @param yearMonth year and month as yyyyMM
+	 * @return true if param yearMonth has a partition
+	 */
+	public boolean contains(int yearMonth) {
+		return partitions.contains(yearMonth);
+	}
+
+	private Locks locks() {
+		if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+			throw new IllegalStateException("Partitions must be locked in a transaction");
+		}
+		Locks held = (Locks) TransactionSynchronizationManager.getResource(this);
+		if(held == null) {
+			held = new Locks();
+			TransactionSynchronizationManager.bindResource(this, held);
+			TransactionSynchronizationManager.registerSynchronization(held);
+		}
+		return held;
+	}
+
+	/**
+	 * Locks of partitions held by one transaction, released when it completes on the same thread
+	 */
+	private class Locks extends TransactionSynchronizationAdapter {
+
+		final Set<Integer> read = new HashSet<Integer>();
+
+		final Set<Integer> write = new HashSet<Integer>();
+
+		void lock(int yearMonth, boolean exclusive) {
+			ReadWriteLock lock = locks.computeIfAbsent(yearMonth, key -> new ReentrantReadWriteLock(true));
+			if(exclusive && write.add(yearMonth)) lock.writeLock().lock();
+			else if(!exclusive && !write.contains(yearMonth) && read.add(yearMonth)) lock.readLock().lock();
+		}
+
+		@Override
+		public void afterCompletion(int status) {
+			TransactionSynchronizationManager.unbindResourceIfPossible(PartitionCatalog.this);
+			for(int yearMonth : read) locks.get(yearMonth).readLock().unlock();
+			for(int yearMonth : write) locks.get(yearMonth).writeLock().unlock();
+		}
+	}
+
+}
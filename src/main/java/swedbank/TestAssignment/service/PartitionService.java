@@ -0,0 +1,139 @@
+package swedbank.TestAssignment.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import swedbank.TestAssignment.domain.ConsumptionEvent;
+import swedbank.TestAssignment.repository.FuelConsumptionRepository;
+import swedbank.TestAssignment.repository.MonthlySpendRepository;
+import swedbank.TestAssignment.repository.PartitionSummary;
+import swedbank.TestAssignment.util.YearMonthKey;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Drops and archives whole year-month partitions of the fuel consumptions</p>
+ * <ul>
+ * <li>A drop is one delete statement on the year-month index and one PARTITION_DROPPED event, the rows are
+ * never loaded. The projections drop the rows of the month instead of applying a removal per fuel consumption,
+ * so the cost for them depends on the number of drivers and fuel types, not of rows.</li>
+ * <li>An archive writes the partition as gzip compressed NDJSON to fuelconsumption.partition.archive-dir
+ * and drops it in the same transaction. The partition is locked against inserts before the export, so every
+ * dropped row is in the file.</li>
+ * <li>Only months before the current one can be dropped, they are not written anymore.</li>
+ * <li>Csv files with rows in a dropped month are forgotten by the deduplication, so an archived month can be
+ * restored by uploading its files again.</li>
+ * </ul>
+ * @see PartitionCatalog
+ */
+@Service
+public class PartitionService {
+
+	@Autowired
+	private FuelConsumptionRepository repo;
+
+	@Autowired
+	private MonthlySpendRepository monthlySpendRepo;
+
+	@Autowired
+	private PartitionCatalog catalog;
+
+	@Autowired
+	private ConsumptionEventLog eventLog;
+
+	@Autowired
+	private ConsumptionExporter exporter;
+
+	@Autowired
+	private DeduplicationService dedupService;
+
+	@Value("${fuelconsumption.partition.archive-dir:${java.io.tmpdir}}")
+	private String archiveDir;
+
+	/**
+	 * @return partitions in year-month order with their number of fuel consumptions and total price,
+	 * read from the rollup, the caller waits for the projections
+	 */
+	public List<PartitionSummary> getPartitions() {
+		return monthlySpendRepo.summarizeByYearMonth();
+	}
+
+	/**
+	 * Deletes all fuel consumptions of param yearMonth
+	 * @param yearMonth month before the current one
+	 * @return number of deleted fuel consumptions, -1 if there is no partition of param yearMonth
+	 * @throws IllegalArgumentException if param yearMonth is the current month or later
+	 */
+	@Transactional
+	public int drop(YearMonth yearMonth) {
+		checkClosed(yearMonth);
+		int key = YearMonthKey.of(yearMonth);
+		catalog.lockForDrop(key);
+		if(!catalog.contains(key)) return -1;
+		dedupService.partitionDropped(key);
+		int deleted = repo.deleteByYearMonth(key);
+		catalog.unregister(key);
+		eventLog.append(ConsumptionEvent.partitionDropped(key));
+		return deleted;
+	}
+
+	/**
+	 * Writes all fuel consumptions of param yearMonth to a new file and drops them
+	 * @param yearMonth month before the current one
+	 * @return the file and the number of archived fuel consumptions, null if there is no partition of param yearMonth
+	 * @throws IllegalArgumentException if param yearMonth is the current month or later
+	 * @throws UncheckedIOException if the file can not be written, nothing is dropped then
+	 */
+	@Transactional
+	public PartitionArchive archive(YearMonth yearMonth) {
+		checkClosed(yearMonth);
+		int key = YearMonthKey.of(yearMonth);
+		catalog.lockForDrop(key);
+		if(!catalog.contains(key)) return null;
+		Path file = Paths.get(archiveDir, "fuel-consumptions-" + yearMonth + "-" + System.currentTimeMillis() + ".ndjson.gz");
+		long count;
+		try(OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+			count = exporter.export(out, ConsumptionExporter.Format.NDJSON, key);
+		}
+		catch(IOException e) {
+			deleteQuietly(file);
+			throw new UncheckedIOException(e);
+		}
+		try {
+			drop(yearMonth);
+		}
+		catch(RuntimeException e) {
+			deleteQuietly(file);
+			throw e;
+		}
+		return new PartitionArchive(yearMonth, count, file.toAbsolutePath().toString());
+	}
+
+	private static void checkClosed(YearMonth yearMonth) {
+		if(!yearMonth.isBefore(YearMonth.now())) {
+			throw new IllegalArgumentException("Only months before the current one can be dropped");
+		}
+	}
+
+	private static void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		}
+		catch(IOException e) {
+			// the incomplete file is left
+		}
+	}
+
+}
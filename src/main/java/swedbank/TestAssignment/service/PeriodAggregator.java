@@ -0,0 +1,186 @@
+package swedbank.TestAssignment.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import swedbank.TestAssignment.repository.FuelConsumptionRepository;
+import swedbank.TestAssignment.repository.FuelConsumptionView;
+import swedbank.TestAssignment.repository.StatByPeriodAndFuelType;
+import swedbank.TestAssignment.repository.TotalSpentMoneyByPeriod;
+import swedbank.TestAssignment.util.Granularity;
+import swedbank.TestAssignment.util.Micros;
+import swedbank.TestAssignment.util.YearMonthKey;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Totals and statistics of an arbitrary date range, bucketed into days, weeks, months or quarters</p>
+ * <ul>
+ * <li>The range is read once from a database cursor as a range of the year-month index, the dates only
+ * filter its first and last month.</li>
+ * <li>Every row is added to the sums of its period while it is read, in millionths rounded to the scale of the
+ * database columns like in FuelStatsEngine, so memory depends on the number of periods, not of rows.</li>
+ * <li>Periods are cut to the range and periods without fuel consumptions are left out.</li>
+ * </ul>
+ * @see Granularity
+ */
+@Component
+public class PeriodAggregator {
+
+	/**
+	 * Scale of the decimal columns of FuelConsumption
+	 */
+	private static final int SCALE = 2;
+
+	@Autowired
+	private FuelConsumptionRepository repo;
+
+	/**
+	 * @param from first day of the range
+	 * @param to last day of the range
+	 * @param driverID driver identifier, null for all drivers
+	 * @param afterDate date of the last fuel consumption of the previous page, null for the first page
+	 * @param afterId identifier of the last fuel consumption of the previous page
+	 * @param limit maximum number of fuel consumptions
+	 * @return views of a page of the fuel consumptions of the range in date order
+	 * @throws IllegalArgumentException if param from is after param to
+	 */
+	@Transactional(readOnly = true)
+	public List<FuelConsumptionView> findPage(LocalDate from, LocalDate to, String driverID, LocalDateTime afterDate, long afterId, int limit) {
+		checkRange(from, to);
+		int fromKey = YearMonthKey.of(from.atStartOfDay());
+		int toKey = YearMonthKey.of(to.atStartOfDay());
+		LocalDateTime start = from.atStartOfDay();
+		LocalDateTime end = to.plusDays(1).atStartOfDay();
+		// the first page starts at identifier 0 of the first instant, which includes every row of the range
+		LocalDateTime date = afterDate != null ? afterDate : start;
+		long id = afterDate != null ? afterId : 0;
+		PageRequest page = PageRequest.of(0, limit);
+		if(driverID != null) return repo.findPageInRangeForSingleDriverAfter(fromKey, toKey, start, end, driverID, date, id, page);
+		return repo.findPageInRangeAfter(fromKey, toKey, start, end, date, id, page);
+	}
+
+	/**
+	 * @param from first day of the range
+	 * @param to last day of the range
+	 * @param granularity length of the periods
+	 * @param driverID driver identifier, null for all drivers
+	 * @return total price of each period in date order
+	 * @throws IllegalArgumentException if param from is after param to
+	 */
+	@Transactional(readOnly = true)
+	public List<TotalSpentMoneyByPeriod> getTotals(LocalDate from, LocalDate to, Granularity granularity, String driverID) {
+		checkRange(from, to);
+		Map<LocalDate, long[]> totals = new HashMap<LocalDate, long[]>();
+		scan(from, to, driverID, view -> {
+			long[] total = totals.computeIfAbsent(granularity.start(view.getDate().toLocalDate()), start -> new long[1]);
+			total[0] = Micros.add(total[0], micros(view.getTotalPrice()));
+		});
+		List<LocalDate> starts = new ArrayList<LocalDate>(totals.keySet());
+		Collections.sort(starts);
+		List<TotalSpentMoneyByPeriod> result = new ArrayList<TotalSpentMoneyByPeriod>(starts.size());
+		for(LocalDate start : starts) {
+			result.add(new TotalSpentMoneyByPeriod(first(start, from), last(start, to, granularity),
+					Micros.toBigDecimal(totals.get(start)[0], SCALE)));
+		}
+		return result;
+	}
+
+	/**
+	 * @param from first day of the range
+	 * @param to last day of the range
+	 * @param granularity length of the periods
+	 * @param driverID driver identifier, null for all drivers
+	 * @return statistics of each period and fuel type ordered by period and fuel type
+	 * @throws IllegalArgumentException if param from is after param to
+	 */
+	@Transactional(readOnly = true)
+	public List<StatByPeriodAndFuelType> getStatistics(LocalDate from, LocalDate to, Granularity granularity, String driverID) {
+		checkRange(from, to);
+		Map<LocalDate, Map<String, Sums>> sums = new HashMap<LocalDate, Map<String, Sums>>();
+		scan(from, to, driverID, view -> sums
+				.computeIfAbsent(granularity.start(view.getDate().toLocalDate()), start -> new HashMap<String, Sums>())
+				.computeIfAbsent(view.getFuelType(), fuelType -> new Sums())
+				.add(view));
+		List<LocalDate> starts = new ArrayList<LocalDate>(sums.keySet());
+		Collections.sort(starts);
+		List<StatByPeriodAndFuelType> result = new ArrayList<StatByPeriodAndFuelType>();
+		for(LocalDate start : starts) {
+			Map<String, Sums> period = sums.get(start);
+			List<String> fuelTypes = new ArrayList<String>(period.keySet());
+			Collections.sort(fuelTypes);
+			for(String fuelType : fuelTypes) {
+				Sums s = period.get(fuelType);
+				result.add(new StatByPeriodAndFuelType(fuelType, Micros.toBigDecimal(s.volume, SCALE),
+						Micros.toDouble(s.pricePerLitter) / s.count, Micros.toBigDecimal(s.totalPrice, SCALE),
+						first(start, from), last(start, to, granularity)));
+			}
+		}
+		return result;
+	}
+
+	private void scan(LocalDate from, LocalDate to, String driverID, Consumer<FuelConsumptionView> action) {
+		int fromKey = YearMonthKey.of(from.atStartOfDay());
+		int toKey = YearMonthKey.of(to.atStartOfDay());
+		try(Stream<FuelConsumptionView> rows = driverID != null
+				? repo.streamViewsInRangeForSingleDriver(fromKey, toKey, from.atStartOfDay(), to.plusDays(1).atStartOfDay(), driverID)
+				: repo.streamViewsInRange(fromKey, toKey, from.atStartOfDay(), to.plusDays(1).atStartOfDay())) {
+			rows.forEach(action);
+		}
+	}
+
+	private static void checkRange(LocalDate from, LocalDate to) {
+		if(from.isAfter(to)) throw new IllegalArgumentException("Start of the range must not be after its end");
+	}
+
+	private static LocalDate first(LocalDate start, LocalDate from) {
+		return start.isBefore(from) ? from : start;
+	}
+
+	private static LocalDate last(LocalDate start, LocalDate to, Granularity granularity) {
+		LocalDate last = granularity.next(start).minusDays(1);
+		return last.isAfter(to) ? to : last;
+	}
+
+	/**
+	 * @return param value rounded to the scale of the database columns, in millionths
+	 */
+	private static long micros(BigDecimal value) {
+		return Micros.round(Micros.of(value), SCALE);
+	}
+
+	/**
+	 * Sums of a period and fuel type in millionths and the number of rows
+	 */
+	private static class Sums {
+
+		long volume;
+
+		long pricePerLitter;
+
+		long totalPrice;
+
+		long count;
+
+		void add(FuelConsumptionView view) {
+			volume = Micros.add(volume, micros(view.getVolume()));
+			pricePerLitter = Micros.add(pricePerLitter, micros(view.getPricePerLitter()));
+			totalPrice = Micros.add(totalPrice, micros(view.getTotalPrice()));
+			count++;
+		}
+	}
+
+}
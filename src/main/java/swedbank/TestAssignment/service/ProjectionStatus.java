@@ -0,0 +1,72 @@
+package swedbank.TestAssignment.service;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>How far the read projections are behind the event log</p>
+ * @see Projector
+ */
+public class ProjectionStatus {
+
+	/**
+	 * Events committed since startup
+	 */
+	private final long published;
+
+	/**
+	 * Events applied to the projections since startup
+	 */
+	private final long applied;
+
+	/**
+	 * Events skipped since startup by a projection which failed to apply them
+	 */
+	private final long skipped;
+
+	/**
+	 * Milliseconds between the commit and the projection of the last applied events
+	 */
+	private final long lastDelayMillis;
+
+	/**
+	 * Error of a projection which is being retried or skipped the last batch, null if the last batch was applied
+	 */
+	private final String lastError;
+
+	public ProjectionStatus(long published, long applied, long skipped, long lastDelayMillis, String lastError) {
+		this.published = published;
+		this.applied = applied;
+		this.skipped = skipped;
+		this.lastDelayMillis = lastDelayMillis;
+		this.lastError = lastError;
+	}
+
+	public long getPublished() {
+		return published;
+	}
+	public long getApplied() {
+		return applied;
+	}
+	/**
+	 * @return number of committed events which are not applied yet
+	 */
+	public long getLag() {
+		return published - applied;
+	}
+	public long getSkipped() {
+		return skipped;
+	}
+	public long getLastDelayMillis() {
+		return lastDelayMillis;
+	}
+	public String getLastError() {
+		return lastError;
+	}
+	/**
+	 * @return true if the projections include every event committed when the status was read
+	 */
+	public boolean isConsistent() {
+		return getLag() == 0 && skipped == 0 && lastError == null;
+	}
+
+}
@@ -0,0 +1,235 @@
+package swedbank.TestAssignment.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import swedbank.TestAssignment.domain.ConsumptionEvent;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Builds the read projections from the events committed to the ConsumptionEventLog on its own thread:
+ * the MonthlySpend rollup for total spent money, the FuelStatsEngine for statistics by fuel type and
+ * the ColumnarStore if it is enabled.
+ * The FuelConsumption table itself stays the projection for listing, it is written with the events.</p>
+ * <ul>
+ * <li>All events waiting when the thread wakes up are applied together, one rollup transaction for
+ * many writer transactions.</li>
+ * <li>Events carry the keys of drivers and fuel types, their names are looked up in Dimensions before the
+ * projections see them.</li>
+ * <li>Data versions of the changed drivers are increased once the projections have the events, of all
+ * drivers if a partition was dropped.</li>
+ * <li>A projection which fails is retried with a growing backoff, at most {@value #MAX_ATTEMPTS} times. Until then
+ * the events do not count as applied and the versions stay, so a failure shows as lag and lastError, never as a
+ * consistent read. A batch which still fails is skipped by that projection, so one bad batch does not stop the
+ * later ones. Its events are counted as skipped and the status stays inconsistent.</li>
+ * <li>A request calls {@link #await()} once to wait, at most fuelconsumption.projection.max-wait-ms, until the events
+ * committed before it are applied, so a client reads its own writes. The returned status tells how far
+ * behind the projections were if the wait timed out.</li>
+ * </ul>
+ * @see ConsumptionEventLog
+ */
+@Component
+public class Projector {
+
+	private static final long MIN_BACKOFF_MILLIS = 100;
+
+	private static final long MAX_BACKOFF_MILLIS = 10000;
+
+	/**
+	 * Attempts of a projection to apply a batch before it is skipped, about 3 seconds of backoff
+	 */
+	private static final int MAX_ATTEMPTS = 6;
+
+	@Value("${fuelconsumption.projection.max-wait-ms:5000}")
+	private long maxWaitMillis;
+
+	@Autowired
+	private MonthlySpendRollup rollup;
+
+	@Autowired
+	private FuelStatsEngine statsEngine;
+
+	@Autowired
+	private ObjectProvider<ColumnarStore> columnar;
+
+	@Autowired
+	private DataVersions versions;
+
+	@Autowired
+	private Dimensions dimensions;
+
+	private final BlockingQueue<Batch> queue = new LinkedBlockingQueue<Batch>();
+
+	private final AtomicLong published = new AtomicLong();
+
+	/**
+	 * Guarded by this, waiting readers are notified when it increases
+	 */
+	private long applied;
+
+	private volatile long lastDelayMillis;
+
+	private volatile String lastError;
+
+	/**
+	 * Events skipped by a projection which failed to apply them
+	 */
+	private volatile long skipped;
+
+	private ExecutorService executor;
+
+	@PostConstruct
+	public void start() {
+		executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("projector-"));
+		executor.execute(this::run);
+	}
+
+	@PreDestroy
+	public void stop() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @param events events of a committed transaction
+	 */
+	public void publish(List<ConsumptionEvent> events) {
+		if(events.isEmpty()) return;
+		published.addAndGet(events.size());
+		queue.add(new Batch(events, System.nanoTime()));
+	}
+
+	/**
+	 * Waits until the events published before the call are applied or fuelconsumption.projection.max-wait-ms passes
+	 * @return status of the projections as of the call, consistent if the wait did not time out
+	 */
+	public ProjectionStatus await() {
+		long target = published.get();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+		synchronized(this) {
+			while(applied < target) {
+				long left = deadline - System.nanoTime();
+				if(left <= 0) break;
+				try {
+					TimeUnit.NANOSECONDS.timedWait(this, left);
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			return new ProjectionStatus(target, Math.min(applied, target), skipped, lastDelayMillis, lastError);
+		}
+	}
+
+	/**
+	 * @return current status of the projections, without waiting
+	 */
+	public synchronized ProjectionStatus getStatus() {
+		return new ProjectionStatus(published.get(), applied, skipped, lastDelayMillis, lastError);
+	}
+
+	private void run() {
+		List<Batch> batches = new ArrayList<Batch>();
+		try {
+			while(true) {
+				batches.add(queue.take());
+				queue.drainTo(batches);
+				project(batches);
+				batches.clear();
+			}
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Applies the events to every projection, retrying a projection which fails until it succeeds. Each projection
+	 * applies the events all or nothing, so a retry does not apply them twice. Until then applied and the data
+	 * versions stay behind, reads report the lag and the error instead of caching a wrong result.
+	 */
+	private void project(List<Batch> batches) throws InterruptedException {
+		List<ConsumptionEvent> events = new ArrayList<ConsumptionEvent>();
+		for(Batch batch : batches) events.addAll(batch.events);
+		Set<String> driverIDs = new HashSet<String>();
+		boolean dropped = false;
+		for(ConsumptionEvent event : events) {
+			if(event.getType() == ConsumptionEvent.Type.PARTITION_DROPPED) {
+				dropped = true;
+				continue;
+			}
+			event.loadNames(dimensions.driverID(event.getDriverKey()), dimensions.fuelType(event.getFuelTypeKey()));
+			driverIDs.add(event.getDriverID());
+		}
+		boolean complete = apply("Monthly spend rollup", events, () -> rollup.apply(events));
+		complete &= apply("Statistics by fuel type", events, () -> statsEngine.apply(events));
+		ColumnarStore store = columnar.getIfAvailable();
+		if(store != null) complete &= apply("Columnar store", events, () -> store.apply(events));
+		// the error of a skipped batch stays until a later batch is applied by every projection
+		if(complete) lastError = null;
+		if(dropped) versions.increaseAll();
+		else versions.increase(driverIDs);
+		lastDelayMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batches.get(0).publishedAt);
+		synchronized(this) {
+			applied += events.size();
+			notifyAll();
+		}
+	}
+
+	/**
+	 * @return true if param projection applied param events, false if it skipped them after {@value #MAX_ATTEMPTS} attempts
+	 */
+	private boolean apply(String projection, List<ConsumptionEvent> events, Runnable action) throws InterruptedException {
+		long backoffMillis = MIN_BACKOFF_MILLIS;
+		for(int attempt=1; ; attempt++) {
+			try {
+				action.run();
+				return true;
+			}
+			catch(RuntimeException e) {
+				// shown by the projection status until the retry succeeds
+				lastError = projection + ": " + e;
+			}
+			if(attempt == MAX_ATTEMPTS) break;
+			Thread.sleep(backoffMillis);
+			backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+		}
+		skipped += events.size();
+		lastError = lastError + ", skipped " + events.size() + " events after " + MAX_ATTEMPTS + " attempts";
+		return false;
+	}
+
+	/**
+	 * Events of one committed transaction
+	 */
+	private static class Batch {
+
+		final List<ConsumptionEvent> events;
+
+		final long publishedAt;
+
+		Batch(List<ConsumptionEvent> events, long publishedAt) {
+			this.events = events;
+			this.publishedAt = publishedAt;
+		}
+	}
+
+}
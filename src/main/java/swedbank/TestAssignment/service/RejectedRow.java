@@ -0,0 +1,49 @@
+package swedbank.TestAssignment.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Csv row which could not be registered</p>
+ */
+public class RejectedRow {
+
+	/**
+	 * Number of the row in the file starting from 1 for the header
+	 */
+	private final int row;
+
+	/**
+	 * Column of the invalid value starting from 1, 0 if the whole row is invalid
+	 */
+	private final int column;
+
+	private final String error;
+
+	public RejectedRow(int row, int column, String error) {
+		this.row = row;
+		this.column = column;
+		this.error = error;
+	}
+
+	/**
+	 * @return error message in the format of {@link FuelConsumptionService#addFuelConsumptionsFromCsvFile(java.util.Scanner)}
+	 */
+	@JsonIgnore
+	public String getMessage() {
+		if(column == 0) return error;
+		return "In row: "+row+" column: "+column+" error: "+error;
+	}
+
+	public int getRow() {
+		return row;
+	}
+	public int getColumn() {
+		return column;
+	}
+	public String getError() {
+		return error;
+	}
+
+}
@@ -0,0 +1,67 @@
+package swedbank.TestAssignment.util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Length of the periods a date range is bucketed into. Weeks start on Monday as in ISO-8601,
+ * quarters start in January, April, July and October.</p>
+ */
+public enum Granularity {
+	
+	DAY {
+		@Override
+		public LocalDate start(LocalDate date) {
+			return date;
+		}
+		@Override
+		public LocalDate next(LocalDate start) {
+			return start.plusDays(1);
+		}
+	},
+	WEEK {
+		@Override
+		public LocalDate start(LocalDate date) {
+			return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+		}
+		@Override
+		public LocalDate next(LocalDate start) {
+			return start.plusWeeks(1);
+		}
+	},
+	MONTH {
+		@Override
+		public LocalDate start(LocalDate date) {
+			return date.withDayOfMonth(1);
+		}
+		@Override
+		public LocalDate next(LocalDate start) {
+			return start.plusMonths(1);
+		}
+	},
+	QUARTER {
+		@Override
+		public LocalDate start(LocalDate date) {
+			return LocalDate.of(date.getYear(), (date.getMonthValue() - 1) / 3 * 3 + 1, 1);
+		}
+		@Override
+		public LocalDate next(LocalDate start) {
+			return start.plusMonths(3);
+		}
+	};
+	
+	/**
+	 * @return first day of the period of param date
+	 */
+	public abstract LocalDate start(LocalDate date);
+	
+	/**
+	 * @param start first day of a period
+	 * @return first day of the period after it
+	 */
+	public abstract LocalDate next(LocalDate start);
+	
+}
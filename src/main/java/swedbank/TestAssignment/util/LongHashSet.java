@@ -0,0 +1,116 @@
+package swedbank.TestAssignment.util;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Set of primitive longs with open addressing and linear probing, about 10 bytes per
+ * element instead of the 50 or more bytes of a HashSet of Long.</p>
+ * <p>Not thread safe.</p>
+ */
+public class LongHashSet {
+	
+	private static final float LOAD_FACTOR = 0.6f;
+	
+	/**
+	 * 0 marks an empty slot, so the value 0 is kept in a flag
+	 */
+	private long[] slots;
+	
+	private boolean containsZero;
+	
+	private int size;
+	
+	public LongHashSet() {
+		this(1024);
+	}
+	
+	public LongHashSet(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+		this.slots = new long[capacity];
+	}
+	
+	/**
+	 * @return true if param value was not in the set
+	 */
+	public boolean add(long value) {
+		if(value == 0) {
+			if(containsZero) return false;
+			containsZero = true;
+			size++;
+			return true;
+		}
+		if(size + 1 > slots.length * LOAD_FACTOR) grow();
+		if(!insert(slots, value)) return false;
+		size++;
+		return true;
+	}
+	
+	public boolean contains(long value) {
+		if(value == 0) return containsZero;
+		int mask = slots.length - 1;
+		for(int i = index(value, mask); ; i = (i + 1) & mask) {
+			long slot = slots[i];
+			if(slot == value) return true;
+			if(slot == 0) return false;
+		}
+	}
+	
+	/**
+	 * @return true if param value was in the set
+	 */
+	public boolean remove(long value) {
+		if(value == 0) {
+			if(!containsZero) return false;
+			containsZero = false;
+			size--;
+			return true;
+		}
+		int mask = slots.length - 1;
+		int i = index(value, mask);
+		while(slots[i] != value) {
+			if(slots[i] == 0) return false;
+			i = (i + 1) & mask;
+		}
+		// shift back the following values of the probe sequence into the freed slot
+		for(int j = (i + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+			int home = index(slots[j], mask);
+			if(((j - home) & mask) >= ((j - i) & mask)) {
+				slots[i] = slots[j];
+				i = j;
+			}
+		}
+		slots[i] = 0;
+		size--;
+		return true;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	private static boolean insert(long[] slots, long value) {
+		int mask = slots.length - 1;
+		for(int i = index(value, mask); ; i = (i + 1) & mask) {
+			long slot = slots[i];
+			if(slot == value) return false;
+			if(slot == 0) {
+				slots[i] = value;
+				return true;
+			}
+		}
+	}
+	
+	private static int index(long value, int mask) {
+		long h = value * 0x9e3779b97f4a7c15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+	
+	private void grow() {
+		long[] grown = new long[slots.length * 2];
+		for(long slot : slots) {
+			if(slot != 0) insert(grown, slot);
+		}
+		slots = grown;
+	}
+	
+}
@@ -0,0 +1,91 @@
+package swedbank.TestAssignment.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ *
+ * @author denizalp@ut.ee
+ * <p>Fixed-point decimals stored in a long as millionths, for example 1.5 is 1500000.
+ * Prices, volumes and totals are summed in this form without allocating, and converted to
+ * BigDecimal only when they are returned.</p>
+ * <ul>
+ * <li>The scale is {@value #SCALE} decimals, values up to about 9.2 * 10^12 are representable.</li>
+ * <li>Rounding is half up, like the rest of the application.</li>
+ * <li>Every operation which can overflow throws ArithmeticException instead of wrapping around.</li>
+ * </ul>
+ */
+public final class Micros {
+
+	public static final int SCALE = 6;
+
+	/**
+	 * 1 in millionths
+	 */
+	public static final long ONE = 1_000_000L;
+
+	private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L};
+
+	private Micros() {}
+
+	/**
+	 * @return param value in millionths, rounded half up if it has more than {@value #SCALE} decimals
+	 * @throws ArithmeticException if param value does not fit
+	 */
+	public static long of(BigDecimal value) {
+		return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
+
+	/**
+	 * @return param micros as a BigDecimal with param scale, rounded half up
+	 */
+	public static BigDecimal toBigDecimal(long micros, int scale) {
+		return BigDecimal.valueOf(round(micros, scale), SCALE).setScale(scale, RoundingMode.HALF_UP);
+	}
+
+	public static double toDouble(long micros) {
+		return micros / (double) ONE;
+	}
+
+	/**
+	 * @return param micros rounded half up to param scale decimals, still in millionths
+	 */
+	public static long round(long micros, int scale) {
+		if(scale >= SCALE) return micros;
+		long unit = POWERS_OF_TEN[SCALE - Math.max(scale, 0)];
+		return Math.multiplyExact(divide(micros, unit), unit);
+	}
+
+	/**
+	 * @throws ArithmeticException on overflow
+	 */
+	public static long add(long a, long b) {
+		return Math.addExact(a, b);
+	}
+
+	/**
+	 * Both factors are split into integer part and fraction, the partial products are exact and only the
+	 * product of the fractions is rounded, so the product does not overflow before the scale is removed.
+	 * @return product of param a and param b rounded half up to millionths
+	 * @throws ArithmeticException if the product does not fit
+	 */
+	public static long multiply(long a, long b) {
+		long aWhole = a / ONE, aFraction = a % ONE;
+		long bWhole = b / ONE, bFraction = b % ONE;
+		long product = Math.multiplyExact(Math.multiplyExact(aWhole, bWhole), ONE);
+		product = Math.addExact(product, Math.multiplyExact(aWhole, bFraction));
+		product = Math.addExact(product, Math.multiplyExact(aFraction, bWhole));
+		return Math.addExact(product, divide(aFraction * bFraction, ONE));
+	}
+
+	/**
+	 * @return param value divided by param divisor rounded half up, away from zero for negative values
+	 */
+	private static long divide(long value, long divisor) {
+		long quotient = value / divisor;
+		long remainder = value % divisor;
+		if(Math.abs(remainder) * 2 >= divisor) quotient += Long.signum(value);
+		return quotient;
+	}
+
+}
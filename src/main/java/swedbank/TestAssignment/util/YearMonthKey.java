@@ -0,0 +1,35 @@
+package swedbank.TestAssignment.util;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+/**
+ * 
+ * @author denizalp@ut.ee
+ * <p>Year and month stored as one int yyyyMM, for example 201904 for April 2019.
+ * Keys sort like the months they stand for, so a range of months is a range of keys.</p>
+ */
+public final class YearMonthKey {
+	
+	private YearMonthKey() {}
+	
+	public static int of(LocalDateTime date) {
+		return date.getYear() * 100 + date.getMonthValue();
+	}
+	
+	public static int of(YearMonth yearMonth) {
+		return yearMonth.getYear() * 100 + yearMonth.getMonthValue();
+	}
+	
+	public static YearMonth toYearMonth(int key) {
+		return YearMonth.of(key / 100, key % 100);
+	}
+	
+	/**
+	 * @return month of param key between 1 and 12
+	 */
+	public static int month(int key) {
+		return key % 100;
+	}
+	
+}
@@ -0,0 +1,103 @@
+package swedbank.TestAssignment.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import swedbank.TestAssignment.domain.FuelConsumption;
+import swedbank.TestAssignment.repository.FuelConsumptionRepository;
+
+/**
+ * 
+ * Insert throughput of FuelConsumptionRepository#saveAll against
+ * FuelConsumptionRepository#saveAllInBatches at 100k and 1M rows<br>
+ * Both paths take identifiers from the same pooled sequence(allocationSize 50), so the baseline already
+ * saves the sequence round trips and only JDBC batching, flushing and clearing are compared, not the
+ * identifier generation of the previous one sequence call per row.<br>
+ * Skipped in the normal build, run it manually with -Dbenchmark=true and a large heap e.g.
+ * mvn test -Dtest=BulkInsertBenchmark -Dbenchmark=true -DargLine=-Xmx4g
+ * @author denizalp@ut.ee
+ *
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class BulkInsertBenchmark {
+	
+	@Autowired
+	private FuelConsumptionRepository repository;
+	
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+	
+	@PersistenceContext
+	private EntityManager em;
+	
+	@BeforeClass
+	public static void onlyWhenRequested() {
+		Assume.assumeTrue("Benchmarks run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+	}
+	
+	@After
+	public void clearDB() {
+		repository.deleteAllInBatch();
+	}
+	
+	@Test
+	public void benchmark_100k() {
+		run(100000);
+	}
+	
+	@Test
+	public void benchmark_1M() {
+		run(1000000);
+	}
+	
+	private void run(int rows) {
+		final List<FuelConsumption> before = generate(rows);
+		long start = System.nanoTime();
+		// previous path: one statement per row, no flush or clear until commit, but with the pooled sequence
+		transactionTemplate.execute(status -> {
+			em.unwrap(Session.class).setJdbcBatchSize(1);
+			return repository.saveAll(before);
+		});
+		report("saveAll", rows, System.nanoTime() - start);
+		before.clear();
+		repository.deleteAllInBatch();
+		
+		List<FuelConsumption> after = generate(rows);
+		start = System.nanoTime();
+		repository.saveAllInBatches(after);
+		report("saveAllInBatches", rows, System.nanoTime() - start);
+	}
+	
+	private List<FuelConsumption> generate(int rows) {
+		List<FuelConsumption> list = new ArrayList<FuelConsumption>(rows);
+		LocalDateTime date = LocalDateTime.of(2019, 1, 1, 0, 0);
+		for(int i=0; i<rows; i++) {
+			list.add(new FuelConsumption(i % 2 == 0 ? "Diesel" : "98", BigDecimal.valueOf(150 + i % 50, 2),
+					BigDecimal.valueOf(10 + i % 90), date.plusMinutes(i), "driver" + (i % 1000)));
+		}
+		return list;
+	}
+	
+	private void report(String name, int rows, long nanos) {
+		double seconds = nanos / 1e9;
+		System.out.println(String.format("%s: %d rows in %.2f s, %.0f rows/sec", name, rows, seconds, rows / seconds));
+	}
+	
+}
@@ -0,0 +1,125 @@
+package swedbank.TestAssignment.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import swedbank.TestAssignment.domain.FuelConsumption;
+import swedbank.TestAssignment.ingest.CsvRowException;
+import swedbank.TestAssignment.ingest.CsvRowParser;
+import swedbank.TestAssignment.ingest.FastParsers;
+
+/**
+ * 
+ * JMH comparison of the previous csv parsing path (String#split, LocalDateTime#parse
+ * and new BigDecimal(String)) with CsvRowParser and FastParsers<br>
+ * Run it from the IDE or after mvn test-compile with the main method, e.g.
+ * java -cp target/test-classes:target/classes:&lt;test classpath&gt; swedbank.TestAssignment.benchmark.CsvParsingBenchmark
+ * @author denizalp@ut.ee
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvParsingBenchmark {
+	
+	private static final String HEADER = "FuelType;PricePerLitter;Volume;Date;DriverID";
+	
+	private static final String LINE = "Diesel;1.459;48.27;2019-04-01T11:00:00;driver001";
+	
+	private String[] columns;
+	
+	private CsvRowParser parser;
+	
+	private char[] dateChars;
+	
+	private char[] decimalChars;
+	
+	@Setup
+	public void setup() {
+		columns = HEADER.split(";");
+		parser = new CsvRowParser(HEADER);
+		dateChars = "2019-04-01T11:00:00".toCharArray();
+		decimalChars = "48.27".toCharArray();
+	}
+	
+	@Benchmark
+	public LocalDateTime dateTime_isoFormatter() {
+		return LocalDateTime.parse("2019-04-01T11:00:00", DateTimeFormatter.ISO_DATE_TIME);
+	}
+	
+	@Benchmark
+	public LocalDateTime dateTime_fastPath() {
+		return FastParsers.parseDateTime(dateChars, 0, dateChars.length);
+	}
+	
+	@Benchmark
+	public BigDecimal decimal_constructor() {
+		return new BigDecimal("48.27");
+	}
+	
+	@Benchmark
+	public BigDecimal decimal_fastPath() {
+		return FastParsers.parseDecimal(decimalChars, 0, decimalChars.length);
+	}
+	
+	/**
+	 * Row parsing as it was done before CsvRowParser
+	 */
+	@Benchmark
+	public void row_split(Blackhole bh) {
+		String[] values = LINE.split(";");
+		FuelConsumption fc = new FuelConsumption();
+		for(int i=0; i<columns.length; i++) {
+			if(columns[i].equalsIgnoreCase("FuelType")) {
+				fc.setFuelType(values[i]);
+			}
+			if(columns[i].equalsIgnoreCase("PricePerLitter")) {
+				fc.setPricePerLitter(new BigDecimal(values[i]));
+			}
+			if(columns[i].equalsIgnoreCase("Volume")) {
+				fc.setVolume(new BigDecimal(values[i]));
+			}
+			if(columns[i].equalsIgnoreCase("Date")) {
+				DateTimeFormatter formatter = DateTimeFormatter.ISO_DATE_TIME; 
+				LocalDateTime dateTime = LocalDateTime.parse(values[i], formatter);
+				fc.setDate(dateTime);
+			}
+			if(columns[i].equalsIgnoreCase("DriverID")) {
+				fc.setDriverID(values[i]);
+			}
+		}
+		bh.consume(fc);
+	}
+	
+	@Benchmark
+	public FuelConsumption row_compiledPlan() throws CsvRowException {
+		return parser.parse(LINE);
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(CsvParsingBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+	
+}
@@ -0,0 +1,102 @@
+package swedbank.TestAssignment.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import swedbank.TestAssignment.domain.FuelConsumption;
+import swedbank.TestAssignment.repository.FuelConsumptionRepository;
+import swedbank.TestAssignment.util.YearMonthKey;
+
+/**
+ *
+ * Latency of the per-driver queries of FuelConsumptionRepository while the table
+ * grows to 1M, 5M and 10M rows<br>
+ * New rows go to new months, so the lookups of a driver in a month return the same rows
+ * at every size and with the driver indexes stay flat as the table grows. The per-driver
+ * totals and statistics read only the index entries of the driver, 1 / 10000 of the table.<br>
+ * Skipped in the normal build, run it manually with -Dbenchmark=true and a large heap e.g.
+ * mvn test -Dtest=QueryBenchmark -Dbenchmark=true -DargLine=-Xmx8g
+ * @author denizalp@ut.ee
+ *
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class QueryBenchmark {
+
+	private static final int CHUNK = 100000;
+
+	private static final int DRIVERS = 10000;
+
+	private static final int RUNS = 20;
+
+	@Autowired
+	private FuelConsumptionRepository repository;
+
+	@BeforeClass
+	public static void onlyWhenRequested() {
+		Assume.assumeTrue("Benchmarks run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+	}
+
+	@After
+	public void clearDB() {
+		repository.deleteAllInBatch();
+	}
+
+	@Test
+	public void benchmark_upTo10M() {
+		int rows = 0;
+		for(int size : new int[] {1000000, 5000000, 10000000}) {
+			for(; rows < size; rows += CHUNK) {
+				repository.saveAllInBatches(generate(rows, CHUNK));
+			}
+			report(size);
+		}
+	}
+
+	/**
+	 * Every 100k rows go to the next month from January 2019, 10 rows for each driver
+	 */
+	private List<FuelConsumption> generate(int from, int count) {
+		List<FuelConsumption> list = new ArrayList<FuelConsumption>(count);
+		LocalDateTime start = LocalDateTime.of(2019, 1, 1, 0, 0);
+		for(int i=from; i<from+count; i++) {
+			LocalDateTime date = start.plusMonths(i / (DRIVERS * 10)).plusMinutes(i % 1000);
+			list.add(new FuelConsumption(i % 2 == 0 ? "Diesel" : "98", BigDecimal.valueOf(150 + i % 50, 2),
+					BigDecimal.valueOf(10 + i % 90), date, "driver" + (i % DRIVERS)));
+		}
+		return list;
+	}
+
+	private void report(int rows) {
+		int yearMonth = YearMonthKey.of(LocalDateTime.of(2019, 1, 1, 0, 0));
+		time("findAllByYearMonthForSingleDriver", rows, () -> repository.findAllByYearMonthForSingleDriver(yearMonth, "driver42"));
+		time("findAllByMonthForSingleDriver", rows, () -> repository.findAllByMonthForSingleDriver(1, "driver42"));
+		time("findTotalPricesGroupedByMonthForSingleDriver", rows, () -> repository.findTotalPricesGroupedByMonthForSingleDriver("driver42"));
+		time("getStatisticsGroupedByFuelTypeForSingleDriver", rows, () -> repository.getStatisticsGroupedByFuelTypeForSingleDriver("driver42"));
+	}
+
+	private void time(String name, int rows, Supplier<List<?>> query) {
+		// warm up
+		query.get();
+		long start = System.nanoTime();
+		int size = 0;
+		for(int i=0; i<RUNS; i++) {
+			size = query.get().size();
+		}
+		double millis = (System.nanoTime() - start) / 1e6 / RUNS;
+		System.out.println(String.format("%s at %d rows: %d results in %.2f ms", name, rows, size, millis));
+	}
+
+}
@@ -0,0 +1,77 @@
+package swedbank.TestAssignment.ingest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.junit.Test;
+
+import swedbank.TestAssignment.domain.FuelConsumption;
+
+/**
+ * 
+ * Unit tests of csv tokenizing and header compiled row parsing
+ * @author denizalp@ut.ee
+ *
+ */
+public class CsvRowParserTest {
+	
+	/**
+	 * Columns must be matched ignoring case and order
+	 * @throws Exception
+	 */
+	@Test
+	public void test_parseSuccessful() throws Exception {
+		CsvRowParser parser = new CsvRowParser("driverid;DATE;PricePerLitter;Volume;FuelType");
+		FuelConsumption fc = parser.parse("driver001;2019-04-01T11:00:00;1.5;100;Diesel");
+		
+		assertThat(fc.getDriverID()).isEqualTo("driver001");
+		assertThat(fc.getDate()).isEqualTo(LocalDateTime.of(2019, 4, 1, 11, 0));
+		assertThat(fc.getPricePerLitter()).isEqualByComparingTo(new BigDecimal("1.5"));
+		assertThat(fc.getVolume()).isEqualByComparingTo(new BigDecimal("100"));
+		assertThat(fc.getFuelType()).isEqualTo("Diesel");
+	}
+	
+	/**
+	 * Quoted fields may contain the delimiter and escaped quotes, delimiter is configurable
+	 * @throws Exception
+	 */
+	@Test
+	public void test_parseQuotedFieldsSuccessful() throws Exception {
+		CsvRowParser parser = new CsvRowParser("\"FuelType\",PricePerLitter,Volume,Date,DriverID", ',');
+		FuelConsumption fc = parser.parse("\"Diesel, \"\"premium\"\"\",1.5,100,2019-04-01T11:00:00,\"driver001\"");
+		
+		assertThat(fc.getFuelType()).isEqualTo("Diesel, \"premium\"");
+		assertThat(fc.getDriverID()).isEqualTo("driver001");
+	}
+	
+	/**
+	 * Rows with missing values or not closed quotes must be rejected,
+	 * values which can not be converted must be reported with their column
+	 */
+	@Test
+	public void test_parseNotSuccessful() {
+		CsvRowParser parser = new CsvRowParser("FuelType;PricePerLitter;Volume;Date;DriverID");
+		
+		CsvRowException mismatch = parse(parser, "Diesel;1.5;100;2019-04-01T11:00:00");
+		assertThat(mismatch.getMessage()).isEqualTo(CsvRowParser.COLUMN_SIZE_MISMATCH);
+		
+		CsvRowException quote = parse(parser, "\"Diesel;1.5;100;2019-04-01T11:00:00;driver001");
+		assertThat(quote).isNotNull();
+		
+		CsvRowException number = parse(parser, "Diesel;1,5;100;2019-04-01T11:00:00;driver001");
+		assertThat(number.getColumn()).isEqualTo(2);
+	}
+	
+	private CsvRowException parse(CsvRowParser parser, String line) {
+		try {
+			parser.parse(line);
+		}
+		catch(CsvRowException e) {
+			return e;
+		}
+		return null;
+	}
+	
+}
@@ -0,0 +1,67 @@
+package swedbank.TestAssignment.ingest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.Test;
+
+/**
+ * 
+ * Unit tests of FastParsers, results must be the same as the general parsers
+ * @author denizalp@ut.ee
+ *
+ */
+public class FastParsersTest {
+	
+	/**
+	 * Fast path and fall back decimals must have the same value and scale as new BigDecimal(String)
+	 */
+	@Test
+	public void test_parseDecimalSuccessful() {
+		String[] values = {"100", "1.5", "1.50", "0.001", ".5", "1.", "-2.5", "1e3", "12345678901234567890.5"};
+		for(String value : values) {
+			assertThat(decimal(value)).isEqualTo(new BigDecimal(value));
+		}
+	}
+	
+	@Test
+	public void test_parseDecimalNotSuccessful() {
+		assertThatThrownBy(() -> decimal("")).isInstanceOf(NumberFormatException.class);
+		assertThatThrownBy(() -> decimal("1.2.3")).isInstanceOf(NumberFormatException.class);
+		assertThatThrownBy(() -> decimal("1,5")).isInstanceOf(NumberFormatException.class);
+	}
+	
+	/**
+	 * Fast path and fall back date times must be equal to LocalDateTime#parse with ISO_DATE_TIME
+	 */
+	@Test
+	public void test_parseDateTimeSuccessful() {
+		String[] values = {"2019-04-01T11:00:00", "2019-12-31T23:59:59", "2019-04-01T11:00", "2019-04-01T11:00:00.5"};
+		for(String value : values) {
+			assertThat(dateTime(value)).isEqualTo(LocalDateTime.parse(value, DateTimeFormatter.ISO_DATE_TIME));
+		}
+	}
+	
+	@Test
+	public void test_parseDateTimeNotSuccessful() {
+		assertThatThrownBy(() -> dateTime("2019-02-30T11:00:00")).isInstanceOf(DateTimeException.class);
+		assertThatThrownBy(() -> dateTime("2019-04-01 11:00:00")).isInstanceOf(DateTimeException.class);
+		assertThatThrownBy(() -> dateTime("2019-0a-01T11:00:00")).isInstanceOf(DateTimeException.class);
+	}
+	
+	private BigDecimal decimal(String value) {
+		char[] chars = value.toCharArray();
+		return FastParsers.parseDecimal(chars, 0, chars.length);
+	}
+	
+	private LocalDateTime dateTime(String value) {
+		char[] chars = value.toCharArray();
+		return FastParsers.parseDateTime(chars, 0, chars.length);
+	}
+	
+}
@@ -0,0 +1,94 @@
+package swedbank.TestAssignment.ingest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import swedbank.TestAssignment.repository.FuelConsumptionRepository;
+import swedbank.TestAssignment.service.CsvIngestResult;
+
+/**
+ * 
+ * Integration tests of memory mapped csv import
+ * @author denizalp@ut.ee
+ *
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class MappedCsvImporterTest {
+	
+	@Autowired
+	private MappedCsvImporter importer;
+	
+	@Autowired
+	private FuelConsumptionRepository repository;
+	
+	/**
+	 * DB is emptied after a test is completed.
+	 */
+	@After
+	public void clearDB() {
+		repository.deleteAll();
+	}
+	
+	/**
+	 * Check a file with windows line breaks and without a final line break is imported completely
+	 * @throws Exception
+	 * @see MappedCsvImporter#importFile(Path, CsvIngestResult)
+	 */
+	@Test
+	public void test_importFileSuccessful() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		sb.append("FuelType;PricePerLitter;Volume;Date;DriverID\r\n");
+		for(int i=0; i<25; i++) {
+			sb.append("Diesel;1.5;100;2019-04-01T11:00:00;driver").append(i).append("\r\n");
+		}
+		sb.append("98;2;50;2019-04-01T13:30:00;driverÖ");
+		Path file = write(sb.toString());
+		
+		CsvIngestResult result = new CsvIngestResult(4);
+		importer.importFile(file, result);
+		
+		assertThat(result.getMessage()).isEqualTo("Successful");
+		assertThat(result.getRowsPersisted()).isEqualTo(26);
+		assertThat(repository.count()).isEqualTo(26);
+		assertThat(repository.findAll()).anyMatch(fc -> fc.getDriverID().equals("driverÖ"));
+	}
+	
+	/**
+	 * Check the reported row number of an invalid row is its row number in the file
+	 * @throws Exception
+	 */
+	@Test
+	public void test_importFileNotSuccessful() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		sb.append("FuelType;PricePerLitter;Volume;Date;DriverID\n");
+		for(int i=0; i<25; i++) {
+			sb.append("Diesel;1.5;100;2019-04-01T11:00:00;driver001\n");
+		}
+		sb.append("98;2;50;2019-04-01T13:30:00; \n");
+		Path file = write(sb.toString());
+		
+		CsvIngestResult result = new CsvIngestResult(4);
+		importer.importFile(file, result);
+		
+		assertThat(result.getMessage()).isEqualTo("In row: 27 column: 5 error: Driver ID must not be empty");
+	}
+	
+	private Path write(String content) throws Exception {
+		Path file = Files.createTempFile("import-", ".csv");
+		file.toFile().deleteOnExit();
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+	
+}
@@ -10,24 +10,31 @@ import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.hamcrest.Matchers.*;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import swedbank.TestAssignment.domain.FuelConsumption;
 import swedbank.TestAssignment.repository.FuelConsumptionRepository;
+import swedbank.TestAssignment.repository.ImportedFileRepository;
 import swedbank.TestAssignment.repository.StatByMonthAndFuelType;
 import swedbank.TestAssignment.repository.TotalSpentMoneyByMonth;
 import swedbank.TestAssignment.service.FuelConsumptionService;
@@ -52,6 +59,9 @@ public class FuelConsumptionResourceTest {
 	@Autowired
 	private FuelConsumptionRepository repository;
 	
+	@Autowired
+	private ImportedFileRepository importedFileRepository;
+	
 	@Autowired
 	private ObjectMapper om;
 	
@@ -61,6 +71,7 @@ public class FuelConsumptionResourceTest {
 	@After
 	public void clearDB() {
 		repository.deleteAll();
+		importedFileRepository.deleteAll();
 	}
 	
 	/**
@@ -114,7 +125,7 @@ public class FuelConsumptionResourceTest {
 	 * <li>Table size must increase by 2</li>
 	 * </ul>
 	 * @throws Exception
-	 * @see FuelConsumptionResource#registerFromFile(org.springframework.web.multipart.MultipartFile)
+	 * @see FuelConsumptionResource#registerFromFile(org.springframework.web.multipart.MultipartFile, Boolean)
 	 */
 	@Test
 	public void test_insertionFromFileSuccessful() throws Exception{
@@ -133,6 +144,280 @@ public class FuelConsumptionResourceTest {
 		assertThat(after-before).isEqualTo(2);
 	}
 	
+	/**
+	 * Check POST request with csv file in stream mode succeeded
+	 * <ul>
+	 * <li>Response status must be OK(200)</li>
+	 * <li>Response JSON must report two chunks of one row</li>
+	 * <li>Table size must increase by 2</li>
+	 * </ul>
+	 * @throws Exception
+	 * @see FuelConsumptionResource#registerFromFileInChunks(org.springframework.web.multipart.MultipartFile, Integer, Boolean, boolean, boolean)
+	 */
+	@Test
+	public void test_insertionFromFileInChunksSuccessful() throws Exception{
+		int before = service.getAllFuelConsumptions().size();
+		StringBuilder sb = new StringBuilder();
+		sb.append("FuelType;PricePerLitter;Volume;Date;DriverID\n");
+		sb.append("Diesel;1.5;100;2019-04-01T11:00:00;driver001\n");
+		sb.append("98;2;50;2019-04-01T13:30:00;driver002\n");
+		
+		MockMultipartFile file = new MockMultipartFile("file","fgfmglkfmgkl.csv","text/csv",sb.toString().getBytes());
+		mvc.perform(multipart("/api/consumptions/file")
+				.file(file)
+				.param("mode", "stream")
+				.param("chunkSize", "1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.message",is("Successful")))
+				.andExpect(jsonPath("$.rowsWrittenPerChunk",contains(1, 1)));
+		
+		int after = service.getAllFuelConsumptions().size();
+		assertThat(after-before).isEqualTo(2);
+	}
+	
+	/**
+	 * Check POST request with csv file in parallel mode succeeded and reports
+	 * the row number of an invalid row
+	 * <ul>
+	 * <li>Response status must be OK(200)</li>
+	 * <li>Table size must increase by 4 for the valid file</li>
+	 * <li>Response message must state the invalid row of the second file</li>
+	 * </ul>
+	 * @throws Exception
+	 * @see FuelConsumptionResource#registerFromFileInParallel(org.springframework.web.multipart.MultipartFile, Integer, Boolean, boolean, boolean)
+	 */
+	@Test
+	public void test_insertionFromFileInParallel() throws Exception{
+		int before = service.getAllFuelConsumptions().size();
+		StringBuilder sb = new StringBuilder();
+		sb.append("FuelType;PricePerLitter;Volume;Date;DriverID\n");
+		sb.append("Diesel;1.5;100;2019-04-01T11:00:00;driver001\n");
+		sb.append("98;2;50;2019-04-01T13:30:00;driver002\n");
+		sb.append("98;2;50;2019-05-01T13:30:00;driver001\n");
+		sb.append("98;2;50;2019-05-02T13:30:00;driver002\n");
+		
+		MockMultipartFile file = new MockMultipartFile("file","fgfmglkfmgkl.csv","text/csv",sb.toString().getBytes());
+		mvc.perform(multipart("/api/consumptions/file")
+				.file(file)
+				.param("mode", "parallel")
+				.param("chunkSize", "1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.message",is("Successful")))
+				.andExpect(jsonPath("$.rowsPersisted",is(4)));
+		
+		int after = service.getAllFuelConsumptions().size();
+		assertThat(after-before).isEqualTo(4);
+		
+		sb.append("98;2;50;2019-05-02T13:30:00; \n");
+		file = new MockMultipartFile("file","fgfmglkfmgkl.csv","text/csv",sb.toString().getBytes());
+		mvc.perform(multipart("/api/consumptions/file")
+				.file(file)
+				.param("mode", "parallel")
+				.param("chunkSize", "2"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.message",is("In row: 6 column: 5 error: Driver ID must not be empty")));
+	}
+	
+	/**
+	 * Check POST request with csv file in parallel mode with a malformed header
+	 * <ul>
+	 * <li>Response status must be OK(200) with the header error, the request must not hang</li>
+	 * <li>Table size must not change</li>
+	 * </ul>
+	 * @throws Exception
+	 * @see FuelConsumptionResource#registerFromFileInParallel(org.springframework.web.multipart.MultipartFile, Integer, Boolean, boolean, boolean)
+	 */
+	@Test(timeout = 60000)
+	public void test_insertionFromFileInParallelWithInvalidHeader() throws Exception{
+		int before = service.getAllFuelConsumptions().size();
+		StringBuilder sb = new StringBuilder();
+		sb.append("\"FuelType;PricePerLitter;Volume;Date;DriverID\n");
+		for(int i=0; i<100; i++) sb.append("Diesel;1.5;100;2019-04-01T11:00:00;driver001\n");
+		
+		MockMultipartFile file = new MockMultipartFile("file","header.csv","text/csv",sb.toString().getBytes());
+		mvc.perform(multipart("/api/consumptions/file")
+				.file(file)
+				.param("mode", "parallel")
+				.param("chunkSize", "1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.message",startsWith("Invalid header")));
+		
+		assertThat(service.getAllFuelConsumptions().size()).isEqualTo(before);
+	}
+	
+	/**
+	 * Check POST request with csv file in async mode returns a job which finishes successfully
+	 * <ul>
+	 * <li>Response status must be ACCEPTED(202) with the job identifier</li>
+	 * <li>Job must succeed with 2 persisted rows</li>
+	 * <li>Table size must increase by 2</li>
+	 * </ul>
+	 * @throws Exception
+	 * @see FuelConsumptionResource#registerFromFileAsync(org.springframework.web.multipart.MultipartFile, Integer, Boolean, boolean, boolean)
+	 * @see FuelConsumptionResource#getJob(String)
+	 */
+	@Test
+	public void test_insertionFromFileAsyncSuccessful() throws Exception{
+		int before = service.getAllFuelConsumptions().size();
+		StringBuilder sb = new StringBuilder();
+		sb.append("FuelType;PricePerLitter;Volume;Date;DriverID\n");
+		sb.append("Diesel;1.5;100;2019-04-01T11:00:00;driver001\n");
+		sb.append("98;2;50;2019-04-01T13:30:00;driver002\n");
+		
+		MockMultipartFile file = new MockMultipartFile("file","fgfmglkfmgkl.csv","text/csv",sb.toString().getBytes());
+		String response = mvc.perform(multipart("/api/consumptions/file")
+				.file(file)
+				.param("mode", "async"))
+				.andExpect(status().isAccepted())
+				.andReturn().getResponse().getContentAsString();
+		String id = om.readTree(response).get("id").asText();
+		
+		String jobStatus = null;
+		for(int i=0; i<100 && !"SUCCEEDED".equals(jobStatus) && !"FAILED".equals(jobStatus); i++) {
+			Thread.sleep(50);
+			response = mvc.perform(get("/api/consumptions/jobs/"+id))
+					.andExpect(status().isOk())
+					.andReturn().getResponse().getContentAsString();
+			jobStatus = om.readTree(response).get("status").asText();
+		}
+		assertThat(jobStatus).isEqualTo("SUCCEEDED");
+		assertThat(om.readTree(response).get("rowsPersisted").asLong()).isEqualTo(2);
+		
+		int after = service.getAllFuelConsumptions().size();
+		assertThat(after-before).isEqualTo(2);
+		
+		mvc.perform(get("/api/consumptions/jobs/unknown"))
+			.andExpect(status().isNotFound());
+	}
+	
+	/**
+	 * Check POST request with gzip compressed csv file succeeded
+	 * <ul>
+	 * <li>Response status must be OK(200)</li>
+	 * <li>Table size must increase by 2</li>
+	 * </ul>
+	 * @throws Exception
+	 * @see FuelConsumptionResource#registerFromFile(org.springframework.web.multipart.MultipartFile, Boolean)
+	 */
+	@Test
+	public void test_insertionFromGzipFileSuccessful() throws Exception{
+		int before = service.getAllFuelConsumptions().size();
+		StringBuilder sb = new StringBuilder();
+		sb.append("FuelType;PricePerLitter;Volume;Date;DriverID\n");
+		sb.append("Diesel;1.5;100;2019-04-01T11:00:00;driver001\n");
+		sb.append("98;2;50;2019-04-01T13:30:00;driver002\n");
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+			gzip.write(sb.toString().getBytes());
+		}
+		
+		MockMultipartFile file = new MockMultipartFile("file","fgfmglkfmgkl.csv.gz","application/octet-stream",bytes.toByteArray());
+		mvc.perform(multipart("/api/consumptions/file")
+				.file(file))
+				.andExpect(status().isOk())
+				.andExpect(content().string("Successful"));
+		
+		int after = service.getAllFuelConsumptions().size();
+		assertThat(after-before).isEqualTo(2);
+	}
+	
+	/**
+	 * Check POST request with dedup skips a file uploaded before and rows registered before
+	 * <ul>
+	 * <li>First upload must persist 2 rows and skip the repeated row of the file</li>
+	 * <li>Second upload of the same file must be skipped without persisting rows</li>
+	 * <li>Another file must persist only its new row</li>
+	 * </ul>
+	 * @throws Exception
+	 * @see FuelConsumptionResource#registerFromFileInChunks(org.springframework.web.multipart.MultipartFile, Integer, Boolean, boolean, boolean)
+	 */
+	@Test
+	public void test_insertionFromFileWithDedup() throws Exception{
+		int before = service.getAllFuelConsumptions().size();
+		StringBuilder sb = new StringBuilder();
+		sb.append("FuelType;PricePerLitter;Volume;Date;DriverID\n");
+		sb.append("Diesel;1.5;100;2019-04-01T11:00:00;driver001\n");
+		sb.append("98;2;50;2019-04-01T13:30:00;driver002\n");
+		sb.append("Diesel;1.50;100.0;2019-04-01T11:00:00;driver001\n");
+		
+		MockMultipartFile file = new MockMultipartFile("file","dedup.csv","text/csv",sb.toString().getBytes());
+		mvc.perform(multipart("/api/consumptions/file")
+				.file(file)
+				.param("mode", "stream")
+				.param("dedup", "true"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.message",is("Successful")))
+				.andExpect(jsonPath("$.rowsPersisted",is(2)))
+				.andExpect(jsonPath("$.rowsSkippedAsDuplicate",is(1)));
+		
+		mvc.perform(multipart("/api/consumptions/file")
+				.file(file)
+				.param("mode", "stream")
+				.param("dedup", "true"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.message",is(FuelConsumptionService.DUPLICATE_FILE)))
+				.andExpect(jsonPath("$.rowsPersisted",is(0)));
+		
+		sb.append("98;2;50;2019-05-01T13:30:00;driver002\n");
+		MockMultipartFile other = new MockMultipartFile("file","dedup2.csv","text/csv",sb.toString().getBytes());
+		mvc.perform(multipart("/api/consumptions/file")
+				.file(other)
+				.param("dedup", "true"))
+				.andExpect(status().isOk())
+				.andExpect(content().string("Successful"));
+		
+		int after = service.getAllFuelConsumptions().size();
+		assertThat(after-before).isEqualTo(3);
+	}
+	
+	/**
+	 * Check POST request with collectErrors persists all valid rows and lists the invalid ones
+	 * <ul>
+	 * <li>Response JSON must report 2 persisted and 2 rejected rows with their positions</li>
+	 * <li>Table size must increase by 2</li>
+	 * <li>Reject file must have the header and the rejected rows with their errors</li>
+	 * </ul>
+	 * @throws Exception
+	 * @see FuelConsumptionResource#registerFromFileInChunks(org.springframework.web.multipart.MultipartFile, Integer, Boolean, boolean, boolean)
+	 */
+	@Test
+	public void test_insertionFromFileCollectingErrors() throws Exception{
+		int before = service.getAllFuelConsumptions().size();
+		StringBuilder sb = new StringBuilder();
+		sb.append("FuelType;PricePerLitter;Volume;Date;DriverID\n");
+		sb.append("Diesel;1.5;100;2019-04-01T11:00:00;driver001\n");
+		sb.append("Diesel;abc;100;2019-04-01T12:00:00;driver001\n");
+		sb.append("98;2;50;2019-04-01T13:30:00;driver002\n");
+		sb.append("98;2;50;2019-04-01T14:30:00\n");
+		
+		MockMultipartFile file = new MockMultipartFile("file","fgfmglkfmgkl.csv","text/csv",sb.toString().getBytes());
+		String response = mvc.perform(multipart("/api/consumptions/file")
+				.file(file)
+				.param("mode", "stream")
+				.param("collectErrors", "true")
+				.param("rejectFile", "true"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.message",is(FuelConsumptionService.SUCCESSFUL_WITH_REJECTED_ROWS)))
+				.andExpect(jsonPath("$.rowsPersisted",is(2)))
+				.andExpect(jsonPath("$.rowsRejected",is(2)))
+				.andExpect(jsonPath("$.rejectedRows[0].row",is(3)))
+				.andExpect(jsonPath("$.rejectedRows[0].column",is(2)))
+				.andExpect(jsonPath("$.rejectedRows[1].row",is(5)))
+				.andExpect(jsonPath("$.rejectedRows[1].column",is(0)))
+				.andReturn().getResponse().getContentAsString();
+		
+		int after = service.getAllFuelConsumptions().size();
+		assertThat(after-before).isEqualTo(2);
+		
+		String rejectFileId = om.readTree(response).get("rejectFileId").asText();
+		mvc.perform(get("/api/consumptions/rejects/"+rejectFileId))
+				.andExpect(status().isOk())
+				.andExpect(content().string(startsWith("FuelType;PricePerLitter;Volume;Date;DriverID;Row;Error\n"
+						+ "Diesel;abc;100;2019-04-01T12:00:00;driver001;3;")))
+				.andExpect(content().string(containsString("98;2;50;2019-04-01T14:30:00;5;")));
+	}
+	
 	/**
 	 * Check GET request to retrieve total spent money by month succeeded both with
 	 * driverID and without<br>
@@ -236,6 +521,326 @@ public class FuelConsumptionResourceTest {
 		.andExpect(content().json("["+om.writeValueAsString(fc2)+"]"));
 	}
 	
+	/**
+	 * Check GET request to retrieve consumptions by month of a year
+	 * <ul>
+	 * <li>month=yyyy-MM must only return the consumptions of that year</li>
+	 * <li>month as a number must return that month of every year</li>
+	 * <li>Totals must be grouped by year and month</li>
+	 * <li>Response status must be BAD_REQUEST(400) for an invalid month</li>
+	 * </ul>
+	 * @throws Exception
+	 */
+	@Test
+	public void test_getConsumptionsForYearMonth() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		sb.append("FuelType;PricePerLitter;Volume;Date;DriverID\n");
+		sb.append("Diesel;1.5;100;2019-04-01T11:00:00;driver001\n");
+		sb.append("98;2;50;2020-04-01T13:30:00;driver001\n");
+		sb.append("98;2;50;2020-04-02T13:30:00;driver002\n");
+		
+		MockMultipartFile file = new MockMultipartFile("file","yearmonth.csv","text/csv",sb.toString().getBytes());
+		mvc.perform(multipart("/api/consumptions/file")
+				.file(file))
+				.andExpect(status().isOk());
+		
+		mvc.perform(get("/api/consumptions?month=2019-04"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(1)))
+			.andExpect(jsonPath("$[0].fuelType", is("Diesel")));
+		
+		mvc.perform(get("/api/consumptions?month=2020-04&driver=driver002"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(1)))
+			.andExpect(jsonPath("$[0].driverID", is("driver002")));
+		
+		mvc.perform(get("/api/consumptions?month=4"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(3)));
+		
+		mvc.perform(get("/api/consumptions/totalSpentMoneyByMonth"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(2)))
+			.andExpect(jsonPath("$[0].yearMonth", is("2019-04")))
+			.andExpect(jsonPath("$[1].yearMonth", is("2020-04")));
+		
+		mvc.perform(get("/api/consumptions?month=2019-13"))
+			.andExpect(status().isBadRequest());
+		
+		mvc.perform(get("/api/consumptions?month=april"))
+			.andExpect(status().isBadRequest());
+	}
+	
+	/**
+	 * Check GET request to retrieve consumptions page by page
+	 * <ul>
+	 * <li>A full page must have the Next-Cursor header, the last page must not</li>
+	 * <li>Following the cursors must return every consumption once</li>
+	 * <li>Pages must be narrowed by month and driver like the whole list</li>
+	 * </ul>
+	 * @throws Exception
+	 */
+	@Test
+	public void test_getConsumptionsInPages() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		sb.append("FuelType;PricePerLitter;Volume;Date;DriverID\n");
+		sb.append("Diesel;1.5;100;2019-04-01T11:00:00;driver001\n");
+		sb.append("98;2;50;2019-04-01T13:30:00;driver002\n");
+		sb.append("98;2;50;2019-04-02T13:30:00;driver001\n");
+		sb.append("95;1;30;2019-05-01T13:30:00;driver001\n");
+		sb.append("95;1;30;2019-05-02T13:30:00;driver002\n");
+		
+		MockMultipartFile file = new MockMultipartFile("file","pages.csv","text/csv",sb.toString().getBytes());
+		mvc.perform(multipart("/api/consumptions/file")
+				.file(file))
+				.andExpect(status().isOk());
+		
+		String cursor = mvc.perform(get("/api/consumptions?limit=2"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(2)))
+			.andReturn().getResponse().getHeader("Next-Cursor");
+		assertThat(cursor).isNotNull();
+		
+		cursor = mvc.perform(get("/api/consumptions?limit=2&after="+cursor))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(2)))
+			.andReturn().getResponse().getHeader("Next-Cursor");
+		assertThat(cursor).isNotNull();
+		
+		mvc.perform(get("/api/consumptions?limit=2&after="+cursor))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(1)))
+			.andExpect(jsonPath("$[0].fuelType", is("95")))
+			.andExpect(header().doesNotExist("Next-Cursor"));
+		
+		cursor = mvc.perform(get("/api/consumptions?month=2019-04&driver=driver001&limit=1"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(1)))
+			.andExpect(jsonPath("$[0].fuelType", is("Diesel")))
+			.andReturn().getResponse().getHeader("Next-Cursor");
+		
+		mvc.perform(get("/api/consumptions?month=4&driver=driver001&limit=1&after="+cursor))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(1)))
+			.andExpect(jsonPath("$[0].fuelType", is("98")));
+		
+		mvc.perform(get("/api/consumptions?month=5&limit=10"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(2)))
+			.andExpect(header().doesNotExist("Next-Cursor"));
+	}
+	
+	/**
+	 * Check GET request to retrieve consumptions without paging params
+	 * <ul>
+	 * <li>Without month and with a month the first page of the default size must be returned with the Next-Cursor header</li>
+	 * </ul>
+	 * @throws Exception
+	 */
+	@Test
+	public void test_getConsumptionsPagedByDefault() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		sb.append("FuelType;PricePerLitter;Volume;Date;DriverID\n");
+		for(int i=0; i<=FuelConsumptionResource.DEFAULT_PAGE_SIZE; i++) {
+			sb.append("98;2;"+(i+1)+";2019-04-01T13:30:00;driver001\n");
+		}
+		
+		MockMultipartFile file = new MockMultipartFile("file","default.csv","text/csv",sb.toString().getBytes());
+		mvc.perform(multipart("/api/consumptions/file")
+				.file(file))
+				.andExpect(status().isOk());
+		
+		String cursor = mvc.perform(get("/api/consumptions"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(FuelConsumptionResource.DEFAULT_PAGE_SIZE)))
+			.andReturn().getResponse().getHeader("Next-Cursor");
+		assertThat(cursor).isNotNull();
+		
+		mvc.perform(get("/api/consumptions?after="+cursor))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(1)))
+			.andExpect(header().doesNotExist("Next-Cursor"));
+		
+		mvc.perform(get("/api/consumptions?month=4"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(FuelConsumptionResource.DEFAULT_PAGE_SIZE)))
+			.andExpect(header().exists("Next-Cursor"));
+		
+		mvc.perform(get("/api/consumptions?month=2019-04&driver=driver001"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(FuelConsumptionResource.DEFAULT_PAGE_SIZE)))
+			.andExpect(header().exists("Next-Cursor"));
+	}
+	
+	/**
+	 * Check GET requests of a date range
+	 * <ul>
+	 * <li>Consumptions must be returned page by page in date order following the Next-Cursor header</li>
+	 * <li>Totals and statistics must be bucketed by the granularity</li>
+	 * <li>Response status must be BAD_REQUEST(400) for an invalid date, cursor or granularity and if from is after to</li>
+	 * </ul>
+	 * @throws Exception
+	 */
+	@Test
+	public void test_getConsumptionsForRange() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		sb.append("FuelType;PricePerLitter;Volume;Date;DriverID\n");
+		sb.append("95;1;30;2019-05-02T13:30:00;driver002\n");
+		sb.append("Diesel;1.5;100;2019-04-01T11:00:00;driver001\n");
+		sb.append("98;2;50;2019-04-01T13:30:00;driver002\n");
+		sb.append("95;1;30;2019-06-01T13:30:00;driver001\n");
+		
+		MockMultipartFile file = new MockMultipartFile("file","range.csv","text/csv",sb.toString().getBytes());
+		mvc.perform(multipart("/api/consumptions/file")
+				.file(file))
+				.andExpect(status().isOk());
+		
+		String cursor = mvc.perform(get("/api/consumptions?from=2019-04-01&to=2019-05-31&limit=2"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(2)))
+			.andExpect(jsonPath("$[0].fuelType", is("Diesel")))
+			.andExpect(jsonPath("$[1].fuelType", is("98")))
+			.andReturn().getResponse().getHeader("Next-Cursor");
+		assertThat(cursor).isNotNull();
+		
+		mvc.perform(get("/api/consumptions?from=2019-04-01&to=2019-05-31&limit=2").param("after", cursor))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(1)))
+			.andExpect(jsonPath("$[0].fuelType", is("95")))
+			.andExpect(header().doesNotExist("Next-Cursor"));
+		
+		mvc.perform(get("/api/consumptions?from=2019-04-01&to=2019-06-30&driver=driver001"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(2)))
+			.andExpect(header().doesNotExist("Next-Cursor"));
+		
+		mvc.perform(get("/api/consumptions/totalSpentMoneyByMonth?from=2019-04-01&to=2019-06-30&granularity=quarter"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(1)))
+			.andExpect(jsonPath("$[0].from", is("2019-04-01")))
+			.andExpect(jsonPath("$[0].totalMoneySpent", is(310.0)));
+		
+		mvc.perform(get("/api/consumptions/statsByFuelType?from=2019-04-01&to=2019-05-31&driver=driver002"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(2)))
+			.andExpect(jsonPath("$[0].fuelType", is("98")))
+			.andExpect(jsonPath("$[1].fuelType", is("95")));
+		
+		for(String path : new String[] {"/api/consumptions", "/api/consumptions/totalSpentMoneyByMonth", "/api/consumptions/statsByFuelType"}) {
+			mvc.perform(get(path+"?from=2019-04-01&to=2019-13-01"))
+				.andExpect(status().isBadRequest());
+			mvc.perform(get(path+"?from=2019-05-01&to=2019-04-01"))
+				.andExpect(status().isBadRequest());
+		}
+		mvc.perform(get("/api/consumptions/totalSpentMoneyByMonth?from=2019-04-01&to=2019-05-31&granularity=year"))
+			.andExpect(status().isBadRequest());
+		mvc.perform(get("/api/consumptions/statsByFuelType?from=2019-04-01&to=2019-05-31&granularity=year"))
+			.andExpect(status().isBadRequest());
+		mvc.perform(get("/api/consumptions?from=2019-04-01&to=2019-05-31&after=42"))
+			.andExpect(status().isBadRequest());
+	}
+	
+	/**
+	 * Check GET request to export all consumptions
+	 * <ul>
+	 * <li>format=json must return the same array as GET /api/consumptions</li>
+	 * <li>format=ndjson must return one consumption per line</li>
+	 * <li>Response status must be BAD_REQUEST(400) for an unknown format</li>
+	 * </ul>
+	 * @throws Exception
+	 */
+	@Test
+	public void test_exportConsumptions() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		sb.append("FuelType;PricePerLitter;Volume;Date;DriverID\n");
+		sb.append("Diesel;1.5;100;2019-04-01T11:00:00;driver001\n");
+		sb.append("98;2;50;2019-04-01T13:30:00;driver002\n");
+		sb.append("95;1;30;2019-05-01T13:30:00;driver001\n");
+		
+		MockMultipartFile file = new MockMultipartFile("file","export.csv","text/csv",sb.toString().getBytes());
+		mvc.perform(multipart("/api/consumptions/file")
+				.file(file))
+				.andExpect(status().isOk());
+		
+		String all = mvc.perform(get("/api/consumptions"))
+			.andReturn().getResponse().getContentAsString();
+		
+		MvcResult result = mvc.perform(get("/api/consumptions/export"))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+		mvc.perform(asyncDispatch(result))
+			.andExpect(status().isOk())
+			.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+			.andExpect(content().json(all));
+		
+		result = mvc.perform(get("/api/consumptions/export?format=ndjson"))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+		String[] lines = mvc.perform(asyncDispatch(result))
+			.andExpect(status().isOk())
+			.andReturn().getResponse().getContentAsString().split("\n");
+		assertThat(lines).hasSize(3);
+		assertThat(om.readValue(lines[2], FuelConsumption.class).getFuelType()).isEqualTo("95");
+		
+		mvc.perform(get("/api/consumptions/export?format=xml"))
+			.andExpect(status().isBadRequest());
+	}
+	
+	/**
+	 * Check conditional GET requests with the ETag of the data version
+	 * <ul>
+	 * <li>Response status must be NOT_MODIFIED(304) for an unchanged ETag</li>
+	 * <li>A write for driver002 must change the ETags of driver002 and of all drivers only</li>
+	 * </ul>
+	 * @throws Exception
+	 */
+	@Test
+	public void test_conditionalGetWithETag() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		sb.append("FuelType;PricePerLitter;Volume;Date;DriverID\n");
+		sb.append("Diesel;1.5;100;2019-04-01T11:00:00;driver001\n");
+		sb.append("98;2;50;2019-04-01T13:30:00;driver002\n");
+		
+		MockMultipartFile file = new MockMultipartFile("file","etag.csv","text/csv",sb.toString().getBytes());
+		mvc.perform(multipart("/api/consumptions/file")
+				.file(file))
+				.andExpect(status().isOk());
+		
+		String all = mvc.perform(get("/api/consumptions/statsByFuelType"))
+			.andExpect(status().isOk())
+			.andExpect(header().exists("ETag"))
+			.andReturn().getResponse().getHeader("ETag");
+		String driver001 = mvc.perform(get("/api/consumptions/totalSpentMoneyByMonth?driver=driver001"))
+			.andReturn().getResponse().getHeader("ETag");
+		String listOfDriver001 = mvc.perform(get("/api/consumptions?month=2019-04&driver=driver001"))
+			.andExpect(header().exists("ETag"))
+			.andReturn().getResponse().getHeader("ETag");
+		String list = mvc.perform(get("/api/consumptions"))
+			.andReturn().getResponse().getHeader("ETag");
+		
+		mvc.perform(get("/api/consumptions/statsByFuelType").header("If-None-Match", all))
+			.andExpect(status().isNotModified())
+			.andExpect(content().string(""));
+		mvc.perform(get("/api/consumptions?month=2019-04&driver=driver001").header("If-None-Match", listOfDriver001))
+			.andExpect(status().isNotModified());
+		
+		mvc.perform(post("/api/consumptions")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"fuelType\":\"95\",\"pricePerLitter\":1,\"volume\":10,\"date\":\"2019-04-02T10:00:00\",\"driverID\":\"driver002\"}"))
+				.andExpect(status().isOk());
+		
+		mvc.perform(get("/api/consumptions/statsByFuelType").header("If-None-Match", all))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(3)));
+		mvc.perform(get("/api/consumptions/totalSpentMoneyByMonth?driver=driver001").header("If-None-Match", driver001))
+			.andExpect(status().isNotModified());
+		mvc.perform(get("/api/consumptions").header("If-None-Match", list))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(3)));
+		mvc.perform(get("/api/consumptions?month=2019-04&driver=driver001").header("If-None-Match", listOfDriver001))
+			.andExpect(status().isNotModified());
+	}
+	
 	/**
 	 * Check GET request to retrieve statistics grouped by fuel type
 	 * for each month succeeded both with
@@ -0,0 +1,90 @@
+package swedbank.TestAssignment.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import swedbank.TestAssignment.domain.FuelConsumption;
+import swedbank.TestAssignment.repository.FuelConsumptionRepository;
+import swedbank.TestAssignment.repository.StatByMonthAndFuelType;
+
+/**
+ * 
+ * Unit tests of the columnar store, enabled for this context only
+ * @author denizalp@ut.ee
+ *
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties="fuelconsumption.columnar.enabled=true")
+public class ColumnarStoreTest {
+	
+	@Autowired
+	private ColumnarStore store;
+	
+	@Autowired
+	private FuelConsumptionService service;
+	
+	@Autowired
+	private FuelConsumptionRepository repository;
+	
+	/**
+	 * DB is emptied after a test is completed.
+	 */
+	@After
+	public void clearDB() {
+		repository.deleteAll();
+	}
+	
+	/**
+	 * Check if statistics scanned from the columns match the database
+	 * <ul>
+	 * <li>Rows over several years, drivers and fuel types must give the statistics of the database query</li>
+	 * <li>Statistics of a single driver must match the database query for the driver</li>
+	 * <li>Removed rows must not be counted once the projections have applied the removal</li>
+	 * </ul>
+	 */
+	@Test
+	public void test_statisticsMatchDatabase() {
+		List<FuelConsumption> list = new ArrayList<FuelConsumption>();
+		LocalDateTime date = LocalDateTime.of(2019, 11, 1, 10, 0);
+		for(int i=0; i<500; i++) {
+			list.add(new FuelConsumption(i % 3 == 0 ? "Diesel" : "98", BigDecimal.valueOf(150 + i % 7, 2),
+					BigDecimal.valueOf(10 + i % 13), date.plusDays(i), "driver" + (i % 4)));
+		}
+		service.addFuelConsumptionList(list);
+		service.awaitProjections();
+		assertThat(store.size()).isEqualTo(500);
+		
+		assertSame(store.getStatistics(), repository.getStatisticsGroupedByFuelType());
+		assertSame(store.getStatistics("driver2"), repository.getStatisticsGroupedByFuelTypeForSingleDriver("driver2"));
+		assertThat(store.getStatistics("unknown")).isEmpty();
+		
+		repository.deleteAll(list.subList(0, 100));
+		service.awaitProjections();
+		assertThat(store.size()).isEqualTo(400);
+		assertSame(store.getStatistics(), repository.getStatisticsGroupedByFuelType());
+		assertSame(service.getStatisticsGroupedByFuelType(), repository.getStatisticsGroupedByFuelType());
+	}
+	
+	private static void assertSame(List<StatByMonthAndFuelType> actual, List<StatByMonthAndFuelType> expected) {
+		assertThat(actual).hasSameSizeAs(expected);
+		for(int i=0; i<expected.size(); i++) {
+			assertThat(actual.get(i).getYearMonth()).isEqualTo(expected.get(i).getYearMonth());
+			assertThat(actual.get(i).getFuelType()).isEqualTo(expected.get(i).getFuelType());
+			assertThat(actual.get(i).getTotalVolume()).isEqualByComparingTo(expected.get(i).getTotalVolume());
+			assertThat(actual.get(i).getTotalPrice()).isEqualByComparingTo(expected.get(i).getTotalPrice());
+			assertThat(actual.get(i).getAveragePricePerLitter()).isCloseTo(expected.get(i).getAveragePricePerLitter(), within(1e-9));
+		}
+	}
+	
+}
@@ -3,8 +3,11 @@ package swedbank.TestAssignment.service;
 
 import java.io.File;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
 
@@ -16,11 +19,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import swedbank.TestAssignment.domain.FuelConsumption;
+import swedbank.TestAssignment.repository.ConsumptionEventRepository;
+import swedbank.TestAssignment.repository.DriverRepository;
 import swedbank.TestAssignment.repository.FuelConsumptionRepository;
+import swedbank.TestAssignment.repository.FuelConsumptionView;
 import swedbank.TestAssignment.repository.StatByMonthAndFuelType;
+import swedbank.TestAssignment.repository.StatByPeriodAndFuelType;
 import swedbank.TestAssignment.repository.TotalSpentMoneyByMonth;
+import swedbank.TestAssignment.repository.TotalSpentMoneyByPeriod;
+import swedbank.TestAssignment.util.Granularity;
 
 /**
  * 
@@ -38,6 +48,18 @@ public class FuelConsumptionServiceTest {
 	@Autowired
 	private FuelConsumptionRepository repository;
 	
+	@Autowired
+	private DriverRepository driverRepository;
+	
+	@Autowired
+	private ConsumptionEventRepository eventRepository;
+	
+	@Autowired
+	private PartitionService partitionService;
+	
+	@Autowired
+	private PartitionCatalog partitionCatalog;
+	
 	private FuelConsumption fc1;
 	
 	private FuelConsumption fc2;
@@ -198,6 +220,51 @@ public class FuelConsumptionServiceTest {
 		
 	}
 	
+	/**
+	 * Check fuel consumptions from "example.csv" are inserted successfully in chunks of one row
+	 * <ul>
+	 * <li>Table size must increase by 2</li>
+	 * <li>Result must report two chunks with one row each</li>
+	 * </ul>
+	 * @throws Exception
+	 * @see FuelConsumptionService#addFuelConsumptionsFromCsvFileInChunks(Scanner, int)
+	 */
+	@Test
+	public void test_insertFromFileInChunksSuccessful() throws Exception {
+		int before = service.getAllFuelConsumptions().size();
+		
+		Scanner s = new Scanner(new File("example.csv"));
+		CsvIngestResult response = service.addFuelConsumptionsFromCsvFileInChunks(s, 1);
+		assertThat(response.getMessage()).isEqualTo("Successful");
+		assertThat(response.getRowsPersisted()).isEqualTo(2);
+		assertThat(response.getRowsWrittenPerChunk()).containsExactly(1, 1);
+		
+		int after = service.getAllFuelConsumptions().size();
+		assertThat(after-before).isEqualTo(2);
+	}
+	
+	/**
+	 * Check chunked insertion from "bad1.csv" stops at the second row
+	 * because driverID column is empty
+	 * <ul>
+	 * <li>Result message must state the expected error</li>
+	 * <li>Only the row before the invalid row must be persisted</li>
+	 * </ul>
+	 * @throws Exception
+	 */
+	@Test
+	public void test_insertFromFileInChunksNotSuccessful() throws Exception {
+		int before = service.getAllFuelConsumptions().size();
+		
+		Scanner s = new Scanner(new File("bad1.csv"));
+		CsvIngestResult response = service.addFuelConsumptionsFromCsvFileInChunks(s, 10);
+		assertThat(response.getMessage()).contains("Driver ID must not be empty");
+		assertThat(response.getRowsWrittenPerChunk()).containsExactly(1);
+		
+		int after = service.getAllFuelConsumptions().size();
+		assertThat(after-before).isEqualTo(1);
+	}
+	
 	/**
 	 * Check if fuel consumptions are retrieved successfully by month<br>
 	 * Initially three fuel consumptions are registered where two of them
@@ -274,6 +341,7 @@ public class FuelConsumptionServiceTest {
 		int after = service.getAllFuelConsumptions().size();
 		
 		assertThat(after-before).isEqualTo(3);
+		service.awaitProjections();
 		List<TotalSpentMoneyByMonth> result = service.findTotalPricesGroupedByMonth();
 		assertThat(result).isNotNull();
 		
@@ -305,6 +373,7 @@ public class FuelConsumptionServiceTest {
 		int after = service.getAllFuelConsumptions().size();
 		
 		assertThat(after-before).isEqualTo(3);
+		service.awaitProjections();
 		List<TotalSpentMoneyByMonth> result = service.findTotalPricesGroupedByMonthForSingleDriver("driver001");
 		assertThat(result).isNotNull();
 		
@@ -314,6 +383,39 @@ public class FuelConsumptionServiceTest {
 		
 	}
 	
+	/**
+	 * Check if total prices by month follow bulk inserts and removals<br>
+	 * Initially two fuel consumptions of driver001 are registered in a batch
+	 * <ul>
+	 * <li>Query result must include month 4 and month 5 with their total prices</li>
+	 * <li>After the fuel consumption of month 4 is removed only month 5 must be left</li>
+	 * </ul>
+	 * 
+	 * @see FuelConsumptionService#findTotalPricesGroupedByMonthForSingleDriver(String)
+	 * @see MonthlySpendRollup
+	 */
+	@Test
+	public void test_findTotalPricesGroupedByMonthFollowsInsertsAndRemovals() {
+		List<FuelConsumption> inserted = service.addFuelConsumptionList(Arrays.asList(fc1, fc4));
+		
+		service.awaitProjections();
+		List<TotalSpentMoneyByMonth> result = service.findTotalPricesGroupedByMonthForSingleDriver("driver001");
+		assertThat(result).hasSize(2);
+		assertThat(result.get(0).getMonth()).isEqualTo(4);
+		assertThat(result.get(0).getTotalMoneySpent()).isEqualTo(fc1.getTotalPrice().setScale(2));
+		assertThat(result.get(1).getMonth()).isEqualTo(5);
+		assertThat(result.get(1).getTotalMoneySpent()).isEqualTo(fc4.getTotalPrice().setScale(2));
+		
+		repository.deleteById(inserted.get(0).getId());
+		
+		service.awaitProjections();
+		result = service.findTotalPricesGroupedByMonthForSingleDriver("driver001");
+		assertThat(result).hasSize(1);
+		assertThat(result.get(0).getMonth()).isEqualTo(5);
+		service.awaitProjections();
+		assertThat(service.findTotalPricesGroupedByMonth()).hasSize(1);
+	}
+	
 	/**
 	 * Check if statistics grouped by fuel type for each month is retrieved successfully<br>
 	 * Initially four fuel consumptions are registered
@@ -337,6 +439,7 @@ public class FuelConsumptionServiceTest {
 		int after = service.getAllFuelConsumptions().size();
 		
 		assertThat(after-before).isEqualTo(4);
+		service.awaitProjections();
 		List<StatByMonthAndFuelType> result = service.getStatisticsGroupedByFuelType();
 		assertThat(result).isNotEmpty();
 		
@@ -370,6 +473,7 @@ public class FuelConsumptionServiceTest {
 		int after = service.getAllFuelConsumptions().size();
 		
 		assertThat(after-before).isEqualTo(4);
+		service.awaitProjections();
 		List<StatByMonthAndFuelType> result = service.getStatisticsGroupedByFuelTypeForSingleDriver("driver001");
 		assertThat(result).isNotEmpty();
 		
@@ -381,4 +485,261 @@ public class FuelConsumptionServiceTest {
 		assertThat(result.get(1).getFuelType()).isEqualTo("Diesel2");
 	}
 	
+	/**
+	 * Check if statistics grouped by fuel type follow removals and match the database<br>
+	 * Initially four fuel consumptions are registered
+	 * <ul>
+	 * <li>Statistics must be equal to the ones computed by the database query</li>
+	 * <li>After the fuel consumption of driver001 in month 5 is removed, fuel type "Diesel2" must be gone</li>
+	 * </ul>
+	 * 
+	 * @see FuelStatsEngine
+	 */
+	@Test
+	public void test_getStatisticsGroupedByFuelTypeFollowsRemovals() {
+		service.addFuelConsumptionList(Arrays.asList(fc1, fc2, fc3));
+		FuelConsumption inserted4 = service.addFuelConsumption(fc4);
+		
+		service.awaitProjections();
+		List<StatByMonthAndFuelType> result = service.getStatisticsGroupedByFuelType();
+		List<StatByMonthAndFuelType> expected = repository.getStatisticsGroupedByFuelType();
+		assertThat(result).hasSameSizeAs(expected);
+		for(StatByMonthAndFuelType stat : expected) {
+			assertThat(result).anySatisfy(actual -> {
+				assertThat(actual.getMonth()).isEqualTo(stat.getMonth());
+				assertThat(actual.getFuelType()).isEqualTo(stat.getFuelType());
+				assertThat(actual.getTotalVolume()).isEqualByComparingTo(stat.getTotalVolume());
+				assertThat(actual.getTotalPrice()).isEqualByComparingTo(stat.getTotalPrice());
+				assertThat(actual.getAveragePricePerLitter()).isEqualTo(stat.getAveragePricePerLitter());
+			});
+		}
+		
+		repository.delete(inserted4);
+		
+		service.awaitProjections();
+		result = service.getStatisticsGroupedByFuelType();
+		assertThat(result).hasSize(2);
+		assertThat(result).noneMatch(stat -> stat.getFuelType().equals("Diesel2"));
+		service.awaitProjections();
+		assertThat(service.getStatisticsGroupedByFuelTypeForSingleDriver("driver001")).hasSize(1);
+	}
+	
+	/**
+	 * Check if views of fuel consumptions by month match the entities
+	 * <ul>
+	 * <li>Views must have the same identifiers and values as the entities of the month</li>
+	 * <li>Views for a single driver must only include the driver</li>
+	 * </ul>
+	 * 
+	 * @see FuelConsumptionView
+	 */
+	@Test
+	public void test_findViewsByMonthMatchEntities() {
+		service.addFuelConsumptionList(Arrays.asList(fc1, fc2, fc3, fc4));
+		
+		List<FuelConsumption> entities = service.findAllByMonth(4);
+		List<FuelConsumptionView> views = service.findViewsByMonth(4);
+		assertThat(views).hasSameSizeAs(entities);
+		for(FuelConsumption fc : entities) {
+			assertThat(views).anySatisfy(view -> {
+				assertThat(view.getId()).isEqualTo(fc.getId());
+				assertThat(view.getDriverID()).isEqualTo(fc.getDriverID());
+				assertThat(view.getDate()).isEqualTo(fc.getDate());
+				assertThat(view.getTotalPrice()).isEqualByComparingTo(fc.getTotalPrice());
+				assertThat(view.getYearMonth()).isEqualTo(fc.getYearMonth());
+			});
+		}
+		
+		views = service.findViewsByMonthForSingleDriver(5, "driver001");
+		assertThat(views).hasSize(1);
+		assertThat(views.get(0).getFuelType()).isEqualTo("Diesel2");
+	}
+	
+	/**
+	 * Check if aggregate results are cached and invalidated per driver
+	 * <ul>
+	 * <li>A second read must be a hit</li>
+	 * <li>A write for driver002 must invalidate the entries of driver002 and of all drivers only</li>
+	 * <li>Results read after the write must include it</li>
+	 * </ul>
+	 * 
+	 * @see AggregateCache
+	 */
+	@Test
+	public void test_aggregateCacheInvalidatedPerDriver() {
+		service.addFuelConsumptionList(Arrays.asList(fc1, fc2, fc3));
+		
+		service.awaitProjections();
+		service.findTotalPricesGroupedByMonth();
+		service.findTotalPricesGroupedByMonthForSingleDriver("driver001");
+		service.findTotalPricesGroupedByMonthForSingleDriver("driver002");
+		CacheStats before = service.getCacheStats();
+		
+		service.awaitProjections();
+		service.findTotalPricesGroupedByMonthForSingleDriver("driver001");
+		assertThat(service.getCacheStats().getHits()).isEqualTo(before.getHits() + 1);
+		
+		service.addFuelConsumption(new FuelConsumption("Diesel",BigDecimal.ONE,BigDecimal.TEN,
+				LocalDateTime.parse("2019-04-05T11:00:00",DateTimeFormatter.ISO_DATE_TIME),"driver002"));
+		
+		CacheStats afterWrite = service.getCacheStats();
+		service.awaitProjections();
+		service.findTotalPricesGroupedByMonthForSingleDriver("driver001");
+		assertThat(service.getCacheStats().getHits()).isEqualTo(afterWrite.getHits() + 1);
+		
+		service.awaitProjections();
+		List<TotalSpentMoneyByMonth> result = service.findTotalPricesGroupedByMonthForSingleDriver("driver002");
+		service.findTotalPricesGroupedByMonth();
+		assertThat(service.getCacheStats().getMisses()).isEqualTo(afterWrite.getMisses() + 2);
+		assertThat(service.getCacheStats().getInvalidations()).isEqualTo(afterWrite.getInvalidations() + 2);
+		assertThat(result.get(0).getTotalMoneySpent()).isEqualByComparingTo(new BigDecimal(20));
+	}
+	
+	/**
+	 * Check if drivers and fuel types are stored once as keys
+	 * <ul>
+	 * <li>Fuel consumptions of the same driver must have the same driver key of the Driver table</li>
+	 * <li>Loaded fuel consumptions must have the names of their keys</li>
+	 * </ul>
+	 * 
+	 * @see Dimensions
+	 */
+	@Test
+	public void test_driversAndFuelTypesStoredAsKeys() {
+		service.addFuelConsumptionList(Arrays.asList(fc1, fc2, fc4));
+		
+		int driverKey = driverRepository.findByName("driver001").get().getId();
+		List<FuelConsumption> loaded = service.findAllByMonthForSingleDriver(5, "driver001");
+		assertThat(loaded).hasSize(1);
+		assertThat(loaded.get(0).getDriverKey()).isEqualTo(driverKey);
+		assertThat(loaded.get(0).getDriverID()).isEqualTo("driver001");
+		assertThat(loaded.get(0).getFuelType()).isEqualTo("Diesel2");
+		assertThat(repository.findById(fc1.getId()).get().getDriverKey()).isEqualTo(driverKey);
+		assertThat(repository.findById(fc2.getId()).get().getDriverKey()).isNotEqualTo(driverKey);
+	}
+	
+	/**
+	 * Check if writes are appended to the event log and read back from the projections
+	 * <ul>
+	 * <li>Every registered fuel consumption must add one event to the log</li>
+	 * <li>A read after waiting for the projections must include the write</li>
+	 * <li>The projections must not lag behind after the read</li>
+	 * </ul>
+	 * 
+	 * @see Projector
+	 */
+	@Test
+	public void test_projectionsReadOwnWrites() {
+		long events = eventRepository.count();
+		ProjectionStatus before = service.getProjectionStatus();
+		
+		service.addFuelConsumptionList(Arrays.asList(fc1, fc4));
+		assertThat(eventRepository.count()).isEqualTo(events + 2);
+		
+		service.awaitProjections();
+		List<TotalSpentMoneyByMonth> result = service.findTotalPricesGroupedByMonthForSingleDriver("driver001");
+		assertThat(result).hasSize(2);
+		ProjectionStatus status = service.awaitProjections();
+		assertThat(status.isConsistent()).isTrue();
+		assertThat(status.getLag()).isZero();
+		assertThat(status.getApplied()).isGreaterThanOrEqualTo(before.getApplied() + 2);
+	}
+	
+	/**
+	 * Check if single inserts and deletes, which are flushed only by the commit, are appended to the event log
+	 * <ul>
+	 * <li>addFuelConsumption must add one event to the log</li>
+	 * <li>deleteById must add one event to the log</li>
+	 * </ul>
+	 * 
+	 * @see ConsumptionEventLog
+	 */
+	@Test
+	public void test_singleWritesAppendedToLog() {
+		long events = eventRepository.count();
+		
+		FuelConsumption saved = service.addFuelConsumption(fc1);
+		assertThat(eventRepository.count()).isEqualTo(events + 1);
+		
+		repository.deleteById(saved.getId());
+		assertThat(eventRepository.count()).isEqualTo(events + 2);
+		assertThat(service.awaitProjections().isConsistent()).isTrue();
+	}
+	
+	/**
+	 * Check if a partition is dropped at once and the projections follow it
+	 * <ul>
+	 * <li>Inserted fuel consumptions must register the partitions of their months</li>
+	 * <li>Drop must delete all fuel consumptions of the month and unregister its partition</li>
+	 * <li>Lookups, totals and statistics must not include the dropped month and keep the other months</li>
+	 * <li>The current month must not be dropped</li>
+	 * </ul>
+	 * 
+	 * @see PartitionService#drop(YearMonth)
+	 */
+	@Test
+	public void test_dropPartition() {
+		service.addFuelConsumptionList(Arrays.asList(fc1, fc2, fc3));
+		assertThat(partitionCatalog.getPartitionsOfMonth(4)).containsExactly(201904);
+		
+		assertThat(partitionService.drop(YearMonth.of(2019, 4))).isEqualTo(2);
+		assertThat(partitionCatalog.contains(201904)).isFalse();
+		assertThat(partitionService.drop(YearMonth.of(2019, 4))).isEqualTo(-1);
+		assertThat(service.findAllByMonth(4)).isEmpty();
+		assertThat(service.findAllByMonth(5)).hasSize(1);
+		
+		service.awaitProjections();
+		List<TotalSpentMoneyByMonth> totals = service.findTotalPricesGroupedByMonth();
+		assertThat(totals).hasSize(1);
+		assertThat(totals.get(0).getMonth()).isEqualTo(5);
+		service.awaitProjections();
+		assertThat(service.getStatisticsGroupedByFuelType()).extracting(StatByMonthAndFuelType::getMonth).containsOnly(5);
+		assertThat(service.findTotalPricesGroupedByMonthForSingleDriver("driver001")).isEmpty();
+		
+		assertThatThrownBy(() -> partitionService.drop(YearMonth.now())).isInstanceOf(IllegalArgumentException.class);
+	}
+	
+	/**
+	 * Check if date ranges are listed and bucketed by granularity
+	 * <ul>
+	 * <li>Listing must return the fuel consumptions of the range in date order, both ends included</li>
+	 * <li>A page must continue after the date and identifier of the last row of the previous page</li>
+	 * <li>Weeks must start on Monday and periods must be cut to the range</li>
+	 * <li>Periods without fuel consumptions must be left out</li>
+	 * <li>Statistics must be ordered by period and fuel type</li>
+	 * </ul>
+	 * 
+	 * @see PeriodAggregator
+	 */
+	@Test
+	public void test_findByDateRangeAndGranularity() {
+		service.addFuelConsumptionList(Arrays.asList(fc1, fc2, fc3, fc4));
+		LocalDate from = LocalDate.of(2019, 4, 2);
+		LocalDate to = LocalDate.of(2019, 5, 3);
+		
+		assertThat(service.findPageInRange(from, to, null, null, 0, 10)).extracting(FuelConsumptionView::getId).containsExactly(fc2.getId(), fc3.getId());
+		List<FuelConsumptionView> first = service.findPageInRange(from, to, null, null, 0, 1);
+		assertThat(first).extracting(FuelConsumptionView::getId).containsExactly(fc2.getId());
+		assertThat(service.findPageInRange(from, to, null, first.get(0).getDate(), first.get(0).getId(), 1))
+			.extracting(FuelConsumptionView::getId).containsExactly(fc3.getId());
+		
+		List<TotalSpentMoneyByPeriod> weeks = service.findTotalPricesGroupedByPeriod(LocalDate.of(2019, 3, 1), LocalDate.of(2019, 5, 31), Granularity.WEEK, null);
+		assertThat(weeks).extracting(TotalSpentMoneyByPeriod::getFrom).containsExactly(LocalDate.of(2019, 4, 1), LocalDate.of(2019, 4, 29));
+		assertThat(weeks.get(0).getTo()).isEqualTo(LocalDate.of(2019, 4, 7));
+		assertThat(weeks.get(0).getTotalMoneySpent()).isEqualByComparingTo(new BigDecimal(30));
+		assertThat(weeks.get(1).getTotalMoneySpent()).isEqualByComparingTo(new BigDecimal(20));
+		
+		List<TotalSpentMoneyByPeriod> days = service.findTotalPricesGroupedByPeriod(from, to, Granularity.DAY, "driver002");
+		assertThat(days).hasSize(1);
+		assertThat(days.get(0).getFrom()).isEqualTo(from);
+		
+		LocalDate end = LocalDate.of(2019, 5, 4);
+		List<StatByPeriodAndFuelType> quarter = service.getStatisticsGroupedByPeriodAndFuelType(from, end, Granularity.QUARTER, null);
+		assertThat(quarter).extracting(StatByPeriodAndFuelType::getFuelType).containsExactly("Diesel", "Diesel2");
+		assertThat(quarter.get(0).getFrom()).isEqualTo(from);
+		assertThat(quarter.get(0).getTo()).isEqualTo(end);
+		assertThat(quarter.get(0).getTotalVolume()).isEqualByComparingTo(new BigDecimal(20));
+		assertThat(quarter.get(0).getTotalPrice()).isEqualByComparingTo(new BigDecimal(20));
+	}
+	
 }
@@ -0,0 +1,39 @@
+package swedbank.TestAssignment.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ *
+ * Unit tests of LongHashSet, contents must be the same as a HashSet of Long
+ * @author denizalp@ut.ee
+ *
+ */
+public class LongHashSetTest {
+
+	/**
+	 * Removing must keep the other values of a probe sequence reachable
+	 */
+	@Test
+	public void test_removeSuccessful() {
+		LongHashSet set = new LongHashSet(16);
+		Set<Long> expected = new HashSet<Long>();
+		Random random = new Random(42);
+		for(int i=0; i<20_000; i++) {
+			// a small range makes collisions and removals of present values frequent
+			long value = random.nextInt(2_000) - 1_000;
+			if(random.nextBoolean()) assertThat(set.add(value)).isEqualTo(expected.add(value));
+			else assertThat(set.remove(value)).isEqualTo(expected.remove(value));
+		}
+		assertThat(set.size()).isEqualTo(expected.size());
+		for(long value = -1_000; value < 1_000; value++) {
+			assertThat(set.contains(value)).isEqualTo(expected.contains(value));
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package swedbank.TestAssignment.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import org.junit.Test;
+
+/**
+ *
+ * Unit tests of Micros, results must be the same as BigDecimal rounded half up
+ * @author denizalp@ut.ee
+ *
+ */
+public class MicrosTest {
+
+	@Test
+	public void test_conversionSuccessful() {
+		assertThat(Micros.of(new BigDecimal("1.5"))).isEqualTo(1_500_000L);
+		assertThat(Micros.of(new BigDecimal("0.0000005"))).isEqualTo(1L);
+		assertThat(Micros.toBigDecimal(1_234_567L, 2)).isEqualTo(new BigDecimal("1.23"));
+		assertThat(Micros.toBigDecimal(1_235_000L, 2)).isEqualTo(new BigDecimal("1.24"));
+		assertThat(Micros.round(-1_235_000L, 2)).isEqualTo(-1_240_000L);
+	}
+
+	/**
+	 * Products must be equal to BigDecimal#multiply rounded to 6 decimals, also when the
+	 * product of the millionths does not fit in a long
+	 */
+	@Test
+	public void test_multiplySuccessful() {
+		String[][] factors = {{"2", "10"}, {"1.459", "35.27"}, {"123456.789", "98765.4321"}, {"0.000001", "0.5"}, {"-2.5", "1.1"}, {"1.5", "5000000000000"}, {"-0.25", "-9000000000000"}};
+		for(String[] pair : factors) {
+			BigDecimal a = new BigDecimal(pair[0]);
+			BigDecimal b = new BigDecimal(pair[1]);
+			long product = Micros.multiply(Micros.of(a), Micros.of(b));
+			assertThat(Micros.toBigDecimal(product, Micros.SCALE)).isEqualTo(a.multiply(b).setScale(Micros.SCALE, RoundingMode.HALF_UP));
+		}
+	}
+
+	@Test
+	public void test_overflowNotSuccessful() {
+		assertThatThrownBy(() -> Micros.of(new BigDecimal("10000000000000"))).isInstanceOf(ArithmeticException.class);
+		assertThatThrownBy(() -> Micros.add(Long.MAX_VALUE, 1)).isInstanceOf(ArithmeticException.class);
+		assertThatThrownBy(() -> Micros.multiply(Micros.of(new BigDecimal("10000000")), Micros.of(new BigDecimal("10000000"))))
+				.isInstanceOf(ArithmeticException.class);
+	}
+
+}